@@ -0,0 +1,191 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.ScenarioGenerator;
+import edu.kit.kastel.trafficsimulation.io.SimulationFileLoader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * The scenarios of the benchmarks, which are written in to a temporary folder by the benchmark that uses them.
+ * A scenario is named after its source and its size:
+ * <ul>
+ *     <li>{@code basic-x100} is the shipped scenario {@code files/basic} copied 100 times in to one network</li>
+ *     <li>{@code grid-10000} and {@code highway-10000} are written by the {@link ScenarioGenerator} with the given
+ *     number of crossings</li>
+ *     <li>{@code density-1000} is one long street with the given number of cars and a short street back</li>
+ * </ul>
+ * The shipped scenarios are read from the folder in the system property {@value #FILES_PROPERTY}, "files" if it is
+ * not set
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class BenchmarkScenarios {
+
+    /**
+     * The system property with the folder of the shipped scenarios
+     */
+    static final String FILES_PROPERTY = "trafficsimulation.files";
+
+    private static final String SCALED_SEPARATOR = "-x";
+
+    private static final String NAME_SEPARATOR = "-";
+
+    private static final double GENERATED_DENSITY = 0.1;
+
+    private static final int DENSITY_STREET_LENGTH = 10000;
+
+    /**
+     * Private constructor to avoid object generation
+     */
+    private BenchmarkScenarios() {
+        throw new IllegalStateException(Main.UTILITY_CLASS_INSTANTIATION);
+    }
+
+    /**
+     * The method for writing the scenario with the given name in to a new temporary folder
+     * @param name the name of the scenario
+     * @return the folder of the scenario
+     * @throws IOException if the scenario cannot be read or written
+     */
+    static Path prepare(String name) throws IOException {
+        final Path folder = Files.createTempDirectory("trafficsimulation-" + name + NAME_SEPARATOR);
+        final int scaled = name.lastIndexOf(SCALED_SEPARATOR);
+        if (scaled >= 0) {
+            final Path files = Path.of(System.getProperty(FILES_PROPERTY, "files"));
+            scale(files.resolve(name.substring(0, scaled)), folder,
+                Integer.parseInt(name.substring(scaled + SCALED_SEPARATOR.length())));
+            return folder;
+        }
+        final int separator = name.lastIndexOf(NAME_SEPARATOR);
+        final String kind = name.substring(0, separator);
+        final int size = Integer.parseInt(name.substring(separator + 1));
+        switch (kind) {
+            case "density" -> writeDensityScenario(folder, size);
+            case "grid", "highway" -> {
+                try (ScenarioGenerator generator = new ScenarioGenerator(folder, GENERATED_DENSITY, 0)) {
+                    if (kind.equals("grid")) generator.writeGrid(size, false);
+                    else generator.writeHighway(size);
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown scenario " + name);
+        }
+        return folder;
+    }
+
+    /**
+     * The method for deleting the folder of a scenario written by {@link #prepare(String)}
+     * @param folder the folder of the scenario
+     * @throws IOException if a file cannot be deleted
+     */
+    static void delete(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(folder);
+    }
+
+    /**
+     * The method for reading the ids of the cars of the given scenario
+     * @param folder the folder of the scenario
+     * @return the ids of the cars in the order of the file
+     * @throws IOException if the scenario cannot be read
+     */
+    static int[] readCarIds(Path folder) throws IOException {
+        final List<String> cars = new SimulationFileLoader(folder.toString()).loadCars();
+        final int[] ids = new int[cars.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.parseInt(cars.get(i).substring(Main.FIRST_PARAMETER_INDEX, cars.get(i).indexOf(',')));
+        }
+        return ids;
+    }
+
+    /**
+     * The method for checking the output of a simulation method
+     * @param output the output
+     */
+    static void check(String output) {
+        if (!output.equals(Main.READY)) throw new IllegalStateException(output);
+    }
+
+    /**
+     * The method for writing the given number of disconnected copies of a scenario in to one scenario. The ids of
+     * the crossings and cars of a copy are shifted by the highest id plus one, the streets are appended
+     * @param source the folder of the scenario
+     * @param target the folder the scaled scenario is written to
+     * @param copies the number of copies
+     * @throws IOException if the scenario cannot be read or written
+     */
+    private static void scale(Path source, Path target, int copies) throws IOException {
+        final SimulationFileLoader loader = new SimulationFileLoader(source.toString());
+        final List<String> crossings = loader.loadCrossings();
+        final List<String> streets = loader.loadStreets();
+        final List<String> cars = loader.loadCars();
+        final int crossingOffset = maxLeadingNumber(crossings, ':') + 1;
+        final int carOffset = maxLeadingNumber(cars, ',') + 1;
+        try (BufferedWriter crossingWriter = Files.newBufferedWriter(target.resolve(SimulationFileLoader
+            .FILENAME_CROSSINGS));
+             BufferedWriter streetWriter = Files.newBufferedWriter(target.resolve(SimulationFileLoader
+                 .FILENAME_STREETS));
+             BufferedWriter carWriter = Files.newBufferedWriter(target.resolve(SimulationFileLoader.FILENAME_CARS))) {
+            for (int copy = 0; copy < copies; copy++) {
+                for (String crossing : crossings) {
+                    final int colon = crossing.indexOf(':');
+                    crossingWriter.write((Integer.parseInt(crossing.substring(0, colon)) + copy * crossingOffset)
+                        + crossing.substring(colon));
+                    crossingWriter.newLine();
+                }
+                for (String street : streets) {
+                    final int arrow = street.indexOf("-->");
+                    final int colon = street.indexOf(':');
+                    final int start = Integer.parseInt(street.substring(0, arrow)) + copy * crossingOffset;
+                    final int end = Integer.parseInt(street.substring(arrow + 3, colon)) + copy * crossingOffset;
+                    streetWriter.write(start + "-->" + end + street.substring(colon));
+                    streetWriter.newLine();
+                }
+                for (String car : cars) {
+                    final String[] parameters = car.split(",");
+                    carWriter.write((Integer.parseInt(parameters[0]) + copy * carOffset) + ","
+                        + (Integer.parseInt(parameters[1]) + copy * streets.size()) + "," + parameters[2] + ","
+                        + parameters[3]);
+                    carWriter.newLine();
+                }
+            }
+        }
+    }
+
+    private static int maxLeadingNumber(List<String> lines, char separator) {
+        int max = 0;
+        for (String line : lines) {
+            max = Math.max(max, Integer.parseInt(line.substring(0, line.indexOf(separator))));
+        }
+        return max;
+    }
+
+    /**
+     * The method for writing a scenario with one long street full of the given number of cars and a short
+     * street back to its start
+     * @param target the folder the scenario is written to
+     * @param cars the number of cars on the long street
+     * @throws IOException if the scenario cannot be written
+     */
+    private static void writeDensityScenario(Path target, int cars) throws IOException {
+        Files.writeString(target.resolve(SimulationFileLoader.FILENAME_CROSSINGS), "0:0t\n1:0t\n");
+        Files.writeString(target.resolve(SimulationFileLoader.FILENAME_STREETS),
+            "0-->1:" + DENSITY_STREET_LENGTH + "m,2x,40max\n1-->0:10m,1x,40max\n");
+        final Random random = new Random(cars);
+        try (BufferedWriter writer = Files.newBufferedWriter(target.resolve(SimulationFileLoader.FILENAME_CARS))) {
+            for (int car = 0; car < cars; car++) {
+                writer.write(car + ",0," + (Main.MINIMUM_HIGHEST_SPEED + random.nextInt(Main.MAXIMUM_SPEED_LIMIT
+                    - Main.MINIMUM_HIGHEST_SPEED + 1)) + "," + (1 + random.nextInt(Main.MAXIMUM_ACCELERATION)));
+                writer.newLine();
+            }
+        }
+    }
+}
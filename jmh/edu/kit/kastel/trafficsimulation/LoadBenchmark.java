@@ -0,0 +1,74 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the time {@link Simulation#load(String)} needs to read, parse and check a scenario in to a new
+ * simulation
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    /**
+     * The scenario, see {@link BenchmarkScenarios}. dense-x500 is the network of 105000 cars the numbers of the
+     * indexed lookups were measured on
+     */
+    @Param({"basic-x1", "basic-x100", "basic-x1000", "dense-x500", "dense-x1000", "trafficjam-x1000", "grid-10000",
+        "highway-10000"})
+    public String scenario;
+
+    private Path folder;
+
+    /**
+     * The method for writing the scenario
+     * @throws IOException if the scenario cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        folder = BenchmarkScenarios.prepare(scenario);
+    }
+
+    /**
+     * The method for deleting the scenario
+     * @throws IOException if the scenario cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkScenarios.delete(folder);
+    }
+
+    /**
+     * The benchmark of one load
+     * @return the loaded simulation
+     * @throws IOException if the scenario cannot be read
+     */
+    @Benchmark
+    public Simulation load() throws IOException {
+        final Simulation simulation = new Simulation();
+        BenchmarkScenarios.check(simulation.load(folder.toString()));
+        return simulation;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the latency of {@link Simulation#giveCarPosition(int)} for a random car, after the simulation ran
+ * for {@value #SETTLING_TICKS} ticks. The ids are drawn before the measurement, so drawing them is not measured
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PositionBenchmark {
+
+    private static final int SETTLING_TICKS = 2000;
+
+    private static final int QUERIES = 1 << 16;
+
+    /**
+     * The scenario, see {@link BenchmarkScenarios}. dense-x500 is the network of 105000 cars the numbers of the
+     * indexed lookups were measured on
+     */
+    @Param({"basic-x1", "dense-x100", "dense-x500", "trafficjam-x1000", "grid-10000", "highway-10000"})
+    public String scenario;
+
+    private Path folder;
+
+    private Simulation simulation;
+
+    private int[] queriedIds;
+
+    private int query;
+
+    /**
+     * The method for loading the scenario, letting it settle and drawing the queried cars
+     * @throws IOException if the scenario cannot be written or loaded
+     */
+    @Setup
+    public void setUp() throws IOException {
+        folder = BenchmarkScenarios.prepare(scenario);
+        simulation = new Simulation();
+        BenchmarkScenarios.check(simulation.load(folder.toString()));
+        BenchmarkScenarios.check(simulation.update(SETTLING_TICKS));
+        final int[] carIds = BenchmarkScenarios.readCarIds(folder);
+        final Random random = new Random(0);
+        queriedIds = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) queriedIds[i] = carIds[random.nextInt(carIds.length)];
+    }
+
+    /**
+     * The method for deleting the scenario
+     * @throws IOException if the scenario cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkScenarios.delete(folder);
+    }
+
+    /**
+     * The benchmark of one position query
+     * @return the position of the car
+     */
+    @Benchmark
+    public String giveCarPosition() {
+        query = (query + 1) & (QUERIES - 1);
+        return simulation.giveCarPosition(queriedIds[query]);
+    }
+}
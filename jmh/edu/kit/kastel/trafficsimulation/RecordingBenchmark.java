@@ -0,0 +1,171 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the cost of recording the trajectories with {@link Simulation#startRecording(String)}, comparing the
+ * tick throughput of the same scenario with and without a recording. The simulation runs for
+ * {@value #SETTLING_TICKS} ticks before the recording is started, and every invocation simulates {@value #TICKS}
+ * ticks. The score is in ticks per second. The CPU time of the simulating thread and of the writer thread is counted
+ * as well, since the writer encodes the frames on its own thread and only competes with the simulation for the same
+ * processor if there is no other one
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordingBenchmark {
+
+    private static final int SETTLING_TICKS = 2000;
+
+    private static final int TICKS = 100;
+
+    private static final String RECORDING_FILE = "trajectories";
+
+    /**
+     * The scenario, see {@link BenchmarkScenarios}
+     */
+    @Param({"basic-x1000", "dense-x500", "trafficjam-x1000", "grid-10000"})
+    public String scenario;
+
+    /**
+     * True, if the trajectories are recorded
+     */
+    @Param({"false", "true"})
+    public boolean recording;
+
+    private Path folder;
+
+    private Simulation simulation;
+
+    /**
+     * The method for loading the scenario, letting it settle and starting the recording
+     * @throws IOException if the scenario cannot be written or loaded
+     */
+    @Setup
+    public void setUp() throws IOException {
+        folder = BenchmarkScenarios.prepare(scenario);
+        simulation = new Simulation();
+        BenchmarkScenarios.check(simulation.load(folder.toString()));
+        BenchmarkScenarios.check(simulation.update(SETTLING_TICKS));
+        if (recording) BenchmarkScenarios.check(simulation.startRecording(folder.resolve(RECORDING_FILE).toString()));
+    }
+
+    /**
+     * The method for stopping the recording and deleting the scenario
+     * @throws IOException if the scenario cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        if (recording) BenchmarkScenarios.check(simulation.stopRecording());
+        BenchmarkScenarios.delete(folder);
+    }
+
+    /**
+     * The benchmark of {@value #TICKS} ticks
+     * @param cpuTime the counters of the CPU time
+     * @return the output of the update
+     */
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public String update(CpuTime cpuTime) {
+        cpuTime.start();
+        final String output = simulation.update(TICKS);
+        cpuTime.stop(TICKS);
+        return output;
+    }
+
+    /**
+     * The CPU time the simulating thread and the writer thread of the recording spent, reported next to the
+     * throughput. The counters are summed over the iterations, so the CPU time of a tick is the time divided by the
+     * ticks
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CpuTime {
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        private static final String WRITER_NAME = "trajectory-writer";
+
+        private static final long NO_THREAD = -1;
+
+        /**
+         * The number of simulated ticks
+         */
+        public long ticks;
+
+        /**
+         * The CPU time of the simulating thread in nanoseconds
+         */
+        public long simulationNanos;
+
+        /**
+         * The CPU time of the writer thread in nanoseconds, 0 without a recording
+         */
+        public long writerNanos;
+
+        private long writerId = NO_THREAD;
+
+        private long simulationStart;
+
+        private long writerStart;
+
+        /**
+         * The method for starting to count the CPU time of an iteration, the writer thread is started with the
+         * recording before the first one
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            ticks = 0;
+            simulationNanos = 0;
+            writerNanos = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals(WRITER_NAME)) writerId = thread.getId();
+            }
+        }
+
+        void start() {
+            simulationStart = THREADS.getCurrentThreadCpuTime();
+            writerStart = writerCpuTime();
+        }
+
+        void stop(int simulated) {
+            simulationNanos += THREADS.getCurrentThreadCpuTime() - simulationStart;
+            writerNanos += writerCpuTime() - writerStart;
+            ticks += simulated;
+        }
+
+        private long writerCpuTime() {
+            return writerId == NO_THREAD ? 0 : THREADS.getThreadCpuTime(writerId);
+        }
+    }
+}
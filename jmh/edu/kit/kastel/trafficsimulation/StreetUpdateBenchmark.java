@@ -0,0 +1,92 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Street;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of a single {@link Street#update(Simulation)} at different densities. Every invocation starts from a
+ * freshly loaded street full of cars and updates it {@value #UPDATES} times, so the density is the same in every
+ * invocation. Loading the street is not measured
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreetUpdateBenchmark {
+
+    private static final int UPDATES = 200;
+
+    /**
+     * The number of cars on the street
+     */
+    @Param({"10", "100", "1000"})
+    public int cars;
+
+    private Path folder;
+
+    private Simulation simulation;
+
+    private Street street;
+
+    /**
+     * The method for writing the scenario with one street of the given density
+     * @throws IOException if the scenario cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = BenchmarkScenarios.prepare("density-" + cars);
+    }
+
+    /**
+     * The method for loading a fresh street before every invocation
+     * @throws IOException if the scenario cannot be loaded
+     */
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+        simulation = new Simulation();
+        BenchmarkScenarios.check(simulation.load(folder.toString()));
+        street = simulation.findStreet(0);
+    }
+
+    /**
+     * The method for deleting the scenario
+     * @throws IOException if the scenario cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkScenarios.delete(folder);
+    }
+
+    /**
+     * The benchmark of {@value #UPDATES} updates of the street
+     * @return the street
+     */
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public Street update() {
+        for (int tick = 0; tick < UPDATES; tick++) street.update(simulation);
+        return street;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the tick throughput of {@link Simulation#update(int)} on networks of different sizes. The
+ * simulation runs for {@value #SETTLING_TICKS} ticks before the measurement, so the cars have left their start
+ * positions, and every invocation simulates {@value #TICKS} ticks. The score is in ticks per second
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TickBenchmark {
+
+    private static final int SETTLING_TICKS = 2000;
+
+    private static final int TICKS = 100;
+
+    /**
+     * The scenario, see {@link BenchmarkScenarios}. dense-x500 is the network of 105000 cars the numbers of the
+     * indexed lookups were measured on
+     */
+    @Param({"basic-x1", "basic-x100", "basic-x1000", "dense-x1", "dense-x100", "dense-x500", "dense-x1000",
+        "trafficjam-x1", "trafficjam-x100", "trafficjam-x1000", "grid-10000", "highway-10000"})
+    public String scenario;
+
+    private Path folder;
+
+    private Simulation simulation;
+
+    /**
+     * The method for loading the scenario and letting it settle
+     * @throws IOException if the scenario cannot be written or loaded
+     */
+    @Setup
+    public void setUp() throws IOException {
+        folder = BenchmarkScenarios.prepare(scenario);
+        simulation = new Simulation();
+        BenchmarkScenarios.check(simulation.load(folder.toString()));
+        BenchmarkScenarios.check(simulation.update(SETTLING_TICKS));
+    }
+
+    /**
+     * The method for deleting the scenario
+     * @throws IOException if the scenario cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkScenarios.delete(folder);
+    }
+
+    /**
+     * The benchmark of {@value #TICKS} ticks
+     * @return the output of the update
+     */
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public String update() {
+        return simulation.update(TICKS);
+    }
+}
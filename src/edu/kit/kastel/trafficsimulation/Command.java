@@ -1,6 +1,13 @@
 package edu.kit.kastel.trafficsimulation;
 
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,10 +50,77 @@ public enum Command {
         }
     },
 
+    /**
+     * Advances the simulation for a length of given ticks, or up to the last tick completed in the given time
+     */
+    SIMULATE_WITHIN("simulate" + Main.COMMAND_SEPARATOR + "(\\d+)" + Main.COMMAND_SEPARATOR + "within"
+        + Main.COMMAND_SEPARATOR + "(\\d+)(ms|s)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            final SimulationRun run;
+            try {
+                run = new SimulationRun(Integer.parseInt(input.group(1)), parseBudget(input.group(2), input.group(3)));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The number of ticks and the time have to be numbers.";
+            }
+            return run.giveResult(simulation.update(run.getTicks(), run));
+        }
+    },
+
+    /**
+     * Starts advancing the simulation for a length of given ticks, optionally within the given time, in the
+     * background. The positions can be asked for while it runs
+     */
+    SIMULATE_ASYNC("simulate" + Main.COMMAND_SEPARATOR + "(\\d+)(?:" + Main.COMMAND_SEPARATOR + "within"
+        + Main.COMMAND_SEPARATOR + "(\\d+)(ms|s))?" + Main.COMMAND_SEPARATOR + "async") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            final SimulationRun run;
+            try {
+                final long budget = input.group(2) == null
+                    ? SimulationRun.NO_BUDGET : parseBudget(input.group(2), input.group(3));
+                run = new SimulationRun(Integer.parseInt(input.group(1)), budget);
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The number of ticks and the time have to be numbers.";
+            }
+            return simulation.start(run);
+        }
+    },
+
+    /**
+     * Gives the ticks the simulation in the background completed and the ticks it completes per second
+     */
+    PROGRESS("progress", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.giveProgress();
+        }
+    },
+
+    /**
+     * Stops the simulation in the background after the tick it simulates right now
+     */
+    CANCEL("cancel", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.cancel();
+        }
+    },
+
+    /**
+     * Waits until the simulation in the background is finished
+     */
+    AWAIT("await", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.await();
+        }
+    },
+
     /**
      * Gives the position, the street the car is on, and it's speed for the car with the given id
      */
-    POSITION("position" + Main.COMMAND_SEPARATOR + "\\d+") {
+    POSITION("position" + Main.COMMAND_SEPARATOR + "\\d+", true) {
         @Override
         String execute(Matcher input, final Simulation simulation) {
             int carId;
@@ -63,10 +137,292 @@ public enum Command {
         }
     },
 
+    /**
+     * Gives the positions of every car
+     */
+    POSITIONS_ALL("positions" + Main.COMMAND_SEPARATOR + "all", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            final CarPositions positions = new CarPositions();
+            final String output = simulation.givePositions(0, Integer.MAX_VALUE, positions);
+            return output != null ? output : render(positions);
+        }
+    },
+
+    /**
+     * Gives the positions of every car on the street with the given id
+     */
+    POSITIONS_STREET("positions" + Main.COMMAND_SEPARATOR + "street" + Main.COMMAND_SEPARATOR + "(\\d+)", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int streetId;
+            try {
+                streetId = Integer.parseInt(input.group(1));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The street id has to be a number.";
+            }
+            final CarPositions positions = new CarPositions();
+            final String output = simulation.giveStreetPositions(streetId, positions);
+            return output != null ? output : render(positions);
+        }
+    },
+
+    /**
+     * Gives the positions of every car whose id is in the given range
+     */
+    POSITIONS_RANGE("positions" + Main.COMMAND_SEPARATOR + "(\\d+)-(\\d+)", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int minCarId;
+            int maxCarId;
+            try {
+                minCarId = Integer.parseInt(input.group(1));
+                maxCarId = Integer.parseInt(input.group(2));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The car ids have to be numbers.";
+            }
+            if (minCarId > maxCarId) {
+                return Main.ERROR + "The first car id of a range cannot be greater than the last.";
+            }
+            final CarPositions positions = new CarPositions();
+            final String output = simulation.givePositions(minCarId, maxCarId, positions);
+            return output != null ? output : render(positions);
+        }
+    },
+
+    /**
+     * Turns the parallel update of the streets on or off
+     */
+    PARALLEL("parallel" + Main.COMMAND_SEPARATOR + "(on|off)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            simulation.setParallel(input.group(1).equals("on"));
+            return Main.READY;
+        }
+    },
+
+    /**
+     * Turns the metrics of the simulation on or off
+     */
+    METRICS_SWITCH("metrics" + Main.COMMAND_SEPARATOR + "(on|off)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.setMetrics(input.group(1).equals("on"));
+        }
+    },
+
+    /**
+     * Gives the metrics collected since they were turned on
+     */
+    METRICS("metrics", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.giveMetrics();
+        }
+    },
+
+    /**
+     * Turns the congestion detector on or off
+     */
+    CONGESTION_SWITCH("congestion" + Main.COMMAND_SEPARATOR + "(on|off)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            simulation.setCongestion(input.group(1).equals("on"));
+            return Main.READY;
+        }
+    },
+
+    /**
+     * Gives the given number of most congested streets
+     */
+    CONGESTION_TOP("congestion" + Main.COMMAND_SEPARATOR + "top" + Main.COMMAND_SEPARATOR + "(\\d+)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int count;
+            try {
+                count = Integer.parseInt(input.group(1));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The number of streets has to be a number.";
+            }
+            return simulation.giveCongestion(count);
+        }
+    },
+
+    /**
+     * Partitions the streets of the network for the parallel update
+     */
+    PARTITION("partition" + Main.COMMAND_SEPARATOR + "\\d+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int parts;
+            try {
+                parts = Integer
+                    .parseInt(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.PARTITION_SUBSTRING_OFFSET));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The number of parts has to be a number.";
+            }
+            return simulation.partition(parts);
+        }
+    },
+
+    /**
+     * Distributes the simulation over the given number of worker processes
+     */
+    DISTRIBUTE("distribute" + Main.COMMAND_SEPARATOR + "\\d+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int processes;
+            try {
+                processes = Integer
+                    .parseInt(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.DISTRIBUTE_SUBSTRING_OFFSET));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The number of processes has to be a number.";
+            }
+            return simulation.distribute(processes);
+        }
+    },
+
+    /**
+     * Stops the worker processes, the simulation is advanced in this process again
+     */
+    DISTRIBUTE_OFF("distribute" + Main.COMMAND_SEPARATOR + "off") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.stopDistribution();
+        }
+    },
+
+    /**
+     * Saves the state of the simulation in to the given snapshot file
+     */
+    SAVE("save" + Main.COMMAND_SEPARATOR + "[^ ]+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.save(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.SAVE_SUBSTRING_OFFSET));
+        }
+    },
+
+    /**
+     * Restores the state of the simulation from the given snapshot file
+     */
+    RESTORE("restore" + Main.COMMAND_SEPARATOR + "[^ ]+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation
+                .restore(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.RESTORE_SUBSTRING_OFFSET));
+        }
+    },
+
+    /**
+     * Stops writing checkpoints
+     */
+    CHECKPOINT_OFF("checkpoint off") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.stopCheckpoints();
+        }
+    },
+
+    /**
+     * Writes a checkpoint of the simulation in to the given log every given number of ticks
+     */
+    CHECKPOINT("checkpoint" + Main.COMMAND_SEPARATOR + "([^ ]+)" + Main.COMMAND_SEPARATOR + "(\\d+)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int interval;
+            try {
+                interval = Integer.parseInt(input.group(2));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The interval has to be a number.";
+            }
+            return simulation.startCheckpoints(input.group(1), interval);
+        }
+    },
+
+    /**
+     * Rolls the simulation back to the checkpoint of the given tick
+     */
+    ROLLBACK("rollback" + Main.COMMAND_SEPARATOR + "\\d+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            long tick;
+            try {
+                tick = Long
+                    .parseLong(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.ROLLBACK_SUBSTRING_OFFSET));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The tick has to be a number.";
+            }
+            return simulation.rollback(tick);
+        }
+    },
+
+    /**
+     * Stops recording the trajectories of the cars
+     */
+    RECORD_OFF("record off") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.stopRecording();
+        }
+    },
+
+    /**
+     * Records the trajectory of every car in to the given file on every tick
+     */
+    RECORD("record" + Main.COMMAND_SEPARATOR + "[^ ]+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation
+                .startRecording(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.RECORD_SUBSTRING_OFFSET));
+        }
+    },
+
+    /**
+     * Forks the simulation in to a new simulation with the given name
+     */
+    FORK("fork" + Main.COMMAND_SEPARATOR + "[^ ]+") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            return simulation.fork(input.group(Main.FIRST_PARAMETER_INDEX).substring(Main.FORK_SUBSTRING_OFFSET));
+        }
+    },
+
+    /**
+     * Executes the given command on the fork with the given name, a quit fork is removed
+     */
+    ON("on" + Main.COMMAND_SEPARATOR + "([^ ]+)" + Main.COMMAND_SEPARATOR + "(.+)", true) {
+        @Override
+        String execute(Matcher input, final Simulation simulation) throws IOException {
+            final Simulation fork = simulation.findFork(input.group(1));
+            if (fork == null) return Main.ERROR + "No such fork exists";
+            final String output = executeCommand(input.group(2), fork);
+            simulation.removeQuitFork(input.group(1));
+            return output;
+        }
+    },
+
+    /**
+     * Changes the duration of the green light of the crossing with the given id
+     */
+    LIGHT("light" + Main.COMMAND_SEPARATOR + "(\\d+)" + Main.COMMAND_SEPARATOR + "(\\d+)") {
+        @Override
+        String execute(Matcher input, final Simulation simulation) {
+            int crossingId;
+            int duration;
+            try {
+                crossingId = Integer.parseInt(input.group(1));
+                duration = Integer.parseInt(input.group(2));
+            }   catch (IllegalArgumentException illegalArgumentException) {
+                return Main.ERROR + "The crossing id and the duration have to be numbers.";
+            }
+            return simulation.setGreenLightDuration(crossingId, duration);
+        }
+    },
+
     /**
      * Quits the simulation
      */
-    QUIT("quit") {
+    QUIT("quit", true) {
         @Override
         String execute(Matcher input, final Simulation simulation) {
             simulation.quit();
@@ -78,9 +434,28 @@ public enum Command {
      * The error message if the given command is not found
      */
     public static final String COMMAND_NOT_FOUND = Main.ERROR + "Command not found!";
+
+    /**
+     * The output of a position command that found no car, so that an empty result is not mistaken for no output
+     */
+    public static final String NO_CARS = "No cars";
     
+    private static final Map<String, Command[]> COMMANDS_BY_KEYWORD = new HashMap<>();
+
+    static {
+        final Map<String, List<Command>> commands = new HashMap<>();
+        for (final Command command : Command.values()) {
+            commands.computeIfAbsent(command.keyword, keyword -> new ArrayList<>()).add(command);
+        }
+        commands.forEach((keyword, list) -> COMMANDS_BY_KEYWORD.put(keyword, list.toArray(new Command[0])));
+    }
+
     private final Pattern pattern;
 
+    private final String keyword;
+
+    private final boolean whileSimulating;
+
     /**
      * Instantiates a new command with the given String. The given String must be a
      * compilable {@link Pattern}.
@@ -88,13 +463,30 @@ public enum Command {
      * @param pattern the pattern of this command
      */
     Command(final String pattern) {
+        this(pattern, false);
+    }
+
+    /**
+     * Instantiates a new command with the given String. The given String must be a
+     * compilable {@link Pattern}.
+     *
+     * @param pattern the pattern of this command
+     * @param whileSimulating true, if the command can be executed while a simulation runs in the background
+     */
+    Command(final String pattern, final boolean whileSimulating) {
         this.pattern = Pattern.compile(pattern);
+        this.whileSimulating = whileSimulating;
+        final int separator = pattern.indexOf(Main.COMMAND_SEPARATOR);
+        this.keyword = separator < 0 ? pattern : pattern.substring(0, separator);
     }
 
     /**
      * Executes the command contained in the input if there is any, returns an error
      * message otherwise. If a command is found in the input, returns the result of
-     * this input performed on the simulation
+     * this input performed on the simulation. Only the commands whose keyword is the first
+     * word of the input are tried, which gives the same result as trying every command as
+     * every pattern starts with the keyword of its command. While a simulation runs in the
+     * background, only the commands that do not change the state are executed
      *
      * @param input the line of input
      * @param simulation the {@link Simulation} the command is executed on
@@ -103,15 +495,53 @@ public enum Command {
      *         null if there is no output
      */
     public static String executeCommand(final String input, final Simulation simulation) throws IOException {
-        for (final Command command : Command.values()) {
+        final int separator = input.indexOf(Main.COMMAND_SEPARATOR);
+        final Command[] commands = COMMANDS_BY_KEYWORD.get(separator < 0 ? input : input.substring(0, separator));
+        if (commands == null) return COMMAND_NOT_FOUND;
+        for (final Command command : commands) {
             final Matcher matcher = command.pattern.matcher(input);
             if (matcher.matches()) {
+                if (!command.whileSimulating && simulation.isSimulating()) {
+                    return Main.ERROR + "A simulation is running in the background, it has to be awaited or "
+                        + "cancelled first";
+                }
                 return command.execute(matcher, simulation);
             }
         }
         return COMMAND_NOT_FOUND;
     }
 
+    /**
+     * Parses the given time of a simulation
+     *
+     * @param amount the amount of time
+     * @param unit the unit of the time, either ms or s
+     * @return the time in nanoseconds
+     */
+    private static long parseBudget(String amount, String unit) {
+        final TimeUnit timeUnit = unit.equals("s") ? TimeUnit.SECONDS : TimeUnit.MILLISECONDS;
+        return timeUnit.toNanos(Long.parseLong(amount));
+    }
+
+    /**
+     * Renders the given positions with one line per car in the format of the position command
+     *
+     * @param positions the collected positions
+     * @return the lines, or {@value #NO_CARS} if no car was collected
+     */
+    private static String render(CarPositions positions) {
+        if (positions.size() == 0) return NO_CARS;
+        final StringBuilder output = new StringBuilder();
+        for (int index = 0; index < positions.size(); index++) {
+            if (index > 0) output.append(System.lineSeparator());
+            output.append("Car ").append(positions.getId(index))
+                .append(" on street ").append(positions.getStreetId(index))
+                .append(" with speed ").append(positions.getSpeed(index))
+                .append(" and position ").append(positions.getPosition(index));
+        }
+        return output.toString();
+    }
+
     /**
      * Executes the given input on the given simulation
      *
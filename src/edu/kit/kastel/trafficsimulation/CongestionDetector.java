@@ -0,0 +1,134 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Street;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps rolling aggregates of every street, so that congested streets can be found without reading the positions of
+ * every car. Every {@value #SAMPLE_INTERVAL} ticks a sample of the number of cars, the sum of their speeds, the cars
+ * that crossed to another street and the cars queued at a red light is taken per street. The last
+ * {@value #WINDOW_SAMPLES} samples are kept in ring buffers with running sums, so a sample and a query of one street
+ * take constant time. The speeds and the number of cars of a sleeping street do not change, so it is sampled without
+ * being woken up
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class CongestionDetector {
+
+    /**
+     * The number of ticks between two samples
+     */
+    static final int SAMPLE_INTERVAL = 16;
+
+    private static final int WINDOW_SAMPLES = 16;
+
+    private final List<Street> streets;
+
+    private final int[] carSamples;
+
+    private final int[] speedSamples;
+
+    private final int[] crossedSamples;
+
+    private final int[] queuedSamples;
+
+    private final long[] carSums;
+
+    private final long[] speedSums;
+
+    private final long[] crossedSums;
+
+    private final long[] queuedSums;
+
+    private final long[] lastCrossed;
+
+    private int nextSample;
+
+    private int samples;
+
+    /**
+     * Instantiates a new detector without samples
+     * @param streets the streets ordered by their ids
+     */
+    CongestionDetector(List<Street> streets) {
+        final int numberOfStreets = streets.size();
+        this.streets = streets;
+        this.carSamples = new int[numberOfStreets * WINDOW_SAMPLES];
+        this.speedSamples = new int[numberOfStreets * WINDOW_SAMPLES];
+        this.crossedSamples = new int[numberOfStreets * WINDOW_SAMPLES];
+        this.queuedSamples = new int[numberOfStreets * WINDOW_SAMPLES];
+        this.carSums = new long[numberOfStreets];
+        this.speedSums = new long[numberOfStreets];
+        this.crossedSums = new long[numberOfStreets];
+        this.queuedSums = new long[numberOfStreets];
+        this.lastCrossed = new long[numberOfStreets];
+        for (int id = 0; id < numberOfStreets; id++) lastCrossed[id] = streets.get(id).getCrossedCars();
+    }
+
+    /**
+     * The method for taking a sample of every street, which replaces the oldest sample once the window is full
+     * @param simulation the simulation the streets are a part of
+     */
+    void sample(final Simulation simulation) {
+        for (int id = 0; id < streets.size(); id++) {
+            final Street street = streets.get(id);
+            final int index = id * WINDOW_SAMPLES + nextSample;
+            final int numberOfCars = street.getNumberOfCars();
+            final int speedSum = street.getSpeedSum();
+            final int crossed = (int) (street.getCrossedCars() - lastCrossed[id]);
+            final int queued = numberOfCars == 0 ? 0 : street.getQueueLength(simulation);
+            lastCrossed[id] = street.getCrossedCars();
+            carSums[id] += numberOfCars - carSamples[index];
+            carSamples[index] = numberOfCars;
+            speedSums[id] += speedSum - speedSamples[index];
+            speedSamples[index] = speedSum;
+            crossedSums[id] += crossed - crossedSamples[index];
+            crossedSamples[index] = crossed;
+            queuedSums[id] += queued - queuedSamples[index];
+            queuedSamples[index] = queued;
+        }
+        nextSample = (nextSample + 1) % WINDOW_SAMPLES;
+        samples = Math.min(samples + 1, WINDOW_SAMPLES);
+    }
+
+    /**
+     * The method for giving the given number of most congested streets. The congestion of a street is its
+     * occupancy weighted by how far the mean speed of its cars is below the speed limit
+     * @param count the highest number of streets that are given
+     * @return the streets from the most congested one on with their aggregates, one per line; null, if no street
+     *         had cars during the window
+     */
+    String giveTop(int count) {
+        if (samples == 0) return null;
+        final double[] congestion = new double[streets.size()];
+        final PriorityQueue<Integer> top = new PriorityQueue<>(
+            (first, second) -> congestion[first] != congestion[second]
+                ? Double.compare(congestion[first], congestion[second]) : Integer.compare(second, first));
+        for (int id = 0; id < streets.size(); id++) {
+            congestion[id] = getOccupancy(id) * (1 - getMeanSpeed(id) / streets.get(id).getSpeedLimit());
+            if (congestion[id] <= 0) continue;
+            top.add(id);
+            if (top.size() > count) top.poll(); // removes the least congested street
+        }
+        if (top.isEmpty()) return null;
+        final String[] lines = new String[top.size()];
+        for (int line = lines.length - 1; line >= 0; line--) {
+            final int id = top.poll();
+            lines[line] = String.format("Street %d with congestion %.2f, occupancy %.2f, mean speed %.2f, "
+                + "throughput %.2f and queue %.2f", id, congestion[id], getOccupancy(id), getMeanSpeed(id),
+                (double) crossedSums[id] / (samples * SAMPLE_INTERVAL), (double) queuedSums[id] / samples);
+        }
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    private double getOccupancy(int id) {
+        return (double) carSums[id] / samples * Main.MINIMUM_DISTANCE / streets.get(id).getLength();
+    }
+
+    private double getMeanSpeed(int id) {
+        return carSums[id] == 0 ? 0 : (double) speedSums[id] / carSums[id];
+    }
+}
@@ -0,0 +1,156 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Crossing;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+import edu.kit.kastel.trafficsimulation.util.IntIndex;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Partitions the road network in to parts of about the same number of crossings, so that as few streets as
+ * possible connect two different parts. Every street belongs to the part of the crossing it starts at
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class GraphPartitioner {
+
+    private static final int REFINEMENT_PASSES = 4;
+
+    private static final int UNASSIGNED = -1;
+
+    private final int[] streetStart;
+
+    private final int[] streetEnd;
+
+    private final int[][] incidentStreets;
+
+    private final int[] crossingPartition;
+
+    private final int[] streetPartition;
+
+    private int cutStreets;
+
+    /**
+     * Instantiates a new partitioner for the given road network
+     * @param crossings the crossings of the network
+     * @param streets the streets of the network, the id of a street has to be its index
+     */
+    public GraphPartitioner(List<Crossing> crossings, List<Street> streets) {
+        final IntIndex<Integer> crossingIndices = new IntIndex<>();
+        this.streetStart = new int[streets.size()];
+        this.streetEnd = new int[streets.size()];
+        final int[] degrees = new int[crossings.size()];
+        for (int c = 0; c < crossings.size(); c++) {
+            final Crossing crossing = crossings.get(c);
+            crossingIndices.put(crossing.getId(), c);
+            for (int direction = 0; direction < crossing.getNumberOfExitStreets(); direction++) {
+                streetStart[crossing.getExitStreet(direction)] = c;
+            }
+        }
+        for (Street street : streets) {
+            streetEnd[street.getId()] = crossingIndices.get(street.getEndNodeId());
+            degrees[streetStart[street.getId()]]++;
+            degrees[streetEnd[street.getId()]]++;
+        }
+        this.incidentStreets = new int[crossings.size()][];
+        for (int c = 0; c < crossings.size(); c++) {
+            incidentStreets[c] = new int[degrees[c]];
+            degrees[c] = 0;
+        }
+        for (int s = 0; s < streets.size(); s++) {
+            incidentStreets[streetStart[s]][degrees[streetStart[s]]++] = s;
+            incidentStreets[streetEnd[s]][degrees[streetEnd[s]]++] = s;
+        }
+        this.crossingPartition = new int[crossings.size()];
+        this.streetPartition = new int[streets.size()];
+    }
+
+    /**
+     * The method for partitioning the network in to the given number of parts. The parts are grown breadth first
+     * from a seed crossing and then refined by moving crossings at the border to the part they are connected most to
+     * @param parts the number of parts, at least 1
+     */
+    public void partition(int parts) {
+        final int numberOfCrossings = crossingPartition.length;
+        final int target = (numberOfCrossings + parts - 1) / parts;
+        final int[] sizes = new int[parts];
+        final int[] queue = new int[numberOfCrossings];
+        Arrays.fill(crossingPartition, UNASSIGNED);
+        int nextSeed = 0;
+        for (int part = 0; part < parts; part++) {
+            int head = 0;
+            int tail = 0;
+            while (sizes[part] < target || part == parts - 1) {
+                if (head == tail) { // the part is not connected any further, continue at the next free crossing
+                    while (nextSeed < numberOfCrossings && crossingPartition[nextSeed] != UNASSIGNED) nextSeed++;
+                    if (nextSeed == numberOfCrossings) break;
+                    crossingPartition[nextSeed] = part;
+                    sizes[part]++;
+                    queue[tail++] = nextSeed;
+                    continue;
+                }
+                final int crossing = queue[head++];
+                for (int street : incidentStreets[crossing]) {
+                    final int neighbour = streetStart[street] == crossing ? streetEnd[street] : streetStart[street];
+                    if (crossingPartition[neighbour] != UNASSIGNED) continue;
+                    if (sizes[part] >= target && part != parts - 1) break;
+                    crossingPartition[neighbour] = part;
+                    sizes[part]++;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        refine(parts, sizes, target);
+        cutStreets = 0;
+        for (int s = 0; s < streetPartition.length; s++) {
+            streetPartition[s] = crossingPartition[streetStart[s]];
+            if (crossingPartition[streetStart[s]] != crossingPartition[streetEnd[s]]) cutStreets++;
+        }
+    }
+
+    /**
+     * the getter method for the part of every street
+     * @return the part of every street, indexed by the id of the street
+     */
+    public int[] getStreetPartition() {
+        return streetPartition;
+    }
+
+    /**
+     * the getter method for the number of streets that connect two different parts
+     * @return the number of cut streets
+     */
+    public int getCutStreets() {
+        return cutStreets;
+    }
+
+    private void refine(int parts, int[] sizes, int target) {
+        final int lowerBound = Math.max(1, target - target / 20 - 1);
+        final int upperBound = target + target / 20 + 1;
+        final int[] connections = new int[parts];
+        for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+            boolean moved = false;
+            for (int crossing = 0; crossing < crossingPartition.length; crossing++) {
+                final int own = crossingPartition[crossing];
+                Arrays.fill(connections, 0);
+                for (int street : incidentStreets[crossing]) {
+                    final int neighbour = streetStart[street] == crossing ? streetEnd[street] : streetStart[street];
+                    connections[crossingPartition[neighbour]]++;
+                }
+                int best = own;
+                for (int part = 0; part < parts; part++) {
+                    if (connections[part] > connections[best] && sizes[part] < upperBound) best = part;
+                }
+                if (best != own && sizes[own] > lowerBound) {
+                    crossingPartition[crossing] = best;
+                    sizes[own]--;
+                    sizes[best]++;
+                    moved = true;
+                }
+            }
+            if (!moved) return;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package edu.kit.kastel.trafficsimulation;
 
 import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
 import edu.kit.kastel.trafficsimulation.objects.Crossing;
 import edu.kit.kastel.trafficsimulation.objects.Street;
 
@@ -44,6 +45,36 @@ public interface ISimulation {
      */
     String giveCarPosition(int carId);
 
+    /**
+     * The method for adding the position of the car with the given id to the given collection
+     *
+     * @param carId the given car id
+     * @param positions the collection the position is added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String giveCarPosition(int carId, CarPositions positions);
+
+    /**
+     * The method for collecting the positions of every car whose id is in the given range in one pass over the
+     * streets. The cars are ordered by the ids of their streets and from the car ahead to the car behind
+     *
+     * @param minCarId the lowest id of a collected car
+     * @param maxCarId the highest id of a collected car
+     * @param positions the collection the positions are added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String givePositions(int minCarId, int maxCarId, CarPositions positions);
+
+    /**
+     * The method for collecting the positions of every car on the street with the given id, from the car ahead to
+     * the car behind
+     *
+     * @param streetId the given street id
+     * @param positions the collection the positions are added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String giveStreetPositions(int streetId, CarPositions positions);
+
     /**
      * The method for advancing the simulation for the given ticks
      *
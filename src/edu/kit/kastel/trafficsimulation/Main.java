@@ -1,7 +1,27 @@
 package edu.kit.kastel.trafficsimulation;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Main class for the second final assignment. Contains the entry point
@@ -37,6 +57,41 @@ public final class Main {
      */
     public static final int SIM_POS_SUBSTRING_OFFSET = 9;
 
+    /**
+     * The offset number required to separate the number and the command partition
+     */
+    public static final int PARTITION_SUBSTRING_OFFSET = 10;
+
+    /**
+     * The offset number required to separate the number and the command distribute
+     */
+    public static final int DISTRIBUTE_SUBSTRING_OFFSET = 11;
+
+    /**
+     * The offset number required to separate the path and the command save
+     */
+    public static final int SAVE_SUBSTRING_OFFSET = 5;
+
+    /**
+     * The offset number required to separate the path and the command restore
+     */
+    public static final int RESTORE_SUBSTRING_OFFSET = 8;
+
+    /**
+     * The offset number required to separate the tick and the command rollback
+     */
+    public static final int ROLLBACK_SUBSTRING_OFFSET = 9;
+
+    /**
+     * The offset number required to separate the path and the command record
+     */
+    public static final int RECORD_SUBSTRING_OFFSET = 7;
+
+    /**
+     * The offset number required to separate the name and the command fork
+     */
+    public static final int FORK_SUBSTRING_OFFSET = 5;
+
     /**
      * The minimum distance two cars have to hold between
      */
@@ -102,6 +157,28 @@ public final class Main {
      */
     public static final int MAXIMUM_ACCELERATION = 10;
 
+    /**
+     * The maximum number of worker processes a simulation can be distributed over
+     */
+    public static final int MAXIMUM_PROCESSES = 64;
+
+    /**
+     * The argument that makes the batch mode read the commands from the standard input
+     */
+    public static final String STANDARD_INPUT = "-";
+
+    /**
+     * The suffix of the file the outputs of a scenario are written to in the host mode
+     */
+    public static final String HOST_OUTPUT_SUFFIX = ".out";
+
+    /**
+     * The argument that makes the program serve the simulation over the binary protocol of {@link SimulationServer}
+     */
+    public static final String SERVER_ARGUMENT = "--server";
+
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+
     /**
      * Private constructor to avoid object generation
      */
@@ -111,13 +188,31 @@ public final class Main {
 
     /**
      * Entry point to the program. Checks the given input and produces corresponding
-     * output.
-     * @param args should be empty
+     * output. Without arguments the commands are read interactively, with one argument they are
+     * executed in batch mode, and with more arguments every argument is a scenario run in the host mode
+     * @param args empty, or the path of a command file or {@value #STANDARD_INPUT} for the
+     *        standard input to run in batch mode, or the paths of several command files to run in host mode,
+     *        or {@value #SERVER_ARGUMENT} and a port or the path of a Unix domain socket to serve the simulation
      * @throws IOException if the load command is called for a non-existent or an empty file
      */
     public static void main(String[] args) throws IOException {
-        Scanner scanner = new Scanner(System.in);
+        if (args.length == 2 && args[0].equals(SERVER_ARGUMENT)) {
+            try (SimulationServer server = new SimulationServer(args[1], new Simulation())) {
+                System.out.println("Serving on " + server.getAddress());
+                server.serve();
+            }
+            return;
+        }
+        if (args.length > 1) {
+            runHost(args);
+            return;
+        }
         Simulation simulation = new Simulation();
+        if (args.length > 0) {
+            runBatch(args[0], simulation, new FileOutputStream(FileDescriptor.out));
+            return;
+        }
+        Scanner scanner = new Scanner(System.in);
         
         while (simulation.isRunning()) {
             final String input = scanner.nextLine();
@@ -125,4 +220,81 @@ public final class Main {
             if (output != null) System.out.println(output);
         }
     }
+
+    /**
+     * Executes the commands of the given file until it ends or the simulation is quit. The
+     * outputs are the same as in the interactive mode, but they are collected in a buffer
+     * that is only written once every command that can be read without waiting is executed
+     * @param file the path of the command file, or {@value #STANDARD_INPUT} for the standard input
+     * @param simulation the simulation the commands are executed on
+     * @param outputStream the stream the outputs are written to
+     * @throws IOException if the file cannot be read or the load command is called for a
+     *         non-existent or an empty file
+     */
+    private static void runBatch(String file, Simulation simulation, OutputStream outputStream)
+        throws IOException {
+        final Charset charset = Charset.defaultCharset(); // the same charset as the interactive mode
+        final InputStream input = file.equals(STANDARD_INPUT)
+            ? System.in : Channels.newInputStream(FileChannel.open(Path.of(file)));
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset), BATCH_BUFFER_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset), BATCH_BUFFER_SIZE)) {
+            String line;
+            while (simulation.isRunning() && (line = reader.readLine()) != null) {
+                final String output = Command.executeCommand(line, simulation);
+                if (output != null) {
+                    writer.write(output);
+                    writer.write(System.lineSeparator());
+                }
+                if (!reader.ready()) writer.flush(); // the batch ends where reading would wait for more input
+            }
+        }   finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Runs every given command file as a scenario on its own simulation, as many at once as there are processors.
+     * The outputs of a scenario are written in batch mode to its file with the suffix {@value #HOST_OUTPUT_SUFFIX},
+     * and the scenarios loading the same folder share its network instead of reading it again
+     * @param files the paths of the command files
+     * @throws IOException if a file cannot be read or written, which does not stop the other scenarios
+     */
+    private static void runHost(String[] files) throws IOException {
+        for (String file : files) {
+            if (file.equals(STANDARD_INPUT)) throw new IOException("the standard input cannot be a scenario.");
+        }
+        final NetworkCache networks = new NetworkCache();
+        final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.min(files.length, Runtime.getRuntime().availableProcessors()));
+        final List<Future<?>> scenarios = new ArrayList<>();
+        IOException failure = null;
+        try {
+            for (String file : files) {
+                scenarios.add(workers.submit(() -> {
+                    try (OutputStream outputStream = Files.newOutputStream(Path.of(file + HOST_OUTPUT_SUFFIX))) {
+                        final Simulation simulation = new Simulation(networks);
+                        runBatch(file, simulation, outputStream);
+                        simulation.quit(); // every recording of the scenario is written before the host ends
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> scenario : scenarios) {
+                try {
+                    scenario.get();
+                }   catch (ExecutionException executionException) {
+                    final Throwable cause = executionException.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof IOException ioException ? ioException : new IOException(cause);
+                    }
+                }   catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("the host was interrupted.", interruptedException);
+                }
+            }
+        }   finally {
+            workers.shutdownNow();
+        }
+        if (failure != null) throw failure;
+    }
 }
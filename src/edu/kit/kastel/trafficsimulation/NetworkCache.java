@@ -0,0 +1,84 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.SimulationFileLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares the loaded networks between the simulations of one process. The first simulation that loads a folder reads
+ * and checks its files and captures the loaded state, every other simulation loading the same folder builds its own
+ * crossings, streets and cars from the captured state without reading the files again. The captured state is never
+ * changed, so it is shared by every simulation. A folder whose files were changed since is read again, and a folder
+ * that fails to load is not captured at all
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class NetworkCache {
+
+    private static final String[] FILES = {SimulationFileLoader.FILENAME_CROSSINGS,
+        SimulationFileLoader.FILENAME_STREETS, SimulationFileLoader.FILENAME_CARS};
+
+    private final ConcurrentHashMap<Path, Network> networks = new ConcurrentHashMap<>();
+
+    /**
+     * The method for loading the given folder in to the given simulation. Simulations loading the same folder at
+     * once wait for the first one, so the files are only read once
+     * @param file the path to the folder
+     * @param simulation the simulation the folder is loaded in to
+     * @return An error message, if an error occurs; Ready, otherwise
+     * @throws IOException if the files cannot be read
+     */
+    String load(String file, Simulation simulation) throws IOException {
+        final Path folder = Path.of(file).normalize().toAbsolutePath();
+        final Network network = networks.computeIfAbsent(folder, key -> new Network());
+        synchronized (network) {
+            final long[] stamp = stamp(folder);
+            if (stamp != null && network.state != null && Arrays.equals(stamp, network.stamp)) {
+                return simulation.loadState(network.state);
+            }
+            final String output = simulation.loadFiles(file);
+            if (stamp != null && output.equals(Main.READY)) {
+                network.state = simulation.captureState();
+                network.stamp = stamp;
+            }
+            return output;
+        }
+    }
+
+    /**
+     * The method for reading the sizes and modification times of the files of the given folder
+     * @param folder the path to the folder
+     * @return the size and modification time of every file; null, if a file cannot be read
+     */
+    private static long[] stamp(Path folder) {
+        final long[] stamp = new long[2 * FILES.length];
+        try {
+            for (int index = 0; index < FILES.length; index++) {
+                final Path path = folder.resolve(FILES[index]);
+                stamp[2 * index] = Files.size(path);
+                stamp[2 * index + 1] = Files.getLastModifiedTime(path).toMillis();
+            }
+        }   catch (IOException ioException) {
+            return null; // the files are read anyway, which reports the error
+        }
+        return stamp;
+    }
+
+    /**
+     * The captured state of a folder and the stamp of its files when it was captured
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Network {
+
+        private int[][] state;
+
+        private long[] stamp;
+    }
+}
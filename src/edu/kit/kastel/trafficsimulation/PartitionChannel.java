@@ -0,0 +1,284 @@
+package edu.kit.kastel.trafficsimulation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The connection between the coordinator and a worker process of the distributed mode. Every message is a frame of
+ * little endian values that starts with the number of bytes following it and the operation of the message, like the
+ * frames of {@link SimulationServer}. The operations are:
+ * <ul>
+ *     <li>{@value #HELLO}, worker to coordinator: the part of the worker</li>
+ *     <li>{@value #PARTITION}: the part of every street and the number of parts</li>
+ *     <li>{@value #LOAD}: the captured state with the cars of the part</li>
+ *     <li>{@value #SIMULATE}: the number of ticks the worker advances its state for</li>
+ *     <li>{@value #TICK}: nothing, the worker starts a tick even though none of its streets is awake</li>
+ *     <li>{@value #EXCHANGE}, worker to coordinator: for every part, the cars the worker let cross in to it in
+ *     the last round, the answers it assumed for them and its answers for the cars of the part</li>
+ *     <li>{@value #EXCHANGED}: 1 if the tick is finished, otherwise 0 and for every part the cars it let cross in
+ *     to the worker and its answers for the cars of the worker</li>
+ *     <li>{@value #SKIP}: the number of ticks in which no street of any worker is updated</li>
+ *     <li>{@value #IDLE}, worker to coordinator: the number of next ticks in which no street of the worker is
+ *     updated</li>
+ *     <li>{@value #LIGHT}: the crossing and the new duration of its green light</li>
+ *     <li>{@value #GATHER}: nothing, the worker replies with a {@value #STATE}</li>
+ *     <li>{@value #STATE}, worker to coordinator: the captured state of the part</li>
+ *     <li>{@value #QUIT}: nothing, the worker ends</li>
+ * </ul>
+ * A crossing car is sent as {@value #REQUEST_VALUES} values: the street it enters, the street it leaves, its id,
+ * maximum speed, acceleration, desired direction, speed and position, the maximum position it can go and if it waits
+ * at the end of the street it leaves. An answer is 1 if the car entered and 0 if there was no room for it
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class PartitionChannel implements Closeable {
+
+    /**
+     * The operation a worker introduces itself with
+     */
+    static final byte HELLO = 1;
+
+    /**
+     * The operation giving a worker the parts of the streets
+     */
+    static final byte PARTITION = 2;
+
+    /**
+     * The operation handing a worker the state of its part
+     */
+    static final byte LOAD = 3;
+
+    /**
+     * The operation advancing the state of a worker
+     */
+    static final byte SIMULATE = 4;
+
+    /**
+     * The operation starting a tick in an idle worker
+     */
+    static final byte TICK = 5;
+
+    /**
+     * The operation sending the crossing cars and answers of a round to the coordinator
+     */
+    static final byte EXCHANGE = 6;
+
+    /**
+     * The operation answering {@value #EXCHANGE}
+     */
+    static final byte EXCHANGED = 7;
+
+    /**
+     * The operation skipping idle ticks in a worker
+     */
+    static final byte SKIP = 8;
+
+    /**
+     * The operation a worker waits with until it is told to tick or to skip ticks
+     */
+    static final byte IDLE = 9;
+
+    /**
+     * The operation changing a traffic light in a worker
+     */
+    static final byte LIGHT = 10;
+
+    /**
+     * The operation asking a worker for its state
+     */
+    static final byte GATHER = 11;
+
+    /**
+     * The operation answering {@value #GATHER}
+     */
+    static final byte STATE = 12;
+
+    /**
+     * The operation ending a worker
+     */
+    static final byte QUIT = 13;
+
+    /**
+     * The number of values of a crossing car
+     */
+    static final int REQUEST_VALUES = 10;
+
+    /**
+     * The id given instead of a street if a worker has no further street to update in the current tick
+     */
+    static final int NO_TURN = Integer.MAX_VALUE;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private ByteBuffer output = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private ByteBuffer input = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Instantiates a new connection on the given connected channel
+     * @param channel the channel in blocking mode
+     * @throws IOException if the channel cannot be configured
+     */
+    PartitionChannel(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // most messages are waited for right away
+    }
+
+    /**
+     * The method for starting a new message, whose values are put in to the returned buffer
+     * @param operation the operation of the message
+     * @param bytes the number of bytes of the values of the message
+     * @return the buffer of the message
+     */
+    ByteBuffer start(byte operation, int bytes) {
+        final int needed = Integer.BYTES + 1 + bytes;
+        if (output.capacity() < needed) output = ByteBuffer.allocate(needed).order(ByteOrder.LITTLE_ENDIAN);
+        output.clear();
+        output.putInt(0);
+        output.put(operation);
+        return output;
+    }
+
+    /**
+     * The method for sending the message started last
+     * @throws IOException if the message cannot be written
+     */
+    void send() throws IOException {
+        output.flip();
+        output.putInt(0, output.remaining() - Integer.BYTES);
+        while (output.hasRemaining()) channel.write(output);
+    }
+
+    /**
+     * The method for sending a message without values
+     * @param operation the operation of the message
+     * @throws IOException if the message cannot be written
+     */
+    void send(byte operation) throws IOException {
+        start(operation, 0);
+        send();
+    }
+
+    /**
+     * The method for sending a message with one integer
+     * @param operation the operation of the message
+     * @param value the integer
+     * @throws IOException if the message cannot be written
+     */
+    void send(byte operation, int value) throws IOException {
+        start(operation, Integer.BYTES).putInt(value);
+        send();
+    }
+
+    /**
+     * The method for reading the next message, whose operation is read first from the returned buffer
+     * @return the buffer of the message, which is only valid until the next message is read
+     * @throws IOException if the message cannot be read or the connection was closed
+     */
+    ByteBuffer receive() throws IOException {
+        length.clear();
+        readFully(length);
+        final int bytes = length.getInt(0);
+        if (bytes < 1) throw new IOException("the distributed mode received a corrupted message.");
+        if (input.capacity() < bytes) input = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        input.clear().limit(bytes);
+        readFully(input);
+        return input.flip();
+    }
+
+    /**
+     * The method for reading the next message, which has to have the given operation
+     * @param operation the expected operation
+     * @return the buffer of the message after the operation
+     * @throws IOException if the message cannot be read or has another operation
+     */
+    ByteBuffer receive(byte operation) throws IOException {
+        final ByteBuffer message = receive();
+        final byte received = message.get();
+        if (received != operation) {
+            throw new IOException(String.format("the distributed mode expected message %d, not %d.", operation,
+                received));
+        }
+        return message;
+    }
+
+    /**
+     * The method for reading the integer of the next message, which has to have the given operation
+     * @param operation the expected operation
+     * @return the integer of the message
+     * @throws IOException if the message cannot be read or has another operation
+     */
+    int receiveInt(byte operation) throws IOException {
+        return receive(operation).getInt();
+    }
+
+    /**
+     * The method for counting the bytes {@link #putInts(ByteBuffer, int[][])} puts for the given arrays
+     * @param arrays the arrays
+     * @return the number of bytes
+     */
+    static int sizeOf(int[][] arrays) {
+        int bytes = Integer.BYTES;
+        for (int[] values : arrays) bytes += Integer.BYTES * (1 + values.length);
+        return bytes;
+    }
+
+    /**
+     * The method for putting the given arrays in to a message, each after its length
+     * @param message the buffer of the message
+     * @param arrays the arrays
+     */
+    static void putInts(ByteBuffer message, int[][] arrays) {
+        message.putInt(arrays.length);
+        for (int[] values : arrays) {
+            message.putInt(values.length);
+            message.asIntBuffer().put(values);
+            message.position(message.position() + Integer.BYTES * values.length);
+        }
+    }
+
+    /**
+     * The method for getting arrays put by {@link #putInts(ByteBuffer, int[][])} from a message
+     * @param message the buffer of the message
+     * @return the arrays
+     * @throws IOException if the message is corrupted
+     */
+    static int[][] getInts(ByteBuffer message) throws IOException {
+        final int count = message.getInt();
+        if (count < 0 || count > message.remaining() / Integer.BYTES) {
+            throw new IOException("the distributed mode received a corrupted message.");
+        }
+        final int[][] arrays = new int[count][];
+        for (int array = 0; array < count; array++) {
+            final int values = message.getInt();
+            if (values < 0 || values > message.remaining() / Integer.BYTES) {
+                throw new IOException("the distributed mode received a corrupted message.");
+            }
+            arrays[array] = new int[values];
+            message.asIntBuffer().get(arrays[array]);
+            message.position(message.position() + Integer.BYTES * values);
+        }
+        return arrays;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("the other process of the distributed mode ended.");
+        }
+    }
+}
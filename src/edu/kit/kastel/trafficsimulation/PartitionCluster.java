@@ -0,0 +1,275 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.SimulationSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The coordinator of the distributed mode, which runs a simulation in several {@link PartitionWorker} processes on
+ * the same machine, each owning the streets of one part of the network. The workers are started as new Java
+ * processes with the class path of this one and connect to the coordinator on the loopback address. The coordinator
+ * hands every worker the cars of its part once, the workers keep them between simulations until the state is
+ * gathered. A tick is run in rounds: every worker updates its streets, assuming answers for the cars it lets cross
+ * in to other parts, and sends the crossing cars and its answers for the cars of the others in one message.
+ * The coordinator passes them on to the workers they are meant for, and the tick is finished once a round crossed
+ * the same cars as the one before and every assumed answer was the answer of the worker owning the street
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class PartitionCluster implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+
+    private static final long QUIT_TIMEOUT_MILLIS = 5000;
+
+    private final int[] streetParts;
+
+    private final Process[] processes;
+
+    private final PartitionChannel[] workers;
+
+    private final int[][][] exchanges;
+
+    private final int[][][] requests;
+
+    private boolean loaded;
+
+    private long ticksAhead;
+
+    private PartitionCluster(int[] streetParts, int parts) {
+        this.streetParts = streetParts;
+        this.processes = new Process[parts];
+        this.workers = new PartitionChannel[parts];
+        this.exchanges = new int[parts][][];
+        this.requests = new int[parts][parts][];
+        clearRequests();
+    }
+
+    /**
+     * The method for starting a worker process for every part and waiting until every worker is connected
+     * @param streetParts the part of every street
+     * @param parts the number of parts
+     * @return the cluster of the workers
+     * @throws IOException if a worker cannot be started or does not connect in time
+     */
+    static PartitionCluster start(int[] streetParts, int parts) throws IOException {
+        final PartitionCluster cluster = new PartitionCluster(streetParts, parts);
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final String port = String.valueOf(((InetSocketAddress) server.getLocalAddress()).getPort());
+            final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for (int part = 0; part < parts; part++) {
+                cluster.processes[part] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    PartitionWorker.class.getName(), port, String.valueOf(part))
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            }
+            server.socket().setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (int connected = 0; connected < parts; connected++) {
+                final PartitionChannel worker = new PartitionChannel(server.socket().accept().getChannel());
+                final int part = worker.receiveInt(PartitionChannel.HELLO);
+                if (part < 0 || part >= parts || cluster.workers[part] != null) {
+                    worker.close();
+                    throw new IOException("a worker of the distributed mode has an invalid part.");
+                }
+                cluster.workers[part] = worker;
+            }
+            for (PartitionChannel worker : cluster.workers) {
+                final int[][] partition = {streetParts, {parts}};
+                PartitionChannel.putInts(worker.start(PartitionChannel.PARTITION, PartitionChannel.sizeOf(partition)),
+                    partition);
+                worker.send();
+            }
+        }   catch (SocketTimeoutException socketTimeoutException) {
+            cluster.close();
+            throw new IOException("the workers of the distributed mode did not connect in time.");
+        }   catch (IOException ioException) {
+            cluster.close();
+            throw ioException;
+        }
+        return cluster;
+    }
+
+    /**
+     * The method for checking if the workers hold the state of the simulation
+     * @return true, if the state was handed to the workers; false, otherwise
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * the getter method for the number of ticks the workers advanced the state since it was handed to them or
+     * gathered from them last
+     * @return the number of ticks
+     */
+    long getTicksAhead() {
+        return ticksAhead;
+    }
+
+    /**
+     * The method for handing every worker the cars of its part of the given state
+     * @param state the captured state of the simulation, which is not changed
+     * @throws IOException if a worker fails
+     */
+    void load(int[][] state) throws IOException {
+        for (int part = 0; part < workers.length; part++) {
+            final int[][] partState = SimulationSnapshot.withCarsOf(state, streetParts, part);
+            PartitionChannel.putInts(workers[part].start(PartitionChannel.LOAD, PartitionChannel.sizeOf(partState)),
+                partState);
+            workers[part].send();
+        }
+        loaded = true;
+        ticksAhead = 0;
+    }
+
+    /**
+     * The method for advancing the state held by the workers for the given ticks
+     * @param simulated the number of ticks
+     * @throws IOException if a worker fails
+     */
+    void simulate(int simulated) throws IOException {
+        for (PartitionChannel worker : workers) worker.send(PartitionChannel.SIMULATE, simulated);
+        long remaining = simulated;
+        while (remaining > 0) {
+            // every worker either started the tick with its first round or waits for the ticks it can skip
+            int idleTicks = Integer.MAX_VALUE;
+            for (int part = 0; part < workers.length; part++) {
+                final ByteBuffer message = workers[part].receive();
+                final byte operation = message.get();
+                if (operation == PartitionChannel.IDLE) {
+                    idleTicks = Math.min(idleTicks, message.getInt());
+                    exchanges[part] = null;
+                }
+                else if (operation == PartitionChannel.EXCHANGE) exchanges[part] = PartitionChannel.getInts(message);
+                else throw new IOException(String.format("the coordinator received an unknown message %d.", operation));
+            }
+            if (idleTicks < Integer.MAX_VALUE && Arrays.stream(exchanges).allMatch(exchange -> exchange == null)) {
+                // every street of every worker sleeps, so the ticks are skipped everywhere
+                remaining -= idleTicks;
+                for (PartitionChannel worker : workers) worker.send(PartitionChannel.SKIP, idleTicks);
+                continue;
+            }
+            for (int part = 0; part < workers.length; part++) {
+                if (exchanges[part] != null) continue;
+                workers[part].send(PartitionChannel.TICK);
+                exchanges[part] = PartitionChannel.getInts(workers[part].receive(PartitionChannel.EXCHANGE));
+            }
+            while (!exchange()) {
+                for (int part = 0; part < workers.length; part++) {
+                    exchanges[part] = PartitionChannel.getInts(workers[part].receive(PartitionChannel.EXCHANGE));
+                }
+            }
+            remaining--;
+        }
+        ticksAhead += simulated;
+    }
+
+    /**
+     * The method for changing the duration of the green light of the given crossing in every worker, if they hold
+     * the state
+     * @param crossingId the id of the crossing
+     * @param duration the new duration of the green light
+     * @throws IOException if a worker fails
+     */
+    void setGreenLightDuration(int crossingId, int duration) throws IOException {
+        if (!loaded) return;
+        for (PartitionChannel worker : workers) {
+            worker.start(PartitionChannel.LIGHT, 2 * Integer.BYTES).putInt(crossingId).putInt(duration);
+            worker.send();
+        }
+    }
+
+    /**
+     * The method for gathering the state from the workers, which keep it
+     * @return the captured state joined from every part
+     * @throws IOException if a worker fails
+     */
+    int[][] gather() throws IOException {
+        final int[][][] states = new int[workers.length][][];
+        for (PartitionChannel worker : workers) worker.send(PartitionChannel.GATHER);
+        for (int part = 0; part < workers.length; part++) {
+            states[part] = PartitionChannel.getInts(workers[part].receive(PartitionChannel.STATE));
+        }
+        ticksAhead = 0;
+        return SimulationSnapshot.join(states, streetParts);
+    }
+
+    /**
+     * The method for stopping every worker process
+     */
+    @Override
+    public void close() {
+        for (PartitionChannel worker : workers) {
+            if (worker == null) continue;
+            try {
+                worker.send(PartitionChannel.QUIT);
+                worker.close();
+            }   catch (IOException ioException) {
+                // the worker ended already
+            }
+        }
+        for (Process process : processes) {
+            if (process == null) continue;
+            try {
+                if (!process.waitFor(QUIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) process.destroyForcibly();
+            }   catch (InterruptedException interruptedException) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The method for passing on the crossing cars and answers of the round every worker sent. The tick is finished
+     * if every worker let the same cars cross as in the round before and assumed the answers the owners of their
+     * streets gave, so that every car entered its street in the same order and at the same state as in a single
+     * process. Otherwise every worker gets the cars crossing in to it and the answers for its own cars, and runs
+     * another round
+     * @return true, if the tick is finished; false, otherwise
+     * @throws IOException if a worker fails
+     */
+    private boolean exchange() throws IOException {
+        boolean finished = true;
+        for (int part = 0; part < workers.length; part++) {
+            for (int other = 0; other < workers.length; other++) {
+                final int[] crossing = exchanges[part][3 * other];
+                finished &= Arrays.equals(crossing, requests[part][other])
+                    && Arrays.equals(exchanges[part][3 * other + 1], exchanges[other][3 * part + 2]);
+                requests[part][other] = crossing;
+            }
+        }
+        if (finished) {
+            for (PartitionChannel worker : workers) worker.send(PartitionChannel.EXCHANGED, 1);
+            clearRequests();
+            return true;
+        }
+        final int[][] relayed = new int[2 * workers.length][];
+        for (int part = 0; part < workers.length; part++) {
+            for (int other = 0; other < workers.length; other++) {
+                relayed[2 * other] = exchanges[other][3 * part];
+                relayed[2 * other + 1] = exchanges[other][3 * part + 2];
+            }
+            final ByteBuffer message = workers[part].start(PartitionChannel.EXCHANGED,
+                Integer.BYTES + PartitionChannel.sizeOf(relayed));
+            message.putInt(0);
+            PartitionChannel.putInts(message, relayed);
+            workers[part].send();
+        }
+        return false;
+    }
+
+    private void clearRequests() {
+        for (int[][] crossing : requests) Arrays.fill(crossing, new int[0]);
+    }
+}
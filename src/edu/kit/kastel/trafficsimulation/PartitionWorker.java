@@ -0,0 +1,435 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * A worker process of the distributed mode, started by a {@link PartitionCluster}. The worker builds every crossing
+ * and street of the network, but only the streets of its part hold cars, so the cars are spread over the workers. In
+ * every tick, the worker first updates each of its streets whose cars cannot leave it ahead of its turn, like the
+ * first phase of the parallel mode. The streets left are updated in rounds in the order of their ids. A car crossing
+ * in to a street of another part is collected for that part, and is assumed to enter it with the answer the owner
+ * gave in the last round, or to enter it if there was none. The cars of the other parts enter the streets of the
+ * worker at the turn of the streets they leave. After a round, the worker exchanges the collected cars and its
+ * answers with the others through the coordinator. The next round starts at the first turn whose crossing cars or
+ * assumed answers changed: every street changed from that turn on is restored from the copy kept before it changed,
+ * and the turns before it are not run again. Once no answer or crossing car changes, the round did the same as a
+ * single process
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class PartitionWorker {
+
+    private static final int[] NONE = new int[0];
+
+    // a turn is logged with its street, the cursor, the number of kept streets and of wake ups before it, followed
+    // by the next car of every part and the number of values sent to every part
+
+    private static final int TURN_VALUES = 4;
+
+    private final PartitionChannel channel;
+
+    private final int part;
+
+    private final Simulation simulation = new Simulation();
+
+    private int[] streetParts = new int[0];
+
+    private int parts;
+
+    private long remaining;
+
+    private int cursor;
+
+    private int[] next = NONE;
+
+    private int[] turns = NONE;
+
+    private int turnCount;
+
+    private long stamp;
+
+    private long[] keptStamps = new long[0];
+
+    private int[] keptStreets = NONE;
+
+    private Street.Kept[] keptCopies = new Street.Kept[0];
+
+    private RemoteStreet[] remoteStreets = new RemoteStreet[0];
+
+    private int keptCount;
+
+    private int[][] incoming = new int[0][];
+
+    private int[][] assumed = new int[0][];
+
+    private int[][] answered = new int[0][];
+
+    private int[][] sent = new int[0][];
+
+    private int[][] requests = new int[0][];
+
+    private int[] requestValues = NONE;
+
+    private int[][] used = new int[0][];
+
+    private int[][] answers = new int[0][];
+
+    private PartitionWorker(PartitionChannel channel, int part) {
+        this.channel = channel;
+        this.part = part;
+    }
+
+    /**
+     * Entry point of a worker process
+     * @param args the port of the coordinator on the loopback address and the part of the worker
+     * @throws IOException if the connection to the coordinator fails
+     */
+    public static void main(String[] args) throws IOException {
+        final SocketChannel socket = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            Integer.parseInt(args[0])));
+        try (PartitionChannel channel = new PartitionChannel(socket)) {
+            new PartitionWorker(channel, Integer.parseInt(args[1])).serve();
+        }
+    }
+
+    /**
+     * The method for checking if the given street belongs to the part of the worker
+     * @param streetId the id of the street
+     * @return true, if the street is one of the worker; false, if it is one of another worker
+     */
+    boolean owns(int streetId) {
+        return streetParts[streetId] == part;
+    }
+
+    /**
+     * The method for keeping a copy of the given street of the worker before it changes for the first time in the
+     * current turn, so that the turn can be undone
+     * @param streetId the id of the street
+     */
+    void keep(int streetId) {
+        if (keptStamps[streetId] == stamp) return;
+        keptStamps[streetId] = stamp;
+        if (keptCount == keptCopies.length) {
+            keptCopies = Arrays.copyOf(keptCopies, Math.max(1, 2 * keptCount));
+            keptStreets = Arrays.copyOf(keptStreets, keptCopies.length);
+        }
+        if (keptCopies[keptCount] == null) keptCopies[keptCount] = new Street.Kept();
+        simulation.findStreet(streetId).keep(keptCopies[keptCount]);
+        keptStreets[keptCount++] = streetId;
+    }
+
+    /**
+     * The method for giving the stand-in for the given street of another worker in the exit tables of the streets of
+     * the worker
+     * @param street the street of another worker
+     * @return the stand-in, which is created once per street
+     */
+    Street remoteStreet(Street street) {
+        if (remoteStreets[street.getId()] == null) remoteStreets[street.getId()] = new RemoteStreet(street, this);
+        return remoteStreets[street.getId()];
+    }
+
+    /**
+     * The method for letting a crossing car enter a street of another worker, in the turn of the street it leaves.
+     * The car is collected for the owner of the street, which answers it in the next round
+     * @param id the id of the street the car enters
+     * @param sourceStreetId the id of the street the car leaves
+     * @param car the car
+     * @param maxPos the maximum position the car can go on the street this tick
+     * @param waiting true, if the car waits at the end of the street it leaves
+     * @return the answer the owner gave in the last round for the car, or true if it did not get the car
+     */
+    boolean enterRemote(int id, int sourceStreetId, Car car, int maxPos, boolean waiting) {
+        final int owner = streetParts[id];
+        final int index = requestValues[owner] / PartitionChannel.REQUEST_VALUES;
+        if (requestValues[owner] == requests[owner].length) {
+            requests[owner] = Arrays.copyOf(requests[owner], Math.max(PartitionChannel.REQUEST_VALUES,
+                2 * requests[owner].length));
+            used[owner] = Arrays.copyOf(used[owner], requests[owner].length / PartitionChannel.REQUEST_VALUES);
+        }
+        final int[] values = requests[owner];
+        int value = requestValues[owner];
+        values[value++] = id;
+        values[value++] = sourceStreetId;
+        values[value++] = car.getId();
+        values[value++] = car.getMaxSpeed();
+        values[value++] = car.getAcceleration();
+        values[value++] = car.getDesiredDirection();
+        values[value++] = car.getSpeed();
+        values[value++] = car.getPosition();
+        values[value++] = maxPos;
+        values[value++] = waiting ? 1 : 0;
+        requestValues[owner] = value;
+        final boolean entered = assume(owner, car.getId(), index);
+        used[owner][index] = entered ? 1 : 0;
+        return entered;
+    }
+
+    private void serve() throws IOException {
+        simulation.setWorker(this);
+        channel.send(PartitionChannel.HELLO, part);
+        while (true) {
+            final ByteBuffer message = channel.receive();
+            final byte operation = message.get();
+            switch (operation) {
+                case PartitionChannel.PARTITION -> {
+                    final int[][] partition = PartitionChannel.getInts(message);
+                    partition(partition[0], partition[1][0]);
+                }
+                case PartitionChannel.LOAD -> simulation.loadState(PartitionChannel.getInts(message));
+                case PartitionChannel.SIMULATE -> {
+                    remaining = message.getInt();
+                    advance();
+                }
+                case PartitionChannel.TICK -> startTick();
+                case PartitionChannel.EXCHANGED -> {
+                    if (message.getInt() != 0) {
+                        simulation.finishDistributedTick();
+                        remaining--;
+                        advance();
+                    }
+                    else {
+                        undo(receiveRound(PartitionChannel.getInts(message)));
+                        runRound();
+                    }
+                }
+                case PartitionChannel.SKIP -> {
+                    final int skipped = message.getInt();
+                    simulation.skipDistributedTicks(skipped);
+                    remaining -= skipped;
+                    advance();
+                }
+                case PartitionChannel.LIGHT -> simulation.setGreenLightDuration(message.getInt(), message.getInt());
+                case PartitionChannel.GATHER -> {
+                    final int[][] state = simulation.captureDistributedState();
+                    PartitionChannel.putInts(channel.start(PartitionChannel.STATE, PartitionChannel.sizeOf(state)),
+                        state);
+                    channel.send();
+                }
+                case PartitionChannel.QUIT -> {
+                    return;
+                }
+                default -> throw new IOException(String.format("the worker received an unknown message %d.",
+                    operation));
+            }
+        }
+    }
+
+    private void partition(int[] streetPartition, int numberOfParts) {
+        streetParts = streetPartition;
+        parts = numberOfParts;
+        keptStamps = new long[streetPartition.length];
+        remoteStreets = new RemoteStreet[streetPartition.length];
+        next = new int[parts];
+        incoming = new int[parts][];
+        assumed = new int[parts][];
+        answered = new int[parts][];
+        sent = new int[parts][];
+        requests = new int[parts][];
+        requestValues = new int[parts];
+        used = new int[parts][];
+        answers = new int[parts][];
+        Arrays.fill(requests, NONE);
+        Arrays.fill(used, NONE);
+    }
+
+    /**
+     * The method for starting the next tick, or for telling the coordinator the number of next ticks in which no
+     * street of the worker is updated. Nothing is sent once every tick is simulated
+     * @throws IOException if the message cannot be sent
+     */
+    private void advance() throws IOException {
+        if (remaining == 0) return;
+        final long idleTicks = simulation.getIdleTicks(remaining);
+        if (idleTicks > 0) channel.send(PartitionChannel.IDLE, (int) idleTicks);
+        else startTick();
+    }
+
+    /**
+     * The method for starting a tick with its first round, in which no car crosses in to the worker
+     * @throws IOException if the round cannot be sent
+     */
+    private void startTick() throws IOException {
+        simulation.startDistributedTick();
+        cursor = 0;
+        turnCount = 0;
+        keptCount = 0;
+        Arrays.fill(next, 0);
+        Arrays.fill(requestValues, 0);
+        Arrays.fill(incoming, NONE);
+        Arrays.fill(assumed, NONE);
+        Arrays.fill(answered, NONE);
+        Arrays.fill(sent, NONE);
+        Arrays.fill(answers, NONE);
+        runRound();
+    }
+
+    /**
+     * The method for running the turns of the current round that are left and sending the crossing cars and the
+     * answers of the round to the coordinator. The streets of the worker and the cars crossing in to them have
+     * their turn in the order of the ids of the streets they leave
+     * @throws IOException if the round cannot be sent
+     */
+    private void runRound() throws IOException {
+        while (true) {
+            final int id = simulation.nextTurn(cursor);
+            int from = -1;
+            int source = PartitionChannel.NO_TURN;
+            for (int other = 0; other < parts; other++) {
+                if (next[other] < incoming[other].length && incoming[other][next[other] + 1] < source) {
+                    source = incoming[other][next[other] + 1];
+                    from = other;
+                }
+            }
+            if (from < 0 && id == PartitionChannel.NO_TURN) break;
+            logTurn(Math.min(id, source));
+            if (from >= 0 && source < id) {
+                // the streets of the worker before the one the car leaves had their turn, even one it wakes up
+                answers[from][next[from] / PartitionChannel.REQUEST_VALUES] = enter(incoming[from], next[from]) ? 1 : 0;
+                next[from] += PartitionChannel.REQUEST_VALUES;
+                cursor = Math.max(cursor, source + 1);
+            }
+            else {
+                keep(id);
+                simulation.updateInTurn(id);
+                cursor = id + 1;
+            }
+        }
+        final int[][] exchange = new int[3 * parts][];
+        for (int other = 0; other < parts; other++) {
+            final int crossing = requestValues[other] / PartitionChannel.REQUEST_VALUES;
+            exchange[3 * other] = Arrays.copyOf(requests[other], requestValues[other]);
+            exchange[3 * other + 1] = Arrays.copyOf(used[other], crossing);
+            exchange[3 * other + 2] = answers[other];
+            answered[other] = sent[other]; // the answers of the next exchange are for the cars sent before
+            sent[other] = exchange[3 * other];
+        }
+        PartitionChannel.putInts(channel.start(PartitionChannel.EXCHANGE, PartitionChannel.sizeOf(exchange)),
+            exchange);
+        channel.send();
+    }
+
+    /**
+     * The method for taking the crossing cars and answers of another round, and for finding the first turn of the
+     * last round that they change
+     * @param relayed the cars crossing in to the worker and the answers for the cars of the worker, of every part
+     * @return the id of the street of the first changed turn, or {@link PartitionChannel#NO_TURN} if none changed
+     */
+    private int receiveRound(int[][] relayed) {
+        int changed = PartitionChannel.NO_TURN;
+        for (int other = 0; other < parts; other++) {
+            changed = Math.min(changed, firstChange(incoming[other], relayed[2 * other]));
+            incoming[other] = relayed[2 * other];
+            assumed[other] = relayed[2 * other + 1];
+            answers[other] = Arrays.copyOf(answers[other], incoming[other].length / PartitionChannel.REQUEST_VALUES);
+        }
+        for (int other = 0; other < parts; other++) {
+            for (int value = 0; value < requestValues[other]; value += PartitionChannel.REQUEST_VALUES) {
+                final int index = value / PartitionChannel.REQUEST_VALUES;
+                if (assume(other, requests[other][value + 2], index) != (used[other][index] != 0)) {
+                    changed = Math.min(changed, requests[other][value + 1]);
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * The method for undoing every turn of the current round from the turn of the given street on
+     * @param streetId the id of the street of the first undone turn
+     */
+    private void undo(int streetId) {
+        final int stride = TURN_VALUES + 2 * parts;
+        int turn = turnCount;
+        while (turn > 0 && turns[(turn - 1) * stride] >= streetId) turn--;
+        if (turn == turnCount) return;
+        final int offset = turn * stride;
+        // the copies are restored from the last one, so every car is a view on its slot before the turn again
+        while (keptCount > turns[offset + 2]) {
+            keptCount--;
+            simulation.findStreet(keptStreets[keptCount]).restore(keptCopies[keptCount]);
+        }
+        simulation.undoWakeUps(turns[offset + 3]);
+        cursor = turns[offset + 1];
+        System.arraycopy(turns, offset + TURN_VALUES, next, 0, parts);
+        System.arraycopy(turns, offset + TURN_VALUES + parts, requestValues, 0, parts);
+        turnCount = turn;
+    }
+
+    private void logTurn(int streetId) {
+        final int stride = TURN_VALUES + 2 * parts;
+        if ((turnCount + 1) * stride > turns.length) turns = Arrays.copyOf(turns, Math.max(stride, 2 * turns.length));
+        final int offset = turnCount * stride;
+        turns[offset] = streetId;
+        turns[offset + 1] = cursor;
+        turns[offset + 2] = keptCount;
+        turns[offset + 3] = simulation.getWakeUps();
+        System.arraycopy(next, 0, turns, offset + TURN_VALUES, parts);
+        System.arraycopy(requestValues, 0, turns, offset + TURN_VALUES + parts, parts);
+        turnCount++;
+        stamp++; // every street changed in the turn is kept again
+    }
+
+    /**
+     * The method for finding the answer the given owner gave in the last round for the given car. The car is
+     * searched from the place it is sent in, where it is found unless the cars sent before it changed
+     * @param owner the part owning the street the car enters
+     * @param carId the id of the car
+     * @param index the place of the car among the cars sent to the owner in the current round
+     * @return the answer, or true if the owner did not get the car
+     */
+    private boolean assume(int owner, int carId, int index) {
+        final int[] given = assumed[owner];
+        for (int searched = 0; searched < given.length; searched++) {
+            final int candidate = (index + searched) % given.length;
+            if (answered[owner][candidate * PartitionChannel.REQUEST_VALUES + 2] == carId) {
+                return given[candidate] != 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The method for letting a car of another worker enter a street of the worker
+     * @param values the crossing cars of the other worker
+     * @param offset the index of the first value of the car
+     * @return true, if the car entered the street; false, if there is no room for it
+     */
+    private boolean enter(int[] values, int offset) {
+        final Car car = new Car(values[offset + 2], values[offset + 3], values[offset + 4], values[offset + 5],
+            values[offset + 6], values[offset + 7]);
+        return simulation.enterStreet(values[offset], values[offset + 1], car, values[offset + 8],
+            values[offset + 9] != 0);
+    }
+
+    /**
+     * The method for finding the first car that differs between two lists of crossing cars, ordered by the streets
+     * they leave
+     * @param before the cars of the last round
+     * @param after the cars of the next round
+     * @return the id of the street the first differing car leaves, or {@link PartitionChannel#NO_TURN} if the lists
+     *     are the same
+     */
+    private static int firstChange(int[] before, int[] after) {
+        int value = 0;
+        while (value < before.length && value < after.length
+            && Arrays.equals(before, value, value + PartitionChannel.REQUEST_VALUES, after, value,
+                value + PartitionChannel.REQUEST_VALUES)) {
+            value += PartitionChannel.REQUEST_VALUES;
+        }
+        int changed = PartitionChannel.NO_TURN;
+        if (value < before.length) changed = before[value + 1];
+        if (value < after.length) changed = Math.min(changed, after[value + 1]);
+        return changed;
+    }
+}
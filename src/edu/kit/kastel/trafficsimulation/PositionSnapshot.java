@@ -0,0 +1,218 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+import edu.kit.kastel.trafficsimulation.util.IntIndex;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A copy of the positions of every car as they were at the end of the last published tick, which other threads can
+ * read while the simulation goes on. Every street has two versions of its copy, each stamped with the epoch it was
+ * written in. The simulation writes the streets updated in a tick in to their older version, so it only copies what
+ * the tick changed, and publishes the new epoch when the tick ends. A reader takes the newest version of every
+ * street that is not newer than the published epoch, and advances the cars of a street that slept since by their
+ * speed. A reader never blocks the simulation: it reads again if an epoch was published meanwhile, and while a
+ * reader is reading, the simulation keeps writing the same epoch and publishes it once no one reads or the update
+ * ends
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class PositionSnapshot {
+
+    private static final int EPOCH = 0;
+
+    private static final int TICK = 2;
+
+    private static final int STATE_VALUES = 4;
+
+    private static final int ID_VALUE = 0;
+
+    private static final int SPEED_VALUE = 1;
+
+    private static final int POSITION_VALUE = 2;
+
+    private static final int PUBLISHED_TICKS = 2;
+
+    private final IntIndex<Car> carIndex;
+
+    private final long[] states;
+
+    private final int[][] values;
+
+    private final AtomicInteger readers = new AtomicInteger();
+
+    // the tick of an epoch is kept apart from the tick of the epoch before, so that a reader of the published epoch
+    // never pairs it with the tick of the next one, which is written before the next epoch is published
+    private final long[] publishedTicks = new long[PUBLISHED_TICKS];
+
+    private volatile long publishedEpoch;
+
+    private long writtenEpoch = 1;
+
+    /**
+     * Instantiates a new snapshot, nothing is published until every street is copied
+     * @param numberOfStreets the number of streets
+     * @param carIndex the index of the cars, which is not changed afterwards
+     */
+    PositionSnapshot(int numberOfStreets, IntIndex<Car> carIndex) {
+        this.carIndex = carIndex;
+        // the epochs and ticks of both versions of a street are kept next to each other
+        this.states = new long[STATE_VALUES * numberOfStreets];
+        this.values = new int[2 * numberOfStreets][1];
+    }
+
+    /**
+     * The method for copying the cars of the given street in to the epoch that is published next
+     * @param street the street
+     * @param tick the tick the positions of the cars belong to
+     */
+    void copy(Street street, long tick) {
+        final int state = STATE_VALUES * street.getId();
+        final long firstEpoch = states[state + EPOCH];
+        final long secondEpoch = states[state + EPOCH + 1];
+        // the version written in the current epoch already, or the older one
+        final int version = secondEpoch == writtenEpoch
+            || firstEpoch != writtenEpoch && secondEpoch < firstEpoch ? 1 : 0;
+        values[2 * street.getId() + version] = street.copyCars(values[2 * street.getId() + version]);
+        states[state + TICK + version] = tick;
+        states[state + EPOCH + version] = writtenEpoch;
+    }
+
+    /**
+     * The method for publishing the epoch written since the last one. Unless it is forced, nothing is published
+     * while someone is reading and the next copies are added to the same epoch, so a reader is not made to read
+     * again after every tick
+     * @param tick the tick that ended
+     * @param force true, if the epoch is published even while someone is reading; false, otherwise
+     */
+    void publish(long tick, boolean force) {
+        if (!force && readers.get() > 0) return;
+        publishedTicks[(int) (writtenEpoch % PUBLISHED_TICKS)] = tick;
+        publishedEpoch = writtenEpoch; // the copies written before are visible to every reader of the epoch
+        writtenEpoch++;
+    }
+
+    /**
+     * The method for adding the position of the car with the given id to the given collection. The car is searched
+     * on the street it is on right now first, which it was on in the published tick as well unless it crossed since
+     * @param carId the given car id
+     * @param positions the collection the position is added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String giveCarPosition(int carId, CarPositions positions) {
+        final Car car = carIndex.get(carId);
+        if (car == null) return Main.ERROR + "No such car exists";
+        read(positions, (epoch, tick) -> {
+            final int streetId = car.getStreetId();
+            if (streetId >= 0 && addStreet(streetId, carId, carId, epoch, tick, positions) > 0) return;
+            for (int id = 0; id < values.length / 2; id++) {
+                if (addStreet(id, carId, carId, epoch, tick, positions) > 0) return;
+            }
+        });
+        return null;
+    }
+
+    /**
+     * The method for collecting the positions of every car whose id is in the given range, ordered by the ids of
+     * their streets and from the car ahead to the car behind
+     * @param minCarId the lowest id of a collected car
+     * @param maxCarId the highest id of a collected car
+     * @param positions the collection the positions are added to
+     * @return null
+     */
+    String givePositions(int minCarId, int maxCarId, CarPositions positions) {
+        read(positions, (epoch, tick) -> {
+            for (int id = 0; id < values.length / 2; id++) addStreet(id, minCarId, maxCarId, epoch, tick, positions);
+        });
+        return null;
+    }
+
+    /**
+     * The method for collecting the positions of every car on the street with the given id, from the car ahead to
+     * the car behind
+     * @param streetId the given street id
+     * @param positions the collection the positions are added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String giveStreetPositions(int streetId, CarPositions positions) {
+        if (streetId < 0 || streetId >= values.length / 2) return Main.ERROR + "No such street exists";
+        read(positions, (epoch, tick) -> addStreet(streetId, 0, Integer.MAX_VALUE, epoch, tick, positions));
+        return null;
+    }
+
+    /**
+     * The method for reading the published epoch until it was not replaced during the read. The positions added
+     * by a read that has to be repeated are removed again
+     * @param positions the collection the reader adds to
+     * @param reader the reader
+     */
+    private void read(CarPositions positions, EpochReader reader) {
+        final int size = positions.size();
+        readers.incrementAndGet();
+        try {
+            while (true) {
+                final long epoch = publishedEpoch;
+                reader.read(epoch, publishedTicks[(int) (epoch % PUBLISHED_TICKS)]);
+                VarHandle.acquireFence(); // the copies and the tick are read before the epoch is checked again
+                if (publishedEpoch == epoch) return;
+                positions.truncate(size);
+            }
+        }   finally {
+            readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * The method for adding the cars of the given street whose ids are in the given range, as they are in the given
+     * epoch, to the given collection
+     * @param streetId the id of the street
+     * @param minCarId the lowest id of an added car
+     * @param maxCarId the highest id of an added car
+     * @param epoch the published epoch
+     * @param tick the tick the epoch was published in
+     * @param positions the collection the positions are added to
+     * @return the number of added cars
+     */
+    private int addStreet(int streetId, int minCarId, int maxCarId, long epoch, long tick, CarPositions positions) {
+        final int state = STATE_VALUES * streetId;
+        final long firstEpoch = states[state + EPOCH];
+        final long secondEpoch = states[state + EPOCH + 1];
+        final int version = secondEpoch <= epoch && (secondEpoch > firstEpoch || firstEpoch > epoch) ? 1 : 0;
+        final int[] cars = values[2 * streetId + version];
+        // a read that is repeated may see the number of cars of another copy
+        final int count = Math.min(cars[0], (cars.length - 1) / Street.COPIED_CAR_VALUES);
+        final int ticksSlept = (int) (tick - states[state + TICK + version]);
+        int added = 0;
+        for (int index = 0; index < count; index++) {
+            final int value = 1 + index * Street.COPIED_CAR_VALUES;
+            final int carId = cars[value + ID_VALUE];
+            if (carId < minCarId || carId > maxCarId) continue;
+            final int speed = cars[value + SPEED_VALUE];
+            positions.reserve(1);
+            positions.add(carId, streetId, speed, cars[value + POSITION_VALUE] + speed * ticksSlept);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * A read of one published epoch
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    @FunctionalInterface
+    private interface EpochReader {
+
+        /**
+         * The method for reading the given epoch
+         * @param epoch the published epoch
+         * @param tick the tick the epoch was published in
+         */
+        void read(long epoch, long tick);
+    }
+}
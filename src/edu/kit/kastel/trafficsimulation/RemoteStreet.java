@@ -0,0 +1,32 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+
+/**
+ * Stands in for a street of another part in the exit tables of the streets of a worker process of the distributed
+ * mode. The stand-in never holds cars, a car entering it is handed to the worker instead, which collects it for the
+ * owner of the street
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class RemoteStreet extends Street {
+
+    private final PartitionWorker worker;
+
+    /**
+     * Instantiates a new stand-in for the given street
+     * @param street the street of another part
+     * @param worker the worker whose streets exit on the street
+     */
+    RemoteStreet(Street street, PartitionWorker worker) {
+        super(street.getId(), street.getEndNodeId(), street.getLength(), street.getType(), street.getSpeedLimit());
+        this.worker = worker;
+    }
+
+    @Override
+    public boolean enter(Car car, int sourceStreetId, int maxPos, boolean waiting, final Simulation simulation) {
+        return worker.enterRemote(getId(), sourceStreetId, car, maxPos, waiting);
+    }
+}
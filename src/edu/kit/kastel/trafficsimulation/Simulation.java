@@ -1,26 +1,86 @@
 package edu.kit.kastel.trafficsimulation;
 
+import edu.kit.kastel.trafficsimulation.io.CheckpointLog;
+import edu.kit.kastel.trafficsimulation.io.SimulationFileChunk;
 import edu.kit.kastel.trafficsimulation.io.SimulationFileLoader;
+import edu.kit.kastel.trafficsimulation.io.SimulationFilePipeline;
+import edu.kit.kastel.trafficsimulation.io.SimulationFileReader;
+import edu.kit.kastel.trafficsimulation.io.SimulationSnapshot;
+import edu.kit.kastel.trafficsimulation.io.TrajectoryRecorder;
 import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
 import edu.kit.kastel.trafficsimulation.objects.Crossing;
 import edu.kit.kastel.trafficsimulation.objects.Street;
+import edu.kit.kastel.trafficsimulation.util.IntIndex;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Encapsulates the simulation as described in the assignment
- * 
+ * Encapsulates the simulation as described in the assignment. A simulation can be forked in to named simulations
+ * that continue from its current state on their own. Every fork taken in the same state shares one captured copy of
+ * it, and a fork only builds its own crossings, streets and cars from the shared copy when it is first used, so a
+ * fork that is only created or has its lights changed costs next to nothing
+ *
  * @author ufmkk
  * @version 1.0
  */
 public class Simulation implements ISimulation {
+
+    private static final String SIMULATING = "A simulation is running in the background";
+
+    private static final String NO_RUN = "No simulation was started in the background";
+
+    // the buffer a position query reads a single car from the snapshot in to, one per querying thread
+    private static final ThreadLocal<CarPositions> CAR_POSITION = ThreadLocal.withInitial(() -> new CarPositions(1));
+
+    private static final int CROSSING_ID = 0;
+
+    private static final int CROSSING_DURATION = 1;
+
+    private static final int CROSSING_FIELDS = 2;
+
+    private static final int STREET_START = 0;
+
+    private static final int STREET_END = 1;
+
+    private static final int STREET_LENGTH = 2;
+
+    private static final int STREET_TYPE = 3;
+
+    private static final int STREET_SPEED = 4;
+
+    private static final int STREET_FIELDS = 5;
+
+    private static final int CAR_ID = 0;
+
+    private static final int CAR_STREET = 1;
+
+    private static final int CAR_MAX_SPEED = 2;
+
+    private static final int CAR_ACCELERATION = 3;
+
+    private static final int CAR_FIELDS = 4;
     
     private boolean running;
     
     private boolean loaded;
     
+    private boolean parallel;
+    
+    private int[][] partitions;
+
+    private StreetScheduler scheduler;
+
+    private boolean sleeping = true;
+
+    private Crossing[] crossingsWithLight = new Crossing[0];
+    
     private final List<Street> streets = new ArrayList<>();
     
     private final List<Crossing> crossings = new ArrayList<>();
@@ -29,12 +89,63 @@ public class Simulation implements ISimulation {
     
     private final List<Street> tempStreets = new ArrayList<>();
 
+    private IntIndex<Crossing> crossingIndex = new IntIndex<>();
+
+    private IntIndex<Car> carIndex = new IntIndex<>();
+
+    private IntIndex<Crossing> tempCrossingIndex = new IntIndex<>();
+
+    private IntIndex<Car> tempCarIndex = new IntIndex<>();
+
+    private long currentTick;
+
+    private CheckpointLog checkpointLog;
+
+    private Path checkpointFile;
+
+    private int checkpointInterval;
+
+    private boolean checkpointPending;
+
+    private SimulationMetrics metrics;
+
+    private CongestionDetector congestion;
+
+    private TrajectoryRecorder recorder;
+
+    private boolean snapshots;
+
+    private volatile PositionSnapshot snapshot;
+
+    private volatile SimulationRun background;
+
+    private final NetworkCache networks;
+
+    private PartitionCluster cluster;
+
+    private PartitionWorker worker;
+
+    private final Map<String, Simulation> forks = new HashMap<>();
+
+    private int[][] forkState;
+
+    private int[][] pendingState;
+
     /**
      * Instantiates a new simulation
      */
     Simulation() {
+        this(null);
+    }
+
+    /**
+     * Instantiates a new simulation, which shares the networks it loads with the other simulations of the cache
+     * @param networks the cache of the loaded networks, or null to read the files on every load
+     */
+    Simulation(NetworkCache networks) {
         this.running = true;
         this.loaded = false;
+        this.networks = networks;
     }
 
     /**
@@ -49,7 +160,253 @@ public class Simulation implements ISimulation {
      * The method for quitting the simulation
      */
     public void quit() {
+        if (isSimulating()) background.cancel();
+        if (background != null) background.await(); // the run stops after its current tick
         this.running = false;
+        closeCluster();
+        closeRecorder(); // the frames that are not written yet would be lost with the writer thread
+        forks.values().forEach(Simulation::quit);
+        forks.clear();
+    }
+
+    /**
+     * The method for forking the simulation in to a new simulation with the given name, which continues from the
+     * current state on its own. The fork starts in the same mode of update, without metrics, congestion detector,
+     * checkpoints or recording. A fork with the same name is replaced
+     * @param name the name of the fork
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String fork(String name) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        if (pendingState == null && forkState == null) forkState = captureState();
+        final Simulation fork = new Simulation(networks);
+        fork.loaded = true;
+        fork.parallel = parallel;
+        fork.partitions = partitions; // the partitions only depend on the network, which the fork shares
+        fork.currentTick = currentTick;
+        fork.pendingState = pendingState != null ? pendingState : forkState;
+        final Simulation replaced = forks.put(name, fork);
+        if (replaced != null) replaced.quit();
+        return Main.READY;
+    }
+
+    /**
+     * The method for finding the fork with the given name
+     * @param name the name of the fork
+     * @return the fork, if it exists; null, otherwise
+     */
+    public Simulation findFork(String name) {
+        return forks.get(name);
+    }
+
+    /**
+     * The method for removing the fork with the given name if it was quit
+     * @param name the name of the fork
+     */
+    public void removeQuitFork(String name) {
+        final Simulation fork = forks.get(name);
+        if (fork != null && !fork.isRunning()) forks.remove(name);
+    }
+
+    /**
+     * The method for changing the duration of the green light of the given crossing from the current tick on. The
+     * green light keeps shining for the same street and starts a full phase of the new duration
+     * @param crossingId the id of the crossing
+     * @param duration the new duration of the green light, 0 means there is no light
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String setGreenLightDuration(int crossingId, int duration) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        if (duration < 3 && duration != 0 || duration > Main.MAX_GREEN_LIGHT_DURATION) {
+            return Main.ERROR + "Green light duration cannot be less than 3 or greater than 10";
+        }
+        // the delta records of the log only hold the phases of the lights
+        if (checkpointLog != null) return Main.ERROR + "The lights cannot be changed while checkpoints are written";
+        if (pendingState != null) {
+            final int[][] changed = SimulationSnapshot.withGreenLightDuration(pendingState, crossingId, duration);
+            if (changed == null) return Main.ERROR + "No such crossing exists";
+            pendingState = changed; // the fork is still not built, only the crossings are copied
+            return Main.READY;
+        }
+        final Crossing crossing = findCrossing(crossingId);
+        if (crossing == null) return Main.ERROR + "No such crossing exists";
+        forkState = null;
+        crossing.setGreenLightDuration(duration, scheduler.getTick());
+        this.crossingsWithLight = findCrossingsWithLight();
+        scheduler.wakeAll(); // the streets waiting for a green light have to wait for the new one
+        if (cluster == null) return Main.READY;
+        try {
+            cluster.setGreenLightDuration(crossingId, duration);
+        }   catch (IOException ioException) {
+            return dropCluster(ioException);
+        }
+        return Main.READY;
+    }
+
+    /**
+     * The method for choosing if the streets are updated in parallel or one after another. Both modes produce
+     * the same results
+     * @param parallel true, if the streets should be updated in parallel; false, otherwise
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * The method for turning the metrics on or off. Turning them on starts every counter at 0 and registers them
+     * over JMX, turning them off removes them again
+     * @param enabled true, if the metrics should be collected; false, otherwise
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String setMetrics(boolean enabled) {
+        if (metrics != null) metrics.unregister();
+        metrics = null;
+        if (!enabled) return Main.READY;
+        final SimulationMetrics newMetrics = new SimulationMetrics();
+        final String output = newMetrics.register();
+        if (output != null) return output;
+        metrics = newMetrics;
+        return Main.READY;
+    }
+
+    /**
+     * the getter method for the metrics, which the streets add their events to
+     * @return the metrics, if they are on; null, otherwise
+     */
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The method for giving the metrics collected since they were turned on
+     * @return An error message, if the metrics are off; the metrics, otherwise
+     */
+    public String giveMetrics() {
+        if (metrics == null) return Main.ERROR + "The metrics are off";
+        return metrics.render();
+    }
+
+    /**
+     * The method for turning the position snapshot on or off. While it is on, the positions of the last published
+     * tick can be read by other threads during an update, see {@link PositionSnapshot}
+     * @param enabled true, if the snapshot should be kept; false, otherwise
+     */
+    void setSnapshots(boolean enabled) {
+        snapshots = enabled;
+        snapshot = null;
+        if (enabled && loaded) {
+            build();
+            if (snapshot == null) startSnapshot(); // building a fork starts it already
+        }
+    }
+
+    /**
+     * the getter method for the position snapshot, which can be called from any thread
+     * @return the position snapshot, if it is on and something is loaded; null, otherwise
+     */
+    PositionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * the getter method for the trajectory recorder
+     * @return the recorder, if a recording is running; null, otherwise
+     */
+    TrajectoryRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * The method for turning the congestion detector on or off. Turning it on starts with an empty window of
+     * samples, which is also emptied whenever a state is loaded, restored or rolled back
+     * @param enabled true, if the streets should be sampled; false, otherwise
+     */
+    public void setCongestion(boolean enabled) {
+        build();
+        congestion = enabled ? new CongestionDetector(streets) : null;
+    }
+
+    /**
+     * The method for giving the most congested streets over the last samples
+     * @param count the highest number of streets that are given
+     * @return An error message, if an error occurs; the streets with their aggregates or null if no street is
+     *         congested, otherwise
+     */
+    public String giveCongestion(int count) {
+        if (congestion == null) return Main.ERROR + "The congestion detector is off";
+        if (count < 1) return Main.ERROR + "The number of streets has to be at least 1";
+        return congestion.giveTop(count);
+    }
+
+    /**
+     * The method for partitioning the streets for the parallel mode, so that every worker owns the streets of one
+     * part of the network and as few streets as possible connect two parts. There are at most as many parts as
+     * streets
+     * @param parts the number of parts
+     * @return An error message, if an error occurs; the number of cut streets, otherwise
+     */
+    public String partition(int parts) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        if (parts < 1) return Main.ERROR + "The number of parts has to be at least 1";
+        if (parts > streets.size()) return Main.ERROR + "There cannot be more parts than streets";
+        final GraphPartitioner partitioner = new GraphPartitioner(crossings, streets);
+        partitioner.partition(parts);
+        final int[] streetPartition = partitioner.getStreetPartition();
+        final int[] sizes = new int[parts];
+        for (int part : streetPartition) sizes[part]++;
+        partitions = new int[parts][];
+        for (int part = 0; part < parts; part++) {
+            partitions[part] = new int[sizes[part]];
+            sizes[part] = 0;
+        }
+        for (int id = 0; id < streetPartition.length; id++) { // the streets of a part stay ordered by their id
+            partitions[streetPartition[id]][sizes[streetPartition[id]]++] = id;
+        }
+        return String.format("Partitioned in to %d parts with %d cut streets", parts, partitioner.getCutStreets());
+    }
+
+    /**
+     * The method for distributing the simulation over the given number of worker processes, each owning the streets
+     * of one part of the network, so that as few cars as possible cross from one process to another. Only a plain
+     * simulation is advanced in the workers, which keep their state between simulations. The other commands work
+     * on the state gathered from the workers when it is read.
+     * There are at most {@value Main#MAXIMUM_PROCESSES} processes and at most as many as streets
+     * @param processes the number of worker processes
+     * @return An error message, if an error occurs; the number of cut streets, otherwise
+     */
+    public String distribute(int processes) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        if (isSimulating()) return Main.ERROR + SIMULATING;
+        build();
+        if (processes < 1) return Main.ERROR + "The number of processes has to be at least 1";
+        if (processes > Main.MAXIMUM_PROCESSES) {
+            return Main.ERROR + "The number of processes cannot be more than " + Main.MAXIMUM_PROCESSES;
+        }
+        if (processes > streets.size()) return Main.ERROR + "There cannot be more processes than streets";
+        closeCluster();
+        final GraphPartitioner partitioner = new GraphPartitioner(crossings, streets);
+        partitioner.partition(processes);
+        try {
+            cluster = PartitionCluster.start(partitioner.getStreetPartition(), processes);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        return String.format("Distributed to %d processes with %d cut streets", processes,
+            partitioner.getCutStreets());
+    }
+
+    /**
+     * The method for stopping the worker processes of the distributed mode, the simulation is advanced in this
+     * process again
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String stopDistribution() {
+        if (isSimulating()) return Main.ERROR + SIMULATING;
+        if (cluster == null) return Main.ERROR + "The simulation is not distributed";
+        gather();
+        closeCluster();
+        return Main.READY;
     }
 
     /**
@@ -60,6 +417,19 @@ public class Simulation implements ISimulation {
      * @throws IOException  if the file does not exist or points to a directory.
      */
     public String load(String file) throws IOException {
+        if (isSimulating()) return Main.ERROR + SIMULATING;
+        if (networks != null) return networks.load(file, this);
+        return loadFiles(file);
+    }
+
+    /**
+     * The method for loading the data in the given folder in to the simulation by reading its files
+     * 
+     * @param file the path to the folder
+     * @return An error message, if an error occurs; Ready, otherwise
+     * @throws IOException  if the file does not exist or points to a directory.
+     */
+    String loadFiles(String file) throws IOException {
         resetTemp();
         SimulationFileLoader fileLoader;
         String output;
@@ -68,24 +438,179 @@ public class Simulation implements ISimulation {
         }   catch (IOException ioException) {
             return Main.ERROR + ioException;
         }
-        output = createCrossings(fileLoader.loadCrossings()); // checks if the given crossings are in correct format
-        if (output != null) return output;
+        // the three files are tokenised in parallel, while they are validated one after another in this thread
+        try (SimulationFilePipeline crossingFile = new SimulationFilePipeline(fileLoader::openCrossings,
+                CROSSING_FIELDS, Simulation::tokenizeCrossing);
+             SimulationFilePipeline streetFile = new SimulationFilePipeline(fileLoader::openStreets,
+                STREET_FIELDS, Simulation::tokenizeStreet);
+             SimulationFilePipeline carFile = new SimulationFilePipeline(fileLoader::openCars,
+                CAR_FIELDS, Simulation::tokenizeCar)) {
+            output = createCrossings(crossingFile); // checks if the given crossings are in correct format
+            if (output != null) return output;
+            
+            output = createStreets(streetFile); // checks if the given streets are in correct format
+            if (output != null) return output;
+            
+            output = createCars(carFile); // checks if the given cars are in correct format
+            if (output != null) return output;
+        }
         
-        output = createStreets(fileLoader.loadStreets()); // checks if the given streets are in correct format
+        output = checkValidity(); // checks if the road network is valid
         if (output != null) return output;
         
-        output = createCars(fileLoader.loadCars()); // checks if the given cars are in correct format
+        applyTemp();
+        return Main.READY;
+    }
+
+    /**
+     * The method for loading a state captured by {@link #captureState()} of another simulation
+     * 
+     * @param state the captured state, which is not changed
+     * @return Ready
+     */
+    String loadState(int[][] state) {
+        applySnapshot(SimulationSnapshot.copy(state));
+        return Main.READY;
+    }
+
+    /**
+     * The method for capturing the current state of the simulation, so that other simulations can load it
+     * 
+     * @return the captured state
+     */
+    int[][] captureState() {
+        gather();
+        return SimulationSnapshot.capture(crossings, streets);
+    }
+
+    /**
+     * The method for saving the current state of the simulation in to a binary snapshot
+     * 
+     * @param file the path of the snapshot file
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String save(String file) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        try {
+            SimulationSnapshot.save(Path.of(file), crossings, streets);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        return Main.READY;
+    }
+
+    /**
+     * The method for restoring the state of the simulation from a binary snapshot
+     * 
+     * @param file the path of the snapshot file
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String restore(String file) {
+        final SimulationSnapshot snapshot;
+        try {
+            snapshot = SimulationSnapshot.restore(Path.of(file));
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        applySnapshot(snapshot);
+        return Main.READY;
+    }
+
+    /**
+     * The method for writing checkpoints of the simulation in to the given log every given number of ticks. The
+     * log starts with a checkpoint of the current state
+     * 
+     * @param file the path of the checkpoint log, which is replaced if it exists
+     * @param interval the number of ticks between two checkpoints
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String startCheckpoints(String file, int interval) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        if (interval < 1) return Main.ERROR + "The interval has to be at least 1";
+        final String output = closeCheckpointLog();
         if (output != null) return output;
-        
-        output = checkValidity(); // checks if the road network is valid
+        try {
+            checkpointLog = CheckpointLog.create(Path.of(file), currentTick, crossings, streets);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        checkpointFile = Path.of(file);
+        checkpointInterval = interval;
+        return Main.READY;
+    }
+
+    /**
+     * The method for stopping the checkpoints, after every checkpoint taken so far is written
+     * 
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String stopCheckpoints() {
+        final String output = closeCheckpointLog();
+        return output != null ? output : Main.READY;
+    }
+
+    /**
+     * The method for starting to record the trajectories of every car in to the given file, beginning with the
+     * current state. Recording stops when another state is loaded, restored or rolled back
+     * 
+     * @param file the path of the file, which is replaced if it exists
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String startRecording(String file) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        final String output = closeRecorder();
         if (output != null) return output;
-        
-        loaded = true;
-        reset();
-        this.crossings.addAll(tempCrossings);
-        this.streets.addAll(tempStreets);
-        resetTemp();
-        
+        try {
+            recorder = TrajectoryRecorder.create(Path.of(file), currentTick);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        // the first frame holds every street, the frames are at the ticks of the scheduler that records them
+        for (Street street : streets) recorder.record(scheduler.getTick(), street);
+        return Main.READY;
+    }
+
+    /**
+     * The method for stopping the recording, after every recorded tick is written
+     * 
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String stopRecording() {
+        final String output = closeRecorder();
+        return output != null ? output : Main.READY;
+    }
+
+    /**
+     * The method for rolling the simulation back to the checkpoint of the given tick. Every later checkpoint is
+     * removed from the log, and if checkpoints are being written they continue from the given tick
+     * 
+     * @param tick the tick of the checkpoint
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String rollback(long tick) {
+        if (checkpointFile == null) return Main.ERROR + "No checkpoint log exists";
+        final boolean resume = checkpointLog != null;
+        String output = closeCheckpointLog();
+        if (output != null) return output;
+        final SimulationSnapshot snapshot;
+        try {
+            snapshot = CheckpointLog.rollback(checkpointFile, tick);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+        if (snapshot == null) return Main.ERROR + "No checkpoint exists for the given tick";
+        applySnapshot(snapshot);
+        currentTick = tick;
+        if (resume) {
+            try {
+                checkpointLog = CheckpointLog.append(checkpointFile, tick, crossings, streets);
+            }   catch (IOException ioException) {
+                return Main.ERROR + ioException;
+            }
+        }
         return Main.READY;
     }
 
@@ -96,10 +621,7 @@ public class Simulation implements ISimulation {
      * @return the crossing with the given id, if it does exist; null, if it does not
      */
     public Crossing findCrossing(int id) {
-        return crossings.stream()
-            .filter(crossing -> crossing.getId() == id)
-            .findAny()
-            .orElse(null);
+        return crossingIndex.get(id);
     }
 
     /**
@@ -109,10 +631,7 @@ public class Simulation implements ISimulation {
      * @return the crossing with the given id, if it does exist; null, if it does not
      */
     public Crossing findNewCrossing(int id) {
-        return tempCrossings.stream()
-            .filter(crossing -> crossing.getId() == id)
-            .findAny()
-            .orElse(null);
+        return tempCrossingIndex.get(id);
     }
 
     /**
@@ -122,10 +641,8 @@ public class Simulation implements ISimulation {
      * @return the street with the given id, if it does exist; null, if it does not
      */
     public Street findStreet(int id) {
-        return streets.stream()
-            .filter(street -> street.getId() == id)
-            .findAny()
-            .orElse(null);
+        if (id < 0 || id >= streets.size()) return null;
+        return streets.get(id); // the id of a street is its line in the file and therefore its index
     }
 
     /**
@@ -135,10 +652,8 @@ public class Simulation implements ISimulation {
      * @return the street with the given id, if it does exist; null, if it does not
      */
     public Street findNewStreet(int id) {
-        return tempStreets.stream()
-            .filter(street -> street.getId() == id)
-            .findAny()
-            .orElse(null);
+        if (id < 0 || id >= tempStreets.size()) return null;
+        return tempStreets.get(id);
     }
 
     /**
@@ -148,12 +663,7 @@ public class Simulation implements ISimulation {
      * @return the car with the given id, if it does exist; null, if it does not
      */
     public Car findCar(int id) {
-        Street tempStreet = streets.stream()
-            .filter(street -> street.findCar(id) != null)
-            .findAny()
-            .orElse(null);
-        if (tempStreet == null) return null;
-        return tempStreet.findCar(id);
+        return carIndex.get(id);
     }
 
     /**
@@ -163,12 +673,7 @@ public class Simulation implements ISimulation {
      * @return the car with the given id, if it does exist; null, if it does not
      */
     public Car findNewCar(int id) {
-        Street tempStreet = tempStreets.stream()
-            .filter(street -> street.findCar(id) != null)
-            .findAny()
-            .orElse(null);
-        if (tempStreet == null) return null;
-        return tempStreet.findCar(id);
+        return tempCarIndex.get(id);
     }
 
     /**
@@ -178,10 +683,9 @@ public class Simulation implements ISimulation {
      * @return the street the car is on, if the car exists; null, otherwise 
      */
     public Street findStreetWithCar(int id) {
-        return streets.stream()
-            .filter(street -> street.findCar(id) != null)
-            .findFirst()
-            .orElse(null);
+        Car car = findCar(id);
+        if (car == null) return null;
+        return findStreet(car.getStreetId()); // the street id is kept up to date by the streets the car enters
     }
 
     /**
@@ -191,11 +695,20 @@ public class Simulation implements ISimulation {
      * @return the position, street and the speed of the car in the correct format
      */
     public String giveCarPosition(int carId) {
+        if (isSimulating()) {
+            final CarPositions positions = CAR_POSITION.get();
+            positions.clear();
+            final String output = snapshot.giveCarPosition(carId, positions);
+            if (output != null) return output;
+            return String.format("Car %d on street %d with speed %d and position %d", carId,
+                positions.getStreetId(0), positions.getSpeed(0), positions.getPosition(0));
+        }
+        build();
         
         Car tempCar = findCar(carId);
         if (tempCar == null) return Main.ERROR + "No such car exists";
         
-        int streetId = findStreetWithCar(carId).getId();
+        int streetId = tempCar.getStreetId();
         int speed = tempCar.getSpeed();
         int position = tempCar.getPosition();
 
@@ -204,24 +717,476 @@ public class Simulation implements ISimulation {
     }
 
     /**
-     * The method for advancing the simulation for the given ticks
+     * The method for adding the position of the car with the given id to the given collection
      * 
-     * @param ticks How many ticks the simulation will be advanced
-     * @return An error message, if an error occurs; Ready, otherwise
+     * @param carId the given car id
+     * @param positions the collection the position is added to
+     * @return An error message, if an error occurs; null, otherwise
      */
-    public String update(int ticks) {
-        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
-        final StringBuilder output = new StringBuilder();
-        for (int i = 0; i < ticks; i++) {
-            for (Street street : streets) {
-                street.update(this); // updates every street from the lowest to the highest id
-            }
-            for (Street street : streets) street.resetSimulated(); // resets the simulated status of every car
-            for (Crossing crossing : crossings) crossing.update();
-            // updates every crossing from the lowest to the highest id
+    public String giveCarPosition(int carId, CarPositions positions) {
+        if (isSimulating()) return snapshot.giveCarPosition(carId, positions);
+        build();
+        final Car car = findCar(carId);
+        if (car == null) return Main.ERROR + "No such car exists";
+        car.collectPosition(positions);
+        return null;
+    }
+
+    /**
+     * The method for collecting the positions of every car whose id is in the given range in one pass over the
+     * streets. The cars are ordered by the ids of their streets and from the car ahead to the car behind
+     * 
+     * @param minCarId the lowest id of a collected car
+     * @param maxCarId the highest id of a collected car
+     * @param positions the collection the positions are added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    public String givePositions(int minCarId, int maxCarId, CarPositions positions) {
+        if (isSimulating()) return snapshot.givePositions(minCarId, maxCarId, positions);
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        final int numberOfStreets = streets.size();
+        for (int i = 0; i < numberOfStreets; i++) {
+            streets.get(i).collectPositions(positions, minCarId, maxCarId);
+        }
+        return null;
+    }
+
+    /**
+     * The method for collecting the positions of every car on the street with the given id, from the car ahead to
+     * the car behind
+     * 
+     * @param streetId the given street id
+     * @param positions the collection the positions are added to
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    public String giveStreetPositions(int streetId, CarPositions positions) {
+        if (isSimulating()) return snapshot.giveStreetPositions(streetId, positions);
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        build();
+        final Street street = findStreet(streetId);
+        if (street == null) return Main.ERROR + "No such street exists";
+        street.collectPositions(positions, 0, Integer.MAX_VALUE);
+        return null;
+    }
+
+    /**
+     * The method for advancing the simulation for the given ticks
+     * 
+     * @param ticks How many ticks the simulation will be advanced
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    public String update(int ticks) {
+        return update(ticks, null);
+    }
+
+    /**
+     * The method for advancing the simulation for the given ticks as part of the given run, which stops the update
+     * early at the last tick it completed if it is cancelled or out of time. The run is finished afterwards
+     * 
+     * @param ticks How many ticks the simulation will be advanced
+     * @param run the run the completed ticks are counted for, or null
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    String update(int ticks, SimulationRun run) {
+        final String output = isSimulating() ? Main.ERROR + SIMULATING : simulate(ticks, run);
+        if (run != null) run.finish(output);
+        return output;
+    }
+
+    /**
+     * The method for starting the given run, which advances the simulation on a thread of its own. While it runs,
+     * the positions are read from the position snapshot, which is turned on for it and stays on afterwards, and
+     * every other method that changes or reads the state is refused until the run is finished
+     * 
+     * @param started the run
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    String start(SimulationRun started) {
+        if (isSimulating()) return Main.ERROR + SIMULATING;
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        if (!snapshots) setSnapshots(true);
+        background = started;
+        final Thread runner = new Thread(() -> {
+            String output = Main.ERROR + "The simulation failed";
+            try {
+                output = simulate(started.getTicks(), started);
+            }   finally {
+                started.finish(output);
+            }
+        }, "simulation-run");
+        runner.setDaemon(true); // like a quit, the end of the input stops the run
+        runner.start();
+        return Main.READY;
+    }
+
+    /**
+     * The method for checking if a run started by {@link #start(SimulationRun)} is still advancing the simulation.
+     * Once it is seen finished, everything it changed is visible to the caller
+     * 
+     * @return true, if the run is not finished; false, otherwise
+     */
+    boolean isSimulating() {
+        final SimulationRun current = background;
+        return current != null && !current.isFinished();
+    }
+
+    /**
+     * The method for giving the progress of the last run started
+     * 
+     * @return An error message, if an error occurs; the progress, otherwise
+     */
+    String giveProgress() {
+        if (background == null) return Main.ERROR + NO_RUN;
+        return background.giveProgress();
+    }
+
+    /**
+     * The method for cancelling the last run started and waiting until it stopped
+     * 
+     * @return An error message, if an error occurs; the progress, otherwise
+     */
+    String cancel() {
+        if (background == null) return Main.ERROR + NO_RUN;
+        background.cancel();
+        background.await();
+        return background.giveProgress();
+    }
+
+    /**
+     * The method for waiting until the last run started is finished
+     * 
+     * @return An error message, if an error occurs; the result of the run, otherwise
+     */
+    String await() {
+        if (background == null) return Main.ERROR + NO_RUN;
+        return background.await();
+    }
+
+    private String simulate(int ticks, SimulationRun run) {
+        if (!loaded) return Main.ERROR + "Nothing is loaded right now";
+        if (cluster != null) return simulateDistributed(ticks, run);
+        build();
+        forkState = null; // the forks taken before keep the state they share
+        final long start = metrics != null ? System.nanoTime() : 0;
+        String output = null;
+        long remaining = ticks;
+        while (remaining > 0) {
+            long limit = remaining;
+            if (checkpointLog != null) {
+                // idle ticks are only skipped up to the next checkpoint
+                limit = Math.min(limit, checkpointPending ? 1 : checkpointInterval - currentTick % checkpointInterval);
+            }
+            if (congestion != null) {
+                // as well as up to the next sample
+                final long sampleTick = scheduler.getTick() % CongestionDetector.SAMPLE_INTERVAL;
+                limit = Math.min(limit, CongestionDetector.SAMPLE_INTERVAL - sampleTick);
+            }
+            final long idleTicks = scheduler.getIdleTicks(limit);
+            if (idleTicks > 0) scheduler.skip(idleTicks);
+            else tick();
+            final long done = Math.max(idleTicks, 1);
+            currentTick += done;
+            remaining -= done;
+            if (congestion != null && scheduler.getTick() % CongestionDetector.SAMPLE_INTERVAL == 0) {
+                congestion.sample(this);
+            }
+            if (checkpointLog != null && (checkpointPending || currentTick % checkpointInterval == 0)) {
+                catchUp();
+                // a refused checkpoint is taken on the next tick, so the writer never stalls the simulation
+                checkpointPending = !checkpointLog.capture(currentTick, crossings, streets);
+            }
+            final boolean stopped = run != null && run.advance(done);
+            // the readers see the finished tick, and the last one in any case
+            if (snapshot != null) snapshot.publish(scheduler.getTick(), remaining == 0 || stopped);
+            if (stopped) break;
+        }
+        catchUp(); // the sleeping streets and the traffic lights are read outside of the tick loop
+        if (recorder != null) output = recordTick();
+        if (metrics != null) metrics.addTicks(ticks - remaining, System.nanoTime() - start);
+        return output != null ? output : Main.READY;
+    }
+
+    /**
+     * The method for advancing the simulation for the given ticks in the worker processes of the distributed mode.
+     * The state is handed to the workers before their first simulation and stays with them, it is only gathered
+     * again when it is read
+     * @param ticks How many ticks the simulation will be advanced
+     * @param run the run the ticks are counted for, which has to be null
+     * @return An error message, if an error occurs; Ready, otherwise
+     */
+    private String simulateDistributed(int ticks, SimulationRun run) {
+        if (run != null || checkpointLog != null || congestion != null || recorder != null) {
+            return Main.ERROR + "Only a plain simulation can be distributed";
+        }
+        forkState = null;
+        final long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            if (!cluster.isLoaded()) {
+                catchUp();
+                cluster.load(captureState());
+            }
+            cluster.simulate(ticks);
+        }   catch (IOException ioException) {
+            return dropCluster(ioException);
+        }
+        currentTick += ticks;
+        if (metrics != null) metrics.addTicks(ticks, System.nanoTime() - start);
+        return Main.READY;
+    }
+
+    /**
+     * The method for taking the state back from the worker processes of the distributed mode, if they advanced it
+     * since it was handed to them or gathered last. If a worker fails, the simulation falls back to that state
+     */
+    private void gather() {
+        if (cluster == null || cluster.getTicksAhead() == 0) return;
+        final int[][] state;
+        try {
+            state = cluster.gather();
+        }   catch (IOException ioException) {
+            dropCluster(ioException);
+            return;
         }
-        if (output.isEmpty()) output.append("READY"); // if no error then print READY
-        return output.toString();
+        final long tick = currentTick;
+        final int[][] sharedPartitions = partitions;
+        final PartitionCluster kept = cluster;
+        cluster = null; // loading the gathered state keeps the workers
+        loadState(state);
+        cluster = kept;
+        currentTick = tick;
+        partitions = sharedPartitions;
+    }
+
+    /**
+     * the getter method for the tick the traffic lights are at, which is the number of ticks simulated since the
+     * state was loaded, restored or rolled back
+     * @return the number of simulated ticks
+     */
+    public long getTick() {
+        return scheduler.getTick();
+    }
+
+    /**
+     * The method for switching the sleeping of the streets without anything to update on or off, it is on unless
+     * switched off. The states of the simulation are the same either way, only the sleeping streets are not updated
+     * 
+     * @param sleeping true, if the streets may fall asleep; false, if every street is updated in every tick
+     */
+    void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+        if (scheduler != null) scheduler.setSleeping(sleeping);
+    }
+
+    /**
+     * The method for bringing the cars of every sleeping street and the state of every traffic light up to date
+     */
+    private void catchUp() {
+        scheduler.catchUp();
+        for (Crossing crossing : crossingsWithLight) {
+            crossing.advanceTo(scheduler.getTick());
+        }
+    }
+
+    /**
+     * The method for advancing the simulation for a single tick. Indexed loops are used instead of iterators,
+     * so a tick does not allocate once every lane has grown to its final capacity. Only the awake streets are
+     * updated, the traffic lights are calculated from the tick when they are read
+     */
+    private void tick() {
+        scheduler.startTick();
+        if (parallel) {
+            // streets whose cars cannot leave them this tick are updated first and in parallel, they remember
+            // their last car so that entering cars see the same street as in the sequential order
+            if (partitions == null) {
+                streets.parallelStream().filter(street -> scheduler.isAwake(street.getId()))
+                    .forEach(this::updateStreetAhead);
+            }
+            else Arrays.stream(partitions).parallel().forEach(this::updatePartitionAhead);
+        }
+        for (int id = scheduler.nextAwake(0); id != StreetScheduler.NO_STREET; id = scheduler.nextAwake(id + 1)) {
+            final Street street = streets.get(id);
+            // updates every street from the lowest to the highest id
+            if (!street.isUpdatedAhead(this)) updateStreet(street);
+        }
+        scheduler.endTick();
+    }
+
+    /**
+     * The method for waking up the street with the given id before a crossing car enters it, if it sleeps. It is
+     * brought up to the state it has in the sequential order, before its update if it comes after the street the car
+     * leaves. In a worker process, the street is kept before the first car of a round enters it, and a street of
+     * another part is left to its worker
+     * 
+     * @param id the id of the street the car enters
+     * @param sourceStreetId the id of the street the car leaves
+     */
+    public void wakeUp(int id, int sourceStreetId) {
+        if (worker != null) {
+            if (!worker.owns(id)) return;
+            worker.keep(id);
+        }
+        scheduler.wakeUp(id, id < sourceStreetId);
+    }
+
+    /**
+     * The method for letting a car of another worker process enter the street with the given id, which is woken up
+     * as in {@link #wakeUp(int, int)}
+     * 
+     * @param id the id of the street the car enters
+     * @param sourceStreetId the id of the street the car leaves
+     * @param car the car
+     * @param maxPos the maximum position the car can go on the street this tick
+     * @param waiting true, if the car waits at the end of the street it leaves
+     * @return true, if the car entered the street; false, if there is no room for it
+     */
+    boolean enterStreet(int id, int sourceStreetId, Car car, int maxPos, boolean waiting) {
+        wakeUp(id, sourceStreetId);
+        return streets.get(id).enter(car, sourceStreetId, maxPos, waiting, this);
+    }
+
+    /**
+     * The method for finding the street a crossing car enters for the id of its exit street. In a worker process, a
+     * street of another part is replaced by the stand-in that hands its entering cars to the worker
+     * @param id the id of the street
+     * @return the street the car enters
+     */
+    private Street findEnteredStreet(int id) {
+        final Street street = streets.get(id);
+        if (worker == null || worker.owns(id)) return street;
+        return worker.remoteStreet(street);
+    }
+
+    /**
+     * The method for making this simulation the one of the given worker process of the distributed mode
+     * @param worker the worker
+     */
+    void setWorker(PartitionWorker worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * The method for starting a tick in a worker process, which updates every awake street of the worker whose cars
+     * cannot leave it ahead of its turn. The streets woken up by entering cars from then on are logged
+     */
+    void startDistributedTick() {
+        scheduler.startTick();
+        for (int id = scheduler.nextAwake(0); id != StreetScheduler.NO_STREET; id = scheduler.nextAwake(id + 1)) {
+            updateStreetAhead(streets.get(id));
+        }
+        scheduler.startWakeUpLog();
+    }
+
+    /**
+     * The method for finding the next street of a worker process from the given id on that has its turn in the
+     * current tick
+     * @param from the lowest id searched
+     * @return the id of the street, or {@link PartitionChannel#NO_TURN} if there is none
+     */
+    int nextTurn(int from) {
+        if (from >= streets.size()) return PartitionChannel.NO_TURN;
+        for (int id = scheduler.nextAwake(from); id != StreetScheduler.NO_STREET; id = scheduler.nextAwake(id + 1)) {
+            if (!streets.get(id).isUpdatedAhead(this)) return id;
+        }
+        return PartitionChannel.NO_TURN;
+    }
+
+    /**
+     * The method for updating the street with the given id in its turn, in a worker process
+     * @param id the id of the street
+     */
+    void updateInTurn(int id) {
+        updateStreet(streets.get(id));
+    }
+
+    /**
+     * the getter method for the number of streets woken up by entering cars in the current tick of a worker process
+     * @return the number of wake ups
+     */
+    int getWakeUps() {
+        return scheduler.getLoggedWakeUps();
+    }
+
+    /**
+     * The method for sending the streets woken up by entering cars in the current tick of a worker process back to
+     * sleep, the streets woken up first stay awake
+     * @param count the number of wake ups that are kept
+     */
+    void undoWakeUps(int count) {
+        scheduler.undoWakeUps(count);
+    }
+
+    /**
+     * The method for finishing a tick in a worker process
+     */
+    void finishDistributedTick() {
+        scheduler.endTick();
+        currentTick++;
+    }
+
+    /**
+     * The method for skipping ticks in a worker process in which no street of any worker is updated
+     * @param ticks the number of skipped ticks
+     */
+    void skipDistributedTicks(long ticks) {
+        scheduler.skip(ticks);
+        currentTick += ticks;
+    }
+
+    /**
+     * The method for counting the next ticks in which no street is updated
+     * @param limit the highest number of ticks that is counted
+     * @return the number of ticks before the next street wakes up, at most the limit
+     */
+    long getIdleTicks(long limit) {
+        return scheduler.getIdleTicks(limit);
+    }
+
+    /**
+     * The method for capturing the state of a worker process after a simulation, with every sleeping street and
+     * traffic light brought up to date
+     * @return the captured state
+     */
+    int[][] captureDistributedState() {
+        catchUp();
+        return captureState();
+    }
+
+    /**
+     * The method for updating the streets of one part ahead of their turn, called by the worker owning the part
+     * @param partition the ids of the streets of the part
+     */
+    private void updatePartitionAhead(int[] partition) {
+        for (int id : partition) {
+            if (scheduler.isAwake(id)) updateStreetAhead(streets.get(id));
+        }
+    }
+
+    /**
+     * The method for updating the given street in its turn, timed if the metrics are on
+     * @param street the street
+     */
+    private void updateStreet(Street street) {
+        if (metrics == null) {
+            street.update(this);
+            return;
+        }
+        final long start = System.nanoTime();
+        street.update(this);
+        metrics.addStreetUpdate(System.nanoTime() - start);
+    }
+
+    /**
+     * The method for updating the given street ahead of its turn, timed if the metrics are on and it was updated
+     * @param street the street
+     */
+    private void updateStreetAhead(Street street) {
+        if (metrics == null) {
+            street.updateAhead(this);
+            return;
+        }
+        final long start = System.nanoTime();
+        if (street.updateAhead(this)) metrics.addStreetUpdate(System.nanoTime() - start);
     }
 
     /**
@@ -232,179 +1197,444 @@ public class Simulation implements ISimulation {
         streets.clear();
     }
 
+    /**
+     * The method for replacing the simulation with the checked temporary crossings, streets and cars at once
+     */
+    private void applyTemp() {
+        loaded = true;
+        partitions = null;
+        closeCluster(); // the workers are partitioned for the replaced network
+        currentTick = 0;
+        forkState = null;
+        pendingState = null;
+        closeCheckpointLog(); // the log keeps the checkpoints of the replaced state up to its last written one
+        closeRecorder();
+        reset();
+        this.crossings.addAll(tempCrossings);
+        this.streets.addAll(tempStreets);
+        this.scheduler = new StreetScheduler(this, streets);
+        scheduler.setSleeping(sleeping);
+        if (congestion != null) congestion = new CongestionDetector(streets);
+        this.crossingsWithLight = findCrossingsWithLight();
+        this.crossingIndex = tempCrossingIndex; // the indices are swapped instead of copied
+        this.carIndex = tempCarIndex;
+        for (Street street : streets) street.connect(crossingIndex.get(street.getEndNodeId()), this::findEnteredStreet);
+        this.tempCrossingIndex = new IntIndex<>();
+        this.tempCarIndex = new IntIndex<>();
+        resetTemp();
+        if (snapshots) startSnapshot();
+    }
+
+    /**
+     * The method for starting a position snapshot of the current state, which replaces the previous one once every
+     * street is copied
+     */
+    private void startSnapshot() {
+        final PositionSnapshot started = new PositionSnapshot(streets.size(), carIndex);
+        scheduler.copyAll(started);
+        started.publish(scheduler.getTick(), true);
+        snapshot = started;
+    }
+
+    /**
+     * The method for finding the crossings that have a traffic light
+     * @return the crossings with a light in the order they were loaded
+     */
+    private Crossing[] findCrossingsWithLight() {
+        return crossings.stream().filter(crossing -> crossing.getGreenLightDuration() > 0).toArray(Crossing[]::new);
+    }
+
+    /**
+     * The method for building the crossings, streets and cars of a fork from the state it shares, if they are not
+     * built yet, or for gathering the state from the worker processes of the distributed mode. The fork keeps the
+     * tick and the partitions of the simulation it was forked from
+     */
+    private void build() {
+        gather();
+        if (pendingState == null) return;
+        final long tick = currentTick;
+        final int[][] sharedPartitions = partitions;
+        loadState(pendingState);
+        currentTick = tick;
+        partitions = sharedPartitions;
+    }
+
+    /**
+     * The method for replacing the simulation with the crossings, streets and cars of the given snapshot
+     * @param snapshot the restored snapshot
+     */
+    private void applySnapshot(SimulationSnapshot snapshot) {
+        resetTemp();
+        tempCrossings.addAll(snapshot.getCrossings());
+        tempStreets.addAll(snapshot.getStreets());
+        tempCrossingIndex = snapshot.getCrossingIndex();
+        tempCarIndex = snapshot.getCarIndex();
+        applyTemp();
+    }
+
+    /**
+     * The method for stopping the worker processes of the distributed mode after one of them failed. The simulation
+     * falls back to the state it had when it was handed to the workers or gathered from them last
+     * @param ioException the failure
+     * @return the error message of the failure
+     */
+    private String dropCluster(IOException ioException) {
+        currentTick -= cluster.getTicksAhead();
+        closeCluster();
+        return Main.ERROR + ioException;
+    }
+
+    /**
+     * The method for stopping the worker processes of the distributed mode, if there are any
+     */
+    private void closeCluster() {
+        if (cluster == null) return;
+        cluster.close();
+        cluster = null;
+    }
+
+    /**
+     * The method for closing the checkpoint log, if checkpoints are being written
+     * @return an error message if a checkpoint could not be written, null otherwise
+     */
+    private String closeCheckpointLog() {
+        if (checkpointLog == null) return null;
+        try {
+            checkpointLog.close();
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }   finally {
+            checkpointLog = null;
+            checkpointPending = false;
+        }
+        return null;
+    }
+
+    /**
+     * The method for recording that the simulation reached the current tick, closing the recording if it failed
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    private String recordTick() {
+        try {
+            recorder.reach(scheduler.getTick());
+        }   catch (IOException ioException) {
+            closeRecorder();
+            return Main.ERROR + ioException;
+        }
+        return null;
+    }
+
+    /**
+     * The method for closing the recording, if there is one
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    private String closeRecorder() {
+        if (recorder == null) return null;
+        try {
+            recorder.close();
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }   finally {
+            recorder = null;
+        }
+        return null;
+    }
+
     /**
      * The method for resetting the temporary crossings/streets used for checking validity before loading
      */
     private void resetTemp() {
         tempCrossings.clear();
         tempStreets.clear();
+        tempCrossingIndex.clear();
+        tempCarIndex.clear();
     }
 
     /**
-     * The method for translating the Strings given for crossings to objects
-     * @param crossings the string list of crossings
+     * The method for translating the lines given for crossings to objects
+     * @param file the tokenised crossings file
      * @return an error message if they are invalid, null otherwise
+     * @throws IOException if the file cannot be read
      */
-    private String createCrossings(List<String> crossings) {
-        for (String crossing : crossings) {
-            int indexFirstParameterEnd = crossing.indexOf(":"); //slices the string in to their integer parts
-            if (indexFirstParameterEnd == -1) return Main.ERROR + "Illegal input format";
-            int indexSecondParameterEnd = crossing.indexOf("t");
-            if (indexSecondParameterEnd == -1) return Main.ERROR + "Illegal input format";
-            final int id;
-            try {
-                id = Integer.parseInt(crossing.substring(Main.FIRST_PARAMETER_INDEX, indexFirstParameterEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Id has to be a number";
-            }
-            final int duration;
-            try {
-                duration = Integer.parseInt(crossing.substring(indexFirstParameterEnd + 1, indexSecondParameterEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Duration of the green light has to be a number";
-            }
-            if (id < 0) {
-                return Main.ERROR + "Id cannot be negative";
-            }
-            Crossing controlCrossing = findNewCrossing(id);
-            if (controlCrossing != null) return Main.ERROR + "A crossing with the given id already exists";
-            
-            if (duration < 3 && duration != 0 || duration > Main.MAX_GREEN_LIGHT_DURATION) {
-                return Main.ERROR + "Green light duration cannot be less than 3 or greater than 10";
+    private String createCrossings(SimulationFilePipeline file) throws IOException {
+        while (file.hasNext()) {
+            final SimulationFileChunk chunk = file.next();
+            for (int row = 0; row < chunk.getRows(); row++) {
+                if (chunk.isMalformed(row, CROSSING_ID)) {
+                    final String message = chunk.isSeparatorMissing() ? "Illegal input format" : "Id has to be a number";
+                    return error(message, chunk, row, CROSSING_ID);
+                }
+                if (chunk.isMalformed(row, CROSSING_DURATION)) {
+                    return error("Duration of the green light has to be a number", chunk, row, CROSSING_DURATION);
+                }
+                final int id = chunk.get(row, CROSSING_ID);
+                final int duration = chunk.get(row, CROSSING_DURATION);
+                if (id < 0) {
+                    return error("Id cannot be negative", chunk, row, CROSSING_ID);
+                }
+                Crossing controlCrossing = findNewCrossing(id);
+                if (controlCrossing != null) {
+                    return error("A crossing with the given id already exists", chunk, row, CROSSING_ID);
+                }
+                
+                if (duration < 3 && duration != 0 || duration > Main.MAX_GREEN_LIGHT_DURATION) {
+                    return error("Green light duration cannot be less than 3 or greater than 10", chunk, row,
+                        CROSSING_DURATION);
+                }
+                Crossing tempCrossing = new Crossing(id, duration);
+                tempCrossings.add(tempCrossing);
+                tempCrossingIndex.put(id, tempCrossing);
             }
-            Crossing tempCrossing = new Crossing(id, duration);
-            tempCrossings.add(tempCrossing);
         }
         return null;
     }
 
     /**
-     * The method for translating the Strings given for streets to objects
-     * @param streets the string list of streets
+     * The method for translating the lines given for streets to objects
+     * @param file the tokenised streets file
      * @return an error message if they are invalid, null otherwise
+     * @throws IOException if the file cannot be read
      */
-    private String createStreets(List<String> streets) {
-        for (int id = 0; id < streets.size(); id++) {
-            String tempStreet = streets.get(id);
-            int indexFirstParamEnd = tempStreet.indexOf("-"); //slices the input string so that every parameter stands
-            if (indexFirstParamEnd == -1) return Main.ERROR + "Illegal input format";
-            final int startNodeId;                            // alone as an integer
-            try {
-                startNodeId = Integer.parseInt(tempStreet.substring(Main.FIRST_PARAMETER_INDEX, indexFirstParamEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            
-            Crossing startNode = findNewCrossing(startNodeId);
-            if (startNode == null) return Main.ERROR + "The street cannot begin from a non-existent crossing";
-            startNode.addExitStreet(id);
+    private String createStreets(SimulationFilePipeline file) throws IOException {
+        int id = 0;
+        while (file.hasNext()) {
+            final SimulationFileChunk chunk = file.next();
+            for (int row = 0; row < chunk.getRows(); row++, id++) {
+                if (chunk.isMalformed(row, STREET_START)) return error("Illegal input format", chunk, row, STREET_START);
+                final int startNodeId = chunk.get(row, STREET_START);
+                
+                Crossing startNode = findNewCrossing(startNodeId);
+                if (startNode == null) {
+                    return error("The street cannot begin from a non-existent crossing", chunk, row, STREET_START);
+                }
+                startNode.addExitStreet(id);
 
-            int indexSecondParamEnd = tempStreet.indexOf(":");
-            if (indexSecondParamEnd == -1) return Main.ERROR + "Illegal input format";
-            final int endNodeId;
-            try {
-                endNodeId = Integer.parseInt(tempStreet.substring(indexFirstParamEnd + 3, indexSecondParamEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            
-            if (endNodeId == startNodeId) return Main.ERROR + "A street cannot start and end at the same crossing";
-            
-            Crossing endNode = findNewCrossing(endNodeId);
-            if (endNode == null) return Main.ERROR + "The street cannot connect to a non-existent crossing";
-            endNode.addEnterStreet(id);
+                if (chunk.isMalformed(row, STREET_END)) return error("Illegal input format", chunk, row, STREET_END);
+                final int endNodeId = chunk.get(row, STREET_END);
+                
+                if (endNodeId == startNodeId) {
+                    return error("A street cannot start and end at the same crossing", chunk, row, STREET_END);
+                }
+                
+                Crossing endNode = findNewCrossing(endNodeId);
+                if (endNode == null) {
+                    return error("The street cannot connect to a non-existent crossing", chunk, row, STREET_END);
+                }
+                endNode.addEnterStreet(id);
 
-            int indexThirdParamEnd = tempStreet.indexOf(",");
-            if (indexThirdParamEnd == -1) return Main.ERROR + "Illegal input format";
-            final int length;
-            try {
-                length = Integer.parseInt(tempStreet.substring(indexSecondParamEnd + 1, indexThirdParamEnd - 1));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            if (length < Main.MINIMUM_STREET_LENGTH || length > Main.MAXIMUM_STREET_LENGTH) {
-                return Main.ERROR + "The length of a street cannot be greater than 10000 or less than 10";
-            }
+                if (chunk.isMalformed(row, STREET_LENGTH)) {
+                    return error("Illegal input format", chunk, row, STREET_LENGTH);
+                }
+                final int length = chunk.get(row, STREET_LENGTH);
+                if (length < Main.MINIMUM_STREET_LENGTH || length > Main.MAXIMUM_STREET_LENGTH) {
+                    return error("The length of a street cannot be greater than 10000 or less than 10", chunk, row,
+                        STREET_LENGTH);
+                }
 
-            int indexFourthParamEnd = tempStreet.indexOf("x");
-            if (indexFourthParamEnd == -1) return Main.ERROR + "Illegal input format";
-            final int type;
-            try {
-                type = Integer.parseInt(tempStreet.substring(indexThirdParamEnd + 1, indexFourthParamEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            if (type != 1 && type != 2) return Main.ERROR + "Type of a street has to be either 1 or 2";
-            
-            int indexFifthParamEnd = tempStreet.indexOf("max");
-            if (indexFifthParamEnd == -1) return Main.ERROR + "Illegal input format";
-            final int speedLimit;
-            try {
-                speedLimit = Integer.parseInt(tempStreet.substring(indexFourthParamEnd + 2, indexFifthParamEnd));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            if (speedLimit < 5 || speedLimit > Main.MAXIMUM_SPEED_LIMIT) {
-                return Main.ERROR + "Speed limit of a street cannot be greater than 40 or less than 5";
+                if (chunk.isMalformed(row, STREET_TYPE)) return error("Illegal input format", chunk, row, STREET_TYPE);
+                final int type = chunk.get(row, STREET_TYPE);
+                if (type != 1 && type != 2) {
+                    return error("Type of a street has to be either 1 or 2", chunk, row, STREET_TYPE);
+                }
+                
+                if (chunk.isMalformed(row, STREET_SPEED)) {
+                    return error("Illegal input format", chunk, row, STREET_SPEED);
+                }
+                final int speedLimit = chunk.get(row, STREET_SPEED);
+                if (speedLimit < 5 || speedLimit > Main.MAXIMUM_SPEED_LIMIT) {
+                    return error("Speed limit of a street cannot be greater than 40 or less than 5", chunk, row,
+                        STREET_SPEED);
+                }
+
+                Street street = new Street(id, endNodeId, length, type, speedLimit);
+                this.tempStreets.add(street);
             }
+        }
+        return null;
+    }
 
-            Street street = new Street(id, endNodeId, length, type, speedLimit);
-            this.tempStreets.add(street);
+    /**
+     * The method for translating the lines given for cars to objects
+     * @param file the tokenised cars file
+     * @return an error message if they are invalid, null otherwise
+     * @throws IOException if the file cannot be read
+     */
+    private String createCars(SimulationFilePipeline file) throws IOException {
+        while (file.hasNext()) {
+            final SimulationFileChunk chunk = file.next();
+            if (chunk.getFailedColumn() != SimulationFileChunk.NO_FAILURE) {
+                // a malformed line is reported before anything in its line is checked
+                final int failedRow = chunk.getRows() - 1;
+                final int failedColumn = chunk.getFailedColumn();
+                final String output = createCars(chunk, failedRow);
+                if (output != null) return output;
+                return error("Illegal input format", chunk, failedRow, failedColumn);
+            }
+            final String output = createCars(chunk, chunk.getRows());
+            if (output != null) return output;
         }
         return null;
     }
 
     /**
-     * The method for translating the Strings given for cars to objects
-     * @param cars the string list of crossings
+     * The method for translating the given number of rows of a tokenised chunk of the cars file to objects
+     * @param chunk the chunk of the cars file
+     * @param rows the number of rows to translate
      * @return an error message if they are invalid, null otherwise
+     * @throws IOException if the file cannot be read
      */
-    private String createCars(List<String> cars) {
-        for (String car : cars) {
+    private String createCars(SimulationFileChunk chunk, int rows) throws IOException {
+        for (int row = 0; row < rows; row++) {
             final String output;
-            String carString = car;
-            int indexFirstParamEnd = carString.indexOf(",");  //slices the input string so that every parameter stands
-            if (indexFirstParamEnd == -1) return Main.ERROR + "Illegal input format"; // alone as an integer
-            carString = carString.replaceFirst(",", " "); 
-            int indexSecondParamEnd = carString.indexOf(",");
-            if (indexSecondParamEnd == -1) return Main.ERROR + "Illegal input format";
-            carString = carString.replaceFirst(",", " ");
-            int indexThirdParamEnd = carString.indexOf(",");
-            if (indexThirdParamEnd == -1) return Main.ERROR + "Illegal input format";
-
-            final int id;
-            final int streetId;
-            final int maxSpeed;
-            final int acceleration;
+            final int id = chunk.get(row, CAR_ID);
+            final int streetId = chunk.get(row, CAR_STREET);
+            final int maxSpeed = chunk.get(row, CAR_MAX_SPEED);
+            final int acceleration = chunk.get(row, CAR_ACCELERATION);
             
-            try {
-                id = Integer.parseInt(carString.substring(Main.FIRST_PARAMETER_INDEX, indexFirstParamEnd));
-                streetId = Integer.parseInt(carString.substring(indexFirstParamEnd + 1, indexSecondParamEnd));
-                maxSpeed = Integer.parseInt(carString.substring(indexSecondParamEnd + 1, indexThirdParamEnd));
-                acceleration = Integer.parseInt(carString.substring(indexThirdParamEnd + 1));
-            }   catch (IllegalArgumentException illegalArgumentException) {
-                return Main.ERROR + "Illegal input format";
-            }
-            if (id < 0) return Main.ERROR + "The id cannot be negative";
+            if (id < 0) return error("The id cannot be negative", chunk, row, CAR_ID);
             Car controlCar = findNewCar(id);
-            if (controlCar != null) return Main.ERROR + "A car with the given id already exists";
+            if (controlCar != null) return error("A car with the given id already exists", chunk, row, CAR_ID);
                 
             Street tempStreet = findNewStreet(streetId);
-            if (tempStreet == null) return Main.ERROR + "The car cannot start on a non-existent street";
+            if (tempStreet == null) {
+                return error("The car cannot start on a non-existent street", chunk, row, CAR_STREET);
+            }
             if (maxSpeed < Main.MINIMUM_HIGHEST_SPEED || maxSpeed > Main.MAXIMUM_SPEED_LIMIT) {
-                return Main.ERROR + "The max speed of a car has to be between 20 and 40";
+                return error("The max speed of a car has to be between 20 and 40", chunk, row, CAR_MAX_SPEED);
             }
             if (acceleration < 1 || acceleration > Main.MAXIMUM_ACCELERATION) {
-                return Main.ERROR + "The acceleration of a car has to be between 1 and 10";
+                return error("The acceleration of a car has to be between 1 and 10", chunk, row, CAR_ACCELERATION);
             }
 
             Car tempCar = new Car(id, maxSpeed, acceleration);
-            output = findNewStreet(streetId).placeCar(tempCar);
-            if (output != null) return output;
+            output = tempStreet.placeCar(tempCar);
+            if (output != null) return output + chunk.describe(row, CAR_ID);
+            tempCarIndex.put(id, tempCar);
         }
         return null;
     }
 
+    /**
+     * The method for splitting a line of the crossings file in to its id and green light duration
+     * @param reader the reader at the line
+     * @param values the array for the fields
+     * @param starts the array for the offsets of the fields
+     * @return the index of the first malformed field; the number of fields, if the line is valid
+     * @throws IOException if the file cannot be read
+     */
+    private static int tokenizeCrossing(SimulationFileReader reader, int[] values, long[] starts) throws IOException {
+        final long lineStart = reader.getLineStart();
+        long indexFirstParameterEnd = reader.indexOf((byte) ':', lineStart); //slices the line in to its integers
+        long indexSecondParameterEnd = reader.indexOf((byte) 't', lineStart);
+        if (indexFirstParameterEnd == SimulationFileReader.NOT_FOUND
+            || indexSecondParameterEnd == SimulationFileReader.NOT_FOUND) {
+            starts[CROSSING_ID] = SimulationFileReader.NOT_FOUND;
+            return CROSSING_ID;
+        }
+        starts[CROSSING_ID] = lineStart;
+        starts[CROSSING_DURATION] = indexFirstParameterEnd + 1;
+        values[CROSSING_ID] = reader.parseInt(lineStart, indexFirstParameterEnd);
+        if (!reader.isNumberValid()) return CROSSING_ID;
+        values[CROSSING_DURATION] = reader.parseInt(indexFirstParameterEnd + 1, indexSecondParameterEnd);
+        if (!reader.isNumberValid()) return CROSSING_DURATION;
+        return CROSSING_FIELDS;
+    }
+
+    /**
+     * The method for splitting a line of the streets file in to its crossings, length, type and speed limit
+     * @param reader the reader at the line
+     * @param values the array for the fields
+     * @param starts the array for the offsets of the fields
+     * @return the index of the first malformed field; the number of fields, if the line is valid
+     * @throws IOException if the file cannot be read
+     */
+    private static int tokenizeStreet(SimulationFileReader reader, int[] values, long[] starts) throws IOException {
+        final long lineStart = reader.getLineStart();
+        long indexFirstParamEnd = reader.indexOf((byte) '-', lineStart); //slices the line so that every parameter
+        long indexSecondParamEnd = reader.indexOf((byte) ':', lineStart); // stands alone as an integer
+        long indexThirdParamEnd = reader.indexOf((byte) ',', lineStart);
+        long indexFourthParamEnd = reader.indexOf((byte) 'x', lineStart);
+        long indexFifthParamEnd = reader.indexOf("max", lineStart);
+        
+        if (indexFirstParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, STREET_START);
+        starts[STREET_START] = lineStart;
+        values[STREET_START] = reader.parseInt(lineStart, indexFirstParamEnd);
+        if (!reader.isNumberValid()) return STREET_START;
+        
+        if (indexSecondParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, STREET_END);
+        starts[STREET_END] = indexFirstParamEnd + 3;
+        values[STREET_END] = reader.parseInt(indexFirstParamEnd + 3, indexSecondParamEnd);
+        if (!reader.isNumberValid()) return STREET_END;
+        
+        if (indexThirdParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, STREET_LENGTH);
+        starts[STREET_LENGTH] = indexSecondParamEnd + 1;
+        values[STREET_LENGTH] = reader.parseInt(indexSecondParamEnd + 1, indexThirdParamEnd - 1);
+        if (!reader.isNumberValid()) return STREET_LENGTH;
+        
+        if (indexFourthParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, STREET_TYPE);
+        starts[STREET_TYPE] = indexThirdParamEnd + 1;
+        values[STREET_TYPE] = reader.parseInt(indexThirdParamEnd + 1, indexFourthParamEnd);
+        if (!reader.isNumberValid()) return STREET_TYPE;
+        
+        if (indexFifthParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, STREET_SPEED);
+        starts[STREET_SPEED] = indexFourthParamEnd + 2;
+        values[STREET_SPEED] = reader.parseInt(indexFourthParamEnd + 2, indexFifthParamEnd);
+        if (!reader.isNumberValid()) return STREET_SPEED;
+        return STREET_FIELDS;
+    }
+
+    /**
+     * The method for splitting a line of the cars file in to its id, street, max speed and acceleration
+     * @param reader the reader at the line
+     * @param values the array for the fields
+     * @param starts the array for the offsets of the fields
+     * @return the index of the first malformed field; the number of fields, if the line is valid
+     * @throws IOException if the file cannot be read
+     */
+    private static int tokenizeCar(SimulationFileReader reader, int[] values, long[] starts) throws IOException {
+        final long lineStart = reader.getLineStart();
+        long indexFirstParamEnd = reader.indexOf((byte) ',', lineStart); //slices the line so that every parameter
+        if (indexFirstParamEnd == SimulationFileReader.NOT_FOUND) { // stands alone as an integer
+            return separatorMissing(starts, CAR_ID);
+        }
+        long indexSecondParamEnd = reader.indexOf((byte) ',', indexFirstParamEnd + 1);
+        if (indexSecondParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, CAR_ID);
+        long indexThirdParamEnd = reader.indexOf((byte) ',', indexSecondParamEnd + 1);
+        if (indexThirdParamEnd == SimulationFileReader.NOT_FOUND) return separatorMissing(starts, CAR_ID);
+
+        starts[CAR_ID] = lineStart;
+        starts[CAR_STREET] = indexFirstParamEnd + 1;
+        starts[CAR_MAX_SPEED] = indexSecondParamEnd + 1;
+        starts[CAR_ACCELERATION] = indexThirdParamEnd + 1;
+        values[CAR_ID] = reader.parseInt(lineStart, indexFirstParamEnd);
+        if (!reader.isNumberValid()) return CAR_ID;
+        values[CAR_STREET] = reader.parseInt(indexFirstParamEnd + 1, indexSecondParamEnd);
+        if (!reader.isNumberValid()) return CAR_STREET;
+        values[CAR_MAX_SPEED] = reader.parseInt(indexSecondParamEnd + 1, indexThirdParamEnd);
+        if (!reader.isNumberValid()) return CAR_MAX_SPEED;
+        values[CAR_ACCELERATION] = reader.parseInt(indexThirdParamEnd + 1, reader.getLineEnd());
+        if (!reader.isNumberValid()) return CAR_ACCELERATION;
+        return CAR_FIELDS;
+    }
+
+    private static int separatorMissing(long[] starts, int field) {
+        starts[field] = SimulationFileReader.NOT_FOUND;
+        return field;
+    }
+
+    /**
+     * The method for creating an error message for a field of a simulation file
+     * @param message the message describing the error
+     * @param chunk the chunk of the file containing the field
+     * @param row the row of the line in the chunk
+     * @param field the index of the field
+     * @return the error message with the file, line and column of the error
+     * @throws IOException if the file cannot be read
+     */
+    private static String error(String message, SimulationFileChunk chunk, int row, int field) throws IOException {
+        return Main.ERROR + message + chunk.describe(row, field);
+    }
+
     /**
      * The method for checking if each crossing is connected and if any crossing 
      * has more than 4 enter/exit streets connected to it
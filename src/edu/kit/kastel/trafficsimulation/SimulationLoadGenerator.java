@@ -0,0 +1,281 @@
+package edu.kit.kastel.trafficsimulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load generator for the {@link SimulationServer}. It loads the given folder, asks for the positions of every car
+ * once and then lets every connection send its requests with as many of them waiting for their replies as the
+ * pipeline depth allows. Every {@value #SIMULATE_INTERVAL}th request of a connection advances the simulation by the
+ * given number of ticks, the others ask for the position of a random car. The latency of a request is the time from sending it to
+ * receiving its reply, so it includes the time it waits behind the requests sent before it. The median, the 99th
+ * percentile and the maximum are reported per operation, together with the requests served per second.
+ * <p>
+ * Usage: {@code java edu.kit.kastel.trafficsimulation.SimulationLoadGenerator <port or socket path> <folder>
+ * [connections] [requests per connection] [pipeline depth] [ticks per simulate]}
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationLoadGenerator {
+
+    private static final int SIMULATE_INTERVAL = 100;
+
+    private static final int DEFAULT_CONNECTIONS = 4;
+
+    private static final int DEFAULT_REQUESTS = 100000;
+
+    private static final int DEFAULT_DEPTH = 16;
+
+    private static final int DEFAULT_TICKS = 1;
+
+    private static final int MIN_ARGUMENTS = 2;
+
+    private static final int CONNECTIONS_ARGUMENT = 2;
+
+    private static final int REQUESTS_ARGUMENT = 3;
+
+    private static final int DEPTH_ARGUMENT = 4;
+
+    private static final int TICKS_ARGUMENT = 5;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final double MEDIAN = 0.5;
+
+    private static final double HIGH_PERCENTILE = 0.99;
+
+    private static final double NANOS_PER_MICROSECOND = 1e3;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final String ROW_FORMAT = "%-10s %10d requests  p50 %10.1f us  p99 %10.1f us  max %10.1f us%n";
+
+    /**
+     * Private constructor to avoid object generation
+     */
+    private SimulationLoadGenerator() {
+        throw new IllegalStateException(Main.UTILITY_CLASS_INSTANTIATION);
+    }
+
+    /**
+     * Entry point of the load generator
+     * @param args the address of the server, the folder, and optionally the number of connections, the number of
+     *             requests per connection, the pipeline depth and the number of ticks per simulate request
+     * @throws IOException if the server cannot be reached or a request fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < MIN_ARGUMENTS) {
+            throw new IllegalArgumentException("Usage: SimulationLoadGenerator <port or socket path> <folder> "
+                + "[connections] [requests per connection] [pipeline depth] [ticks per simulate]");
+        }
+        final int connections = args.length > CONNECTIONS_ARGUMENT
+            ? Integer.parseInt(args[CONNECTIONS_ARGUMENT]) : DEFAULT_CONNECTIONS;
+        final int requests = args.length > REQUESTS_ARGUMENT
+            ? Integer.parseInt(args[REQUESTS_ARGUMENT]) : DEFAULT_REQUESTS;
+        final int depth = args.length > DEPTH_ARGUMENT ? Integer.parseInt(args[DEPTH_ARGUMENT]) : DEFAULT_DEPTH;
+        final int ticks = args.length > TICKS_ARGUMENT ? Integer.parseInt(args[TICKS_ARGUMENT]) : DEFAULT_TICKS;
+
+        final int[] carIds;
+        try (Client client = new Client(args[0])) {
+            long start = System.nanoTime();
+            client.send(0, SimulationServer.LOAD, args[1].getBytes(StandardCharsets.UTF_8));
+            client.receive(0);
+            report("load", List.of(new long[] {System.nanoTime() - start}));
+            start = System.nanoTime();
+            client.send(1, SimulationServer.POSITIONS, 0, Integer.MAX_VALUE);
+            client.flush();
+            final ByteBuffer reply = client.receive(1);
+            report("positions", List.of(new long[] {System.nanoTime() - start}));
+            carIds = new int[reply.getInt()];
+            for (int index = 0; index < carIds.length; index++) {
+                carIds[index] = reply.getInt(reply.position() + index * SimulationServer.CAR_BYTES);
+            }
+        }
+        if (carIds.length == 0) throw new IOException("the folder has no cars.");
+
+        final ExecutorService workers = Executors.newFixedThreadPool(connections);
+        final List<Future<long[][]>> results = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (int connection = 0; connection < connections; connection++) {
+            final long seed = connection;
+            results.add(workers.submit(() -> run(args[0], carIds, requests, depth, ticks, seed)));
+        }
+        final List<long[]> positionLatencies = new ArrayList<>();
+        final List<long[]> simulateLatencies = new ArrayList<>();
+        try {
+            for (Future<long[][]> result : results) {
+                final long[][] latencies = result.get();
+                positionLatencies.add(latencies[0]);
+                simulateLatencies.add(latencies[1]);
+            }
+        }   catch (ExecutionException executionException) {
+            throw new IOException(executionException.getCause());
+        }   catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("the load generator was interrupted.", interruptedException);
+        }   finally {
+            workers.shutdownNow();
+        }
+        final long nanos = System.nanoTime() - start;
+        report("position", positionLatencies);
+        report("simulate", simulateLatencies);
+        System.out.printf("%d connections with pipeline depth %d: %.0f requests per second%n", connections, depth,
+            (double) connections * requests * NANOS_PER_SECOND / nanos);
+    }
+
+    /**
+     * The method for sending the requests of one connection and measuring the latency of each
+     * @param address the address of the server
+     * @param carIds the ids of the cars
+     * @param requests the number of requests
+     * @param depth the highest number of requests waiting for their replies
+     * @param ticks the number of ticks per simulate request
+     * @param seed the seed of the random cars
+     * @return the latencies of the position requests and of the simulate requests in nanoseconds
+     * @throws IOException if the server cannot be reached or a request fails
+     */
+    private static long[][] run(String address, int[] carIds, int requests, int depth, int ticks, long seed)
+        throws IOException {
+        final Random random = new Random(seed);
+        final long[] sentAt = new long[depth];
+        final long[] positionLatencies = new long[requests];
+        final long[] simulateLatencies = new long[requests / SIMULATE_INTERVAL];
+        int positions = 0;
+        int simulates = 0;
+        try (Client client = new Client(address)) {
+            int sent = 0;
+            for (int received = 0; received < requests; received++) {
+                while (sent < requests && sent - received < depth) {
+                    if (isSimulate(sent)) client.send(sent, SimulationServer.SIMULATE, ticks);
+                    else client.send(sent, SimulationServer.POSITION, carIds[random.nextInt(carIds.length)]);
+                    sentAt[sent % depth] = System.nanoTime();
+                    sent++;
+                }
+                client.flush();
+                client.receive(received);
+                final long latency = System.nanoTime() - sentAt[received % depth];
+                if (isSimulate(received)) simulateLatencies[simulates++] = latency;
+                else positionLatencies[positions++] = latency;
+            }
+        }
+        return new long[][] {Arrays.copyOf(positionLatencies, positions), simulateLatencies};
+    }
+
+    private static boolean isSimulate(int request) {
+        return request % SIMULATE_INTERVAL == SIMULATE_INTERVAL - 1;
+    }
+
+    private static void report(String operation, List<long[]> latencies) {
+        final long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) return;
+        System.out.printf(ROW_FORMAT, operation, all.length, percentile(all, MEDIAN) / NANOS_PER_MICROSECOND,
+            percentile(all, HIGH_PERCENTILE) / NANOS_PER_MICROSECOND, all[all.length - 1] / NANOS_PER_MICROSECOND);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    /**
+     * A blocking connection to the server that collects the requests until they are flushed
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Client implements Closeable {
+
+        private final SocketChannel channel;
+
+        private final ByteBuffer output = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        private ByteBuffer input = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN).limit(0);
+
+        Client(String address) throws IOException {
+            this.channel = SocketChannel.open(SimulationServer.parseAddress(address));
+        }
+
+        void send(int tag, byte operation, int... arguments) throws IOException {
+            reserve(Integer.BYTES + SimulationServer.REQUEST_HEADER_BYTES + arguments.length * Integer.BYTES);
+            output.putInt(SimulationServer.REQUEST_HEADER_BYTES + arguments.length * Integer.BYTES);
+            output.putInt(tag).put(operation);
+            for (int argument : arguments) output.putInt(argument);
+        }
+
+        void send(int tag, byte operation, byte[] argument) throws IOException {
+            flush();
+            final ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + SimulationServer.REQUEST_HEADER_BYTES
+                + argument.length).order(ByteOrder.LITTLE_ENDIAN);
+            request.putInt(SimulationServer.REQUEST_HEADER_BYTES + argument.length).putInt(tag).put(operation)
+                .put(argument).flip();
+            while (request.hasRemaining()) channel.write(request);
+        }
+
+        void flush() throws IOException {
+            output.flip();
+            while (output.hasRemaining()) channel.write(output);
+            output.clear();
+        }
+
+        /**
+         * The method for receiving the next reply, which has to be the reply to the request with the given tag
+         * @param tag the tag of the request
+         * @return the body of the reply
+         * @throws IOException if the connection fails or the request failed
+         */
+        ByteBuffer receive(int tag) throws IOException {
+            fill(Integer.BYTES);
+            final int length = input.getInt(input.position());
+            fill(Integer.BYTES + length);
+            input.position(input.position() + Integer.BYTES);
+            final ByteBuffer reply = input.slice(input.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            input.position(input.position() + length);
+            if (reply.getInt() != tag) throw new IOException("the reply does not belong to request " + tag + ".");
+            if (reply.get() != SimulationServer.OK) {
+                throw new IOException("request " + tag + " failed: " + StandardCharsets.UTF_8.decode(reply));
+            }
+            return reply;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (output.remaining() < bytes) flush();
+        }
+
+        /**
+         * The method for reading until the given number of bytes can be read from the input
+         * @param bytes the number of bytes
+         * @throws IOException if the connection fails
+         */
+        private void fill(int bytes) throws IOException {
+            if (input.remaining() >= bytes) return;
+            if (input.capacity() < bytes) {
+                input = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN).put(input).flip();
+            } else if (input.capacity() - input.position() < bytes) {
+                input.compact().flip(); // the bytes not read yet are moved to the front
+            }
+            final int position = input.position();
+            input.position(input.limit()).limit(input.capacity());
+            while (input.position() - position < bytes) {
+                if (channel.read(input) < 0) throw new IOException("the server closed the connection.");
+            }
+            input.limit(input.position()).position(position);
+        }
+    }
+}
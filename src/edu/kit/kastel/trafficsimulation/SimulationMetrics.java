@@ -0,0 +1,181 @@
+package edu.kit.kastel.trafficsimulation;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and timers of a simulation. The counters are striped {@link LongAdder}s, so the streets can add to
+ * them from every worker of a parallel tick without contending. A street counts its events in plain fields during
+ * its update and adds them here once at the end, and nothing is counted or timed while the metrics are off
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationMetrics implements SimulationMetricsMBean {
+
+    private static final int HISTOGRAM_BUCKETS = 40;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final String OBJECT_NAME = "edu.kit.kastel.trafficsimulation:type=SimulationMetrics,id=";
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final LongAdder ticks = new LongAdder();
+
+    private final LongAdder updateNanos = new LongAdder();
+
+    private final LongAdder movedCars = new LongAdder();
+
+    private final LongAdder blockedCars = new LongAdder();
+
+    private final LongAdder failedCrossings = new LongAdder();
+
+    private final LongAdder overtakes = new LongAdder();
+
+    private final LongAdder[] streetUpdateHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+    private ObjectName objectName;
+
+    /**
+     * Instantiates new metrics with every counter at 0
+     */
+    SimulationMetrics() {
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) streetUpdateHistogram[bucket] = new LongAdder();
+    }
+
+    /**
+     * The method for counting the ticks of one call of simulate
+     * @param count the number of simulated ticks
+     * @param nanos the time the ticks took
+     */
+    void addTicks(long count, long nanos) {
+        ticks.add(count);
+        updateNanos.add(nanos);
+    }
+
+    /**
+     * The method for adding the events counted by a street during its update
+     * @param moved the number of cars that moved
+     * @param blocked the number of cars stopped by a red light
+     * @param failed the number of cars that could not cross because the target street was full
+     * @param overtaken the number of overtakes
+     */
+    public void addStreetEvents(int moved, int blocked, int failed, int overtaken) {
+        if (moved != 0) movedCars.add(moved);
+        if (blocked != 0) blockedCars.add(blocked);
+        if (failed != 0) failedCrossings.add(failed);
+        if (overtaken != 0) overtakes.add(overtaken);
+    }
+
+    /**
+     * The method for adding the cars that moved on a sleeping street while it was brought up to date
+     * @param moved the number of times a car moved
+     */
+    void addMovedCars(long moved) {
+        if (moved != 0) movedCars.add(moved);
+    }
+
+    /**
+     * The method for adding the time of a street update to the histogram
+     * @param nanos the time the update took
+     */
+    void addStreetUpdate(long nanos) {
+        final int bucket = Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        streetUpdateHistogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        final long nanos = updateNanos.sum();
+        return nanos == 0 ? 0 : ticks.sum() * NANOS_PER_SECOND / nanos;
+    }
+
+    @Override
+    public long getMovedCars() {
+        return movedCars.sum();
+    }
+
+    @Override
+    public long getBlockedCars() {
+        return blockedCars.sum();
+    }
+
+    @Override
+    public long getFailedCrossings() {
+        return failedCrossings.sum();
+    }
+
+    @Override
+    public long getOvertakes() {
+        return overtakes.sum();
+    }
+
+    @Override
+    public long[] getStreetUpdateHistogram() {
+        final long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+            histogram[bucket] = streetUpdateHistogram[bucket].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * The method for registering the metrics at the platform MBean server
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    String register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(OBJECT_NAME + NEXT_ID.getAndIncrement());
+            server.registerMBean(this, objectName);
+        } catch (JMException exception) {
+            objectName = null;
+            return Main.ERROR + "The metrics could not be registered: " + exception.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * The method for removing the metrics from the platform MBean server, if they are registered
+     */
+    void unregister() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException exception) {
+            // the metrics are not registered anymore, which is what is wanted
+        }
+        objectName = null;
+    }
+
+    /**
+     * The method for rendering the metrics with one line per value, the histogram only with its used buckets
+     * @return the lines
+     */
+    String render() {
+        final StringBuilder output = new StringBuilder();
+        output.append("ticks ").append(getTicks())
+            .append(System.lineSeparator()).append(String.format("ticks per second %.1f", getTicksPerSecond()))
+            .append(System.lineSeparator()).append("cars moved ").append(getMovedCars())
+            .append(System.lineSeparator()).append("cars blocked by red lights ").append(getBlockedCars())
+            .append(System.lineSeparator()).append("failed crossings ").append(getFailedCrossings())
+            .append(System.lineSeparator()).append("overtakes ").append(getOvertakes());
+        final long[] histogram = getStreetUpdateHistogram();
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+            if (histogram[bucket] == 0) continue;
+            output.append(System.lineSeparator()).append("street updates below ").append(1L << bucket)
+                .append("ns ").append(histogram[bucket]);
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package edu.kit.kastel.trafficsimulation;
+
+/**
+ * The management interface through which the {@link SimulationMetrics} are exposed over JMX
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public interface SimulationMetricsMBean {
+
+    /**
+     * the getter method for the number of simulated ticks
+     * @return the number of ticks simulated since the metrics were turned on
+     */
+    long getTicks();
+
+    /**
+     * the getter method for the rate of the simulation
+     * @return the simulated ticks per second of time spent in simulate
+     */
+    double getTicksPerSecond();
+
+    /**
+     * the getter method for the number of times a car moved
+     * @return the number of times a car moved in a tick
+     */
+    long getMovedCars();
+
+    /**
+     * the getter method for the number of times a car was stopped by a red light
+     * @return the number of times a car could not cross because of a red light
+     */
+    long getBlockedCars();
+
+    /**
+     * the getter method for the number of failed crossings
+     * @return the number of times a car could not cross because the target street was full
+     */
+    long getFailedCrossings();
+
+    /**
+     * the getter method for the number of overtakes
+     * @return the number of times a car overtook another car
+     */
+    long getOvertakes();
+
+    /**
+     * the getter method for the histogram of the update times of the streets
+     * @return the number of street updates per bucket, bucket i counts the updates that took less than 2^i ns
+     */
+    long[] getStreetUpdateHistogram();
+}
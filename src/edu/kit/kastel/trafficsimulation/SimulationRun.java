@@ -0,0 +1,136 @@
+package edu.kit.kastel.trafficsimulation;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A run of the simulation over a number of ticks, which reports its progress to other threads and can be stopped
+ * between two ticks. A run stops early if it is cancelled or if its budget of wall clock time is used up, in both
+ * cases at the last tick it completed
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class SimulationRun {
+
+    /**
+     * The budget of a run that is not limited in time
+     */
+    static final long NO_BUDGET = Long.MAX_VALUE;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final int ticks;
+
+    private final long start;
+
+    private final long deadline;
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile long ticksDone;
+
+    private volatile boolean cancelled;
+
+    private volatile long end;
+
+    private volatile String output;
+
+    /**
+     * Instantiates a new run, whose time starts running now
+     * @param ticks the number of ticks of the run
+     * @param budget the wall clock time the run may take in nanoseconds, or {@value #NO_BUDGET}
+     */
+    SimulationRun(int ticks, long budget) {
+        this.ticks = ticks;
+        this.start = System.nanoTime();
+        this.deadline = budget == NO_BUDGET ? NO_BUDGET : start + budget;
+    }
+
+    /**
+     * the getter method for the number of ticks of the run
+     * @return the number of ticks the run simulates if it is not stopped
+     */
+    int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * The method for counting the given number of completed ticks, called by the simulation between two ticks
+     * @param completed the number of ticks completed since the last call
+     * @return true, if the run has to stop; false, otherwise
+     */
+    boolean advance(long completed) {
+        ticksDone += completed; // only the simulation writes the ticks, the other threads read them
+        return cancelled || deadline != NO_BUDGET && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * The method for cancelling the run, which stops after the tick it simulates right now
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * The method for finishing the run, called by the simulation once it stopped
+     * @param output the output of the simulation
+     */
+    void finish(String output) {
+        this.output = output;
+        this.end = System.nanoTime();
+        finished.countDown();
+    }
+
+    /**
+     * The method for checking if the run is finished
+     * @return true, if the simulation stopped; false, if it still runs
+     */
+    boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * The method for waiting until the run is finished. An interrupt does not stop the waiting, it is kept for the
+     * caller instead
+     * @return the result of the run, see {@link #giveResult(String)}
+     */
+    String await() {
+        boolean interrupted = false;
+        while (!isFinished()) {
+            try {
+                finished.await();
+            }   catch (InterruptedException interruptedException) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return giveResult(output);
+    }
+
+    /**
+     * The method for giving the result of the finished run
+     * @param output the output of the simulation
+     * @return the output, if it is an error; Ready, if every tick was simulated; the progress, otherwise
+     */
+    String giveResult(String output) {
+        if (!Main.READY.equals(output) || ticksDone >= ticks) return output;
+        return giveProgress();
+    }
+
+    /**
+     * The method for giving the progress of the run
+     * @return the state of the run, the completed and the requested ticks and the ticks per second
+     */
+    String giveProgress() {
+        final boolean done = isFinished();
+        final long completed = ticksDone;
+        final String state;
+        if (!done) state = "Running";
+        else if (completed >= ticks) state = "Finished";
+        else if (cancelled) state = "Cancelled";
+        else state = "Stopped";
+        final long nanos = Math.max(1, (done ? end : System.nanoTime()) - start);
+        return String.format("%s: %d of %d ticks at %d ticks per second", state, completed, ticks,
+            Math.round(completed * NANOS_PER_SECOND / nanos));
+    }
+}
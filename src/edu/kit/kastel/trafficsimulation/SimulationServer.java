@@ -0,0 +1,518 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a simulation to other processes over a binary protocol, on a TCP port of the loopback address or on a Unix
+ * domain socket. Every message is a frame of little endian values that starts with the number of bytes following it.
+ * A request holds a tag chosen by the client, its operation and the arguments of the operation:
+ * <ul>
+ *     <li>{@value #LOAD}: the path of the folder in UTF-8</li>
+ *     <li>{@value #SIMULATE}: the number of ticks</li>
+ *     <li>{@value #POSITION}: the id of the car</li>
+ *     <li>{@value #POSITIONS}: the lowest and the highest id of the cars</li>
+ *     <li>{@value #STREET_POSITIONS}: the id of the street</li>
+ *     <li>{@value #COMMAND}: any command of the interactive mode in UTF-8</li>
+ *     <li>{@value #QUIT}: nothing</li>
+ * </ul>
+ * The reply repeats the tag followed by {@value #OK} or {@value #FAILED}. A failed reply holds the error message in
+ * UTF-8, a reply to a position query the number of cars followed by the id, street, speed and position of each car,
+ * and a reply to a command its output in UTF-8. A client can send any number of requests without waiting for their
+ * replies, they are executed and replied to in the order they arrive.
+ * <p>
+ * Every connection works on the same simulation. A single thread serves all connections with a selector, and the
+ * requests that change the simulation are executed one after another by a worker thread, as the interactive mode
+ * does. While the worker executes the request of one connection, that connection is not read from and every other
+ * connection that sends such a request waits for its turn. The position queries of the other connections are
+ * answered meanwhile from the {@link PositionSnapshot} of the last finished tick, so they never wait for a long
+ * update and never stop it. The replies are collected per connection and written once every complete request read
+ * is executed, and a connection is not read from while more than {@value #MAX_PENDING_BYTES} bytes of its replies
+ * wait to be written. Quitting the simulation stops the server once the replies are written
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class SimulationServer implements Closeable {
+
+    /**
+     * The operation loading a folder
+     */
+    static final byte LOAD = 1;
+
+    /**
+     * The operation advancing the simulation
+     */
+    static final byte SIMULATE = 2;
+
+    /**
+     * The operation giving the position of one car
+     */
+    static final byte POSITION = 3;
+
+    /**
+     * The operation giving the positions of the cars in a range of ids
+     */
+    static final byte POSITIONS = 4;
+
+    /**
+     * The operation giving the positions of the cars on one street
+     */
+    static final byte STREET_POSITIONS = 5;
+
+    /**
+     * The operation executing a command of the interactive mode
+     */
+    static final byte COMMAND = 6;
+
+    /**
+     * The operation quitting the simulation
+     */
+    static final byte QUIT = 7;
+
+    /**
+     * The status of a reply to an executed request
+     */
+    static final byte OK = 0;
+
+    /**
+     * The status of a reply to a request that failed
+     */
+    static final byte FAILED = 1;
+
+    /**
+     * The number of bytes of the tag and the operation of a request
+     */
+    static final int REQUEST_HEADER_BYTES = Integer.BYTES + 1;
+
+    /**
+     * The number of bytes of the tag and the status of a reply
+     */
+    static final int REPLY_HEADER_BYTES = Integer.BYTES + 1;
+
+    /**
+     * The number of bytes of every car in a reply to a position query
+     */
+    static final int CAR_BYTES = 4 * Integer.BYTES;
+
+    private static final int MAX_REQUEST_BYTES = 1 << 20;
+
+    private static final int MAX_PENDING_BYTES = 1 << 24;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final Simulation simulation;
+
+    private final SocketAddress address;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel server;
+
+    private final CarPositions positions = new CarPositions();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    private final Queue<Connection> waiting = new ArrayDeque<>();
+
+    private Connection executing;
+
+    private CompletableFuture<String> job;
+
+    private boolean serving = true;
+
+    /**
+     * Instantiates a new server listening on the given address
+     * @param address the address, see {@link #parseAddress(String)}
+     * @param simulation the simulation that is served
+     * @throws IOException if the address cannot be bound
+     */
+    SimulationServer(String address, Simulation simulation) throws IOException {
+        this.simulation = simulation;
+        simulation.setSnapshots(true);
+        final SocketAddress requested = parseAddress(address);
+        this.server = requested instanceof UnixDomainSocketAddress
+            ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        try {
+            server.bind(requested);
+            this.address = server.getLocalAddress();
+            server.configureBlocking(false);
+            this.selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        }   catch (IOException ioException) {
+            server.close();
+            throw ioException;
+        }
+    }
+
+    /**
+     * The method for parsing an address given on the command line
+     * @param address a port number for the loopback address, otherwise the path of a Unix domain socket
+     * @return the socket address
+     */
+    static SocketAddress parseAddress(String address) {
+        if (address.matches("\\d{1,5}")) return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            Integer.parseInt(address));
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    /**
+     * the getter method for the address the server listens on
+     * @return the bound address, with the chosen port if port 0 was given
+     */
+    SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * The method for serving the connections until the simulation is quit and every reply is written, or until
+     * the replies could not be written for {@value #SHUTDOWN_TIMEOUT_MILLIS}ms after that
+     * @throws IOException if the selector fails
+     */
+    void serve() throws IOException {
+        while (serving) {
+            selector.select();
+            finishJob();
+            handleSelected();
+        }
+        server.close(); // no connection is accepted anymore, the remaining replies are written
+        while (hasPendingReplies() && selector.select(SHUTDOWN_TIMEOUT_MILLIS) > 0) handleSelected();
+    }
+
+    /**
+     * The method for closing every connection and the server
+     * @throws IOException if the socket file of a Unix domain socket cannot be removed
+     */
+    @Override
+    public void close() throws IOException {
+        worker.shutdownNow();
+        for (SelectionKey key : selector.keys()) key.channel().close();
+        selector.close();
+        server.close();
+        if (address instanceof UnixDomainSocketAddress socketAddress) Files.deleteIfExists(socketAddress.getPath());
+    }
+
+    private void handleSelected() throws IOException {
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) continue;
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            final Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) read(connection);
+                if (key.isValid()) write(key, connection);
+            }   catch (IOException ioException) {
+                key.channel().close(); // only the connection fails, the others are served on
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        if (address instanceof InetSocketAddress) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private boolean hasPendingReplies() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection && connection.getPendingBytes() > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The method for replying to the request the worker executed, if it is finished, and for executing the requests
+     * that waited for it in the order they started to wait
+     * @throws IOException if the selector fails
+     */
+    private void finishJob() throws IOException {
+        if (job == null || !job.isDone()) return;
+        final String output = job.join();
+        final Connection connection = executing;
+        job = null;
+        executing = null;
+        serving = simulation.isRunning();
+        final boolean failed = output != null && output.startsWith(Main.ERROR);
+        connection.replyText(connection.jobTag, failed ? FAILED : OK,
+            connection.jobOperation == COMMAND || failed ? output : null);
+        waiting.add(connection); // the connections that waited meanwhile go first
+        while (executing == null && !waiting.isEmpty()) resume(waiting.poll());
+    }
+
+    /**
+     * The method for executing the requests of the given connection that were read while it waited
+     * @param connection the connection
+     */
+    private void resume(Connection connection) {
+        final SelectionKey key = connection.channel.keyFor(selector);
+        if (key == null || !key.isValid()) return;
+        connection.blocked = false;
+        try {
+            execute(connection);
+            if (key.isValid()) write(key, connection);
+        }   catch (IOException ioException) {
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        try {
+            key.channel().close();
+        }   catch (IOException ioException) {
+            // the connection fails in any case, the others are served on
+        }
+    }
+
+    /**
+     * The method for reading from the given connection and executing every complete request read so far
+     * @param connection the connection
+     * @throws IOException if the connection fails, was closed or broke the protocol
+     */
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.input) < 0) throw new IOException("the connection was closed.");
+        execute(connection);
+    }
+
+    /**
+     * The method for executing every complete request read from the given connection, until one of them has to wait
+     * for the worker
+     * @param connection the connection
+     * @throws IOException if the connection broke the protocol
+     */
+    private void execute(Connection connection) throws IOException {
+        final ByteBuffer input = connection.input;
+        input.flip();
+        int needed = 0;
+        while (serving && !connection.blocked && input.remaining() >= Integer.BYTES) {
+            final int length = input.getInt(input.position());
+            if (length < REQUEST_HEADER_BYTES || length > MAX_REQUEST_BYTES) {
+                throw new IOException("the request is malformed.");
+            }
+            final int end = input.position() + Integer.BYTES + length;
+            if (end > input.limit()) {
+                needed = Integer.BYTES + length;
+                break;
+            }
+            if (!execute(connection, input.slice(end - length, length).order(ByteOrder.LITTLE_ENDIAN))) break;
+            input.position(end);
+        }
+        input.compact();
+        if (needed > input.capacity()) { // the buffer grows to hold the whole request
+            connection.input = ByteBuffer.allocate(needed).order(ByteOrder.LITTLE_ENDIAN).put(input.flip());
+        }
+    }
+
+    /**
+     * The method for writing as much of the replies of the given connection as the connection takes
+     * @param key the key of the connection
+     * @param connection the connection
+     * @throws IOException if the connection fails
+     */
+    private void write(SelectionKey key, Connection connection) throws IOException {
+        final ByteBuffer pending = connection.output.duplicate().flip().position(connection.written);
+        connection.channel.write(pending);
+        connection.written = pending.position();
+        if (connection.written == connection.output.position()) {
+            connection.output.clear();
+            connection.written = 0;
+        }
+        final int pendingBytes = connection.getPendingBytes();
+        int interest = pendingBytes > 0 ? SelectionKey.OP_WRITE : 0;
+        if (serving && !connection.blocked && pendingBytes <= MAX_PENDING_BYTES) interest |= SelectionKey.OP_READ;
+        key.interestOps(interest);
+    }
+
+    /**
+     * The method for executing a request, which is either answered at once or handed to the worker. A request that
+     * changes the simulation while the worker executes the request of another connection has to wait
+     * @param connection the connection the request was read from
+     * @param request the request after its length
+     * @return true, if the request was executed or handed to the worker; false, if it waits
+     */
+    private boolean execute(Connection connection, ByteBuffer request) {
+        final int tag = request.getInt();
+        final byte operation = request.get();
+        if (operation == POSITION || operation == POSITIONS || operation == STREET_POSITIONS) {
+            positions.clear();
+            final String output = collectPositions(operation, request);
+            if (output != null) connection.replyText(tag, FAILED, output);
+            else connection.replyPositions(tag, positions);
+            return true;
+        }
+        connection.blocked = true;
+        if (executing != null) {
+            waiting.add(connection);
+            return false;
+        }
+        // the request is copied, because the input of the connection is compacted while the worker executes it
+        final ByteBuffer arguments = ByteBuffer.allocate(request.remaining()).order(ByteOrder.LITTLE_ENDIAN)
+            .put(request).flip();
+        connection.jobTag = tag;
+        connection.jobOperation = operation;
+        executing = connection;
+        job = CompletableFuture.supplyAsync(() -> executeOperation(operation, arguments), worker);
+        job.whenComplete((output, failure) -> selector.wakeup());
+        return true;
+    }
+
+    /**
+     * The method for collecting the positions asked for by a query, from the simulation if the worker is idle and
+     * from the snapshot of the last finished tick otherwise
+     * @param operation the operation of the query
+     * @param request the arguments of the query
+     * @return An error message, if an error occurs; null, otherwise
+     */
+    private String collectPositions(byte operation, ByteBuffer request) {
+        if (request.remaining() != (operation == POSITIONS ? 2 : 1) * Integer.BYTES) {
+            return Main.ERROR + "The request is malformed.";
+        }
+        final PositionSnapshot snapshot = simulation.getSnapshot();
+        final boolean direct = executing == null;
+        if (!direct && snapshot == null) return Main.ERROR + "Nothing is loaded right now";
+        if (operation == POSITION) {
+            final int carId = request.getInt();
+            return direct ? simulation.giveCarPosition(carId, positions) : snapshot.giveCarPosition(carId, positions);
+        }
+        if (operation == STREET_POSITIONS) {
+            final int streetId = request.getInt();
+            return direct ? simulation.giveStreetPositions(streetId, positions)
+                : snapshot.giveStreetPositions(streetId, positions);
+        }
+        final int minCarId = request.getInt();
+        final int maxCarId = request.getInt();
+        if (minCarId > maxCarId) return Main.ERROR + "The first car id of a range cannot be greater than the last.";
+        return direct ? simulation.givePositions(minCarId, maxCarId, positions)
+            : snapshot.givePositions(minCarId, maxCarId, positions);
+    }
+
+    private String executeOperation(byte operation, ByteBuffer request) {
+        return switch (operation) {
+            case LOAD -> load(StandardCharsets.UTF_8.decode(request).toString());
+            case SIMULATE -> simulate(request);
+            case COMMAND -> executeCommand(StandardCharsets.UTF_8.decode(request).toString());
+            case QUIT -> {
+                simulation.quit();
+                yield null;
+            }
+            default -> Main.ERROR + "Unknown operation " + operation;
+        };
+    }
+
+    private String load(String folder) {
+        try {
+            return simulation.load(folder);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+    }
+
+    private String executeCommand(String command) {
+        try {
+            return Command.executeCommand(command, simulation);
+        }   catch (IOException ioException) {
+            return Main.ERROR + ioException;
+        }
+    }
+
+    private String simulate(ByteBuffer request) {
+        if (request.remaining() != Integer.BYTES) return Main.ERROR + "The request is malformed.";
+        final int ticks = request.getInt();
+        if (ticks < 0) return Main.ERROR + "The number of ticks cannot be negative.";
+        return simulation.update(ticks);
+    }
+
+    /**
+     * A connection of a client with the requests read but not executed yet and the replies not written yet
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+
+        private ByteBuffer input = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        private ByteBuffer output = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        private int written;
+
+        private boolean blocked;
+
+        private int jobTag;
+
+        private byte jobOperation;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        int getPendingBytes() {
+            return output.position() - written;
+        }
+
+        void replyText(int tag, byte status, String text) {
+            final byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+            startReply(tag, status, bytes.length);
+            output.put(bytes);
+        }
+
+        void replyPositions(int tag, CarPositions positions) {
+            final int count = positions.size();
+            startReply(tag, OK, Integer.BYTES + count * CAR_BYTES);
+            output.putInt(count);
+            for (int index = 0; index < count; index++) {
+                output.putInt(positions.getId(index)).putInt(positions.getStreetId(index))
+                    .putInt(positions.getSpeed(index)).putInt(positions.getPosition(index));
+            }
+        }
+
+        private void startReply(int tag, byte status, int bodyBytes) {
+            final int length = REPLY_HEADER_BYTES + bodyBytes;
+            reserve(Integer.BYTES + length);
+            output.putInt(length).putInt(tag).put(status);
+        }
+
+        private void reserve(int bytes) {
+            if (output.remaining() >= bytes) return;
+            // the replies that were written are dropped when the buffer grows
+            int capacity = output.capacity();
+            while (capacity - getPendingBytes() < bytes) capacity *= 2;
+            final ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            grown.put(output.flip().position(written));
+            output = grown;
+            written = 0;
+        }
+    }
+}
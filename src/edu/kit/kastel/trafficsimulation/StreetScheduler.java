@@ -0,0 +1,314 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.TrajectoryRecorder;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Schedules the updates of the streets, so that a tick only updates the streets on which something can happen.
+ * A street whose cars all drive at a constant speed without closing up to the car ahead or reaching the end of the
+ * street falls asleep until the tick in which one of them would. Its cars are then advanced in one step by the
+ * ticks it slept. A street whose cars wait in front of a red light falls asleep until the light turns green. A street
+ * also wakes up if a car enters it, and every sleeping street is brought up to date when the state of the simulation
+ * is read from outside the tick loop. While every street sleeps, the ticks until the next one wakes up are skipped
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class StreetScheduler {
+
+    /**
+     * The value returned by {@link #nextAwake(int)} if there is no further awake street
+     */
+    static final int NO_STREET = -1;
+
+    private static final int MIN_SLEEP_TICKS = 1;
+
+    private static final int WHEEL_SIZE = 1 << 14;
+
+    private static final int NOT_QUEUED = -1;
+
+    private final Simulation simulation;
+
+    private final List<Street> streets;
+
+    private final long[] awake;
+
+    private final long[] sleptAt;
+
+    private final int[] wheel;
+
+    private final int[] next;
+
+    private final int[] previous;
+
+    private int awakeCount;
+
+    private long tick;
+
+    private boolean sleeping;
+
+    private boolean logging;
+
+    private int[] loggedWakeUps = new int[0];
+
+    private long[] loggedSleptAt = new long[0];
+
+    private int logged;
+
+    /**
+     * Instantiates a new scheduler in which every street is awake
+     * @param simulation the simulation the streets are a part of
+     * @param streets the streets ordered by their ids
+     */
+    StreetScheduler(Simulation simulation, List<Street> streets) {
+        final int numberOfStreets = streets.size();
+        this.simulation = simulation;
+        this.streets = streets;
+        this.awakeCount = numberOfStreets;
+        this.awake = new long[(numberOfStreets + Long.SIZE - 1) / Long.SIZE];
+        for (int id = 0; id < numberOfStreets; id++) awake[id / Long.SIZE] |= 1L << id;
+        this.sleptAt = new long[numberOfStreets];
+        this.wheel = new int[WHEEL_SIZE];
+        this.next = new int[numberOfStreets];
+        this.previous = new int[numberOfStreets];
+        Arrays.fill(wheel, NOT_QUEUED);
+        Arrays.fill(previous, NOT_QUEUED);
+        this.sleeping = true;
+    }
+
+    /**
+     * The method for switching the sleeping of the streets on or off. Without it every street is updated in every
+     * tick and no tick is skipped, which gives the same states as with it, only slower
+     * @param sleeping true, if the streets may fall asleep; false, if every street stays awake
+     */
+    void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+        if (!sleeping) wakeAll();
+    }
+
+    /**
+     * The method for starting the next tick, which wakes up every street that has to be updated in it
+     */
+    void startTick() {
+        final int slot = (int) (tick + 1) & (WHEEL_SIZE - 1);
+        while (wheel[slot] != NOT_QUEUED) {
+            final int id = wheel[slot];
+            removeFromQueue(id);
+            wake(id, tick);
+        }
+    }
+
+    /**
+     * The method for finishing the current tick, which sends every awake street to sleep that can be advanced
+     * without an update for at least {@value #MIN_SLEEP_TICKS} ticks. A street sleeps for less than
+     * {@value #WHEEL_SIZE} ticks at once, which is more than a car needs for the longest street at the lowest speed.
+     * Every awake street is copied in to the position snapshot, if there is one, and recorded if there is a recording
+     * and its cars changed since they were recorded last; the cars of every other street drove on at their speeds
+     */
+    void endTick() {
+        tick++;
+        final PositionSnapshot snapshot = simulation.getSnapshot();
+        final TrajectoryRecorder recorder = simulation.getRecorder();
+        for (int id = nextAwake(0); id != NO_STREET; id = nextAwake(id + 1)) {
+            final Street street = streets.get(id);
+            if (snapshot != null) snapshot.copy(street, tick);
+            if (recorder != null && street.hasUnrecordedChanges()) recorder.record(tick, street);
+            if (!sleeping) continue;
+            final int freeTicks = street.getFreeTicks(simulation);
+            if (freeTicks < MIN_SLEEP_TICKS) continue;
+            awake[id / Long.SIZE] &= ~(1L << id);
+            awakeCount--;
+            sleptAt[id] = tick;
+            if (freeTicks != Street.ALWAYS_FREE) addToQueue(id, tick + Math.min(freeTicks, WHEEL_SIZE - 2) + 1);
+        }
+    }
+
+    /**
+     * The method for counting the next ticks in which no street is updated, because every street sleeps
+     * @param limit the highest number of ticks that is counted
+     * @return the number of ticks before the next street wakes up, at most the limit
+     */
+    long getIdleTicks(long limit) {
+        if (awakeCount > 0) return 0;
+        final long horizon = Math.min(limit, WHEEL_SIZE - 1); // no street is queued further ahead
+        for (long ahead = 1; ahead <= horizon; ahead++) {
+            if (wheel[(int) (tick + ahead) & (WHEEL_SIZE - 1)] != NOT_QUEUED) return ahead - 1;
+        }
+        return limit;
+    }
+
+    /**
+     * The method for skipping the given number of ticks, which cannot be more than {@link #getIdleTicks(long)}
+     * returned before
+     * @param ticks the number of ticks
+     */
+    void skip(long ticks) {
+        tick += ticks;
+    }
+
+    /**
+     * the getter method for the number of finished ticks
+     * @return the number of ticks finished since the scheduler was created
+     */
+    long getTick() {
+        return tick;
+    }
+
+    /**
+     * The method for waking up the given street because a car enters it in the current tick
+     * @param id the id of the street
+     * @param updated true, if the street had its turn in the current tick already; false, otherwise
+     */
+    void wakeUp(int id, boolean updated) {
+        if (isAwake(id)) return;
+        if (logging) log(id);
+        removeFromQueue(id);
+        wake(id, updated ? tick + 1 : tick);
+    }
+
+    /**
+     * The method for starting a new log of the streets woken up by entering cars, so that the wake ups can be undone
+     */
+    void startWakeUpLog() {
+        logging = true;
+        logged = 0;
+    }
+
+    /**
+     * the getter method for the number of streets woken up by entering cars since the log was started
+     * @return the number of logged wake ups
+     */
+    int getLoggedWakeUps() {
+        return logged;
+    }
+
+    /**
+     * The method for sending the streets woken up by entering cars back to sleep, in to the slot of the queue they
+     * were woken up from, until the given number of wake ups is left in the log. The cars of the streets are not
+     * moved back
+     * @param count the number of wake ups that are kept
+     */
+    void undoWakeUps(int count) {
+        while (logged > count) {
+            logged--;
+            final int id = loggedWakeUps[2 * logged];
+            awake[id / Long.SIZE] &= ~(1L << id);
+            awakeCount--;
+            sleptAt[id] = loggedSleptAt[logged];
+            if (loggedWakeUps[2 * logged + 1] != NOT_QUEUED) addToQueue(id, loggedWakeUps[2 * logged + 1]);
+        }
+    }
+
+    /**
+     * The method for bringing the cars of every sleeping street up to date, without waking the streets up
+     */
+    void catchUp() {
+        for (int word = 0; word < awake.length; word++) {
+            long sleeping = ~awake[word];
+            while (sleeping != 0) {
+                final int id = word * Long.SIZE + Long.numberOfTrailingZeros(sleeping);
+                if (id >= sleptAt.length) break;
+                advance(id, tick);
+                sleeping &= sleeping - 1;
+            }
+        }
+    }
+
+    /**
+     * The method for waking up every sleeping street, because the ticks they sleep until may have changed
+     */
+    void wakeAll() {
+        for (int id = 0; id < sleptAt.length; id++) {
+            if (isAwake(id)) continue;
+            removeFromQueue(id);
+            wake(id, tick);
+        }
+    }
+
+    /**
+     * The method for copying every street in to the given position snapshot, the cars of a sleeping street at the
+     * positions they had when it fell asleep
+     * @param snapshot the position snapshot
+     */
+    void copyAll(PositionSnapshot snapshot) {
+        for (int id = 0; id < sleptAt.length; id++) {
+            snapshot.copy(streets.get(id), isAwake(id) ? tick : sleptAt[id]);
+        }
+    }
+
+    /**
+     * The method for checking if the given street is awake
+     * @param id the id of the street
+     * @return true, if the street is updated in the current tick; false, if it sleeps
+     */
+    boolean isAwake(int id) {
+        return (awake[id / Long.SIZE] & 1L << id) != 0;
+    }
+
+    /**
+     * The method for finding the awake street with the lowest id from the given id on. Streets woken up during the
+     * tick are found as well, so the awake streets can be iterated in the order of their ids while cars enter them
+     * @param from the lowest id that is searched
+     * @return the id of the street, if there is one; {@value #NO_STREET}, otherwise
+     */
+    int nextAwake(int from) {
+        int word = from / Long.SIZE;
+        if (word >= awake.length) return NO_STREET;
+        long bits = awake[word] & -1L << from;
+        while (bits == 0) {
+            if (++word == awake.length) return NO_STREET;
+            bits = awake[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    private void wake(int id, long until) {
+        advance(id, until);
+        awake[id / Long.SIZE] |= 1L << id;
+        awakeCount++;
+    }
+
+    private void advance(int id, long until) {
+        if (until > sleptAt[id]) {
+            final long moved = streets.get(id).advanceFreely((int) (until - sleptAt[id]));
+            final SimulationMetrics metrics = simulation.getMetrics();
+            if (metrics != null) metrics.addMovedCars(moved);
+        }
+        sleptAt[id] = until;
+    }
+
+    private void log(int id) {
+        if (logged == loggedSleptAt.length) {
+            loggedSleptAt = Arrays.copyOf(loggedSleptAt, Math.max(1, 2 * logged));
+            loggedWakeUps = Arrays.copyOf(loggedWakeUps, 2 * loggedSleptAt.length);
+        }
+        int first = id; // the slot is only known to the first street of its list
+        while (previous[first] >= 0) first = previous[first];
+        loggedWakeUps[2 * logged] = id;
+        loggedWakeUps[2 * logged + 1] = previous[first] == NOT_QUEUED ? NOT_QUEUED : -previous[first] - 2;
+        loggedSleptAt[logged] = sleptAt[id];
+        logged++;
+    }
+
+    // the queue is a timing wheel with a doubly linked list of the streets waking up in each of its slots, so that
+    // a street woken up by an entering car can be removed
+
+    private void addToQueue(int id, long wakeTick) {
+        final int slot = (int) wakeTick & (WHEEL_SIZE - 1);
+        next[id] = wheel[slot];
+        previous[id] = -slot - 2; // a negative previous street refers to the slot the street is the first of
+        if (wheel[slot] != NOT_QUEUED) previous[wheel[slot]] = id;
+        wheel[slot] = id;
+    }
+
+    private void removeFromQueue(int id) {
+        if (previous[id] == NOT_QUEUED) return;
+        if (previous[id] < NOT_QUEUED) wheel[-previous[id] - 2] = next[id];
+        else next[previous[id]] = next[id];
+        if (next[id] != NOT_QUEUED) previous[next[id]] = previous[id];
+        previous[id] = NOT_QUEUED;
+    }
+}
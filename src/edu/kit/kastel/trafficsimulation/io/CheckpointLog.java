@@ -0,0 +1,457 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.Crossing;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+import edu.kit.kastel.trafficsimulation.util.IntIndex;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Append-only log of checkpoints of a running simulation. The log starts with {@value #MAGIC} and the version
+ * {@value #VERSION}, followed by records of little endian integers that each start with their type and the tick
+ * they were taken at:
+ * <ul>
+ *     <li>a full record holds the whole state in the format of a {@link SimulationSnapshot}</li>
+ *     <li>a delta record holds only the crossings whose light changed and the cars whose street, position, speed
+ *     or desired direction changed since the previous record, the crossings by their index and the cars by their
+ *     index in the last full record</li>
+ * </ul>
+ * The simulation only copies the state of the crossings and cars in to a buffer on a checkpoint. Comparing it with
+ * the previous checkpoint and writing the delta is done by a writer thread, so the tick loop never waits for the
+ * file. Buffers are added while the writer falls behind, up to {@value #MAX_BUFFERS} of them or as many as fit in
+ * {@value #BUFFERED_INTS} integers, but at least {@value #MIN_BUFFERS}. If no buffer is free after that, the
+ * checkpoint is refused and can be taken a tick later.
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class CheckpointLog implements Closeable {
+
+    /**
+     * The first integer of every checkpoint log
+     */
+    public static final int MAGIC = 0x5443504C;
+
+    /**
+     * The version of the format written by this class
+     */
+    public static final int VERSION = 1;
+
+    private static final int RECORD_FULL = 1;
+
+    private static final int RECORD_DELTA = 2;
+
+    private static final int MIN_BUFFERS = 2;
+
+    private static final int MAX_BUFFERS = 64;
+
+    private static final int BUFFERED_INTS = 1 << 24;
+
+    private static final int CROSSING_INTS = 4;
+
+    private static final int STREET_INTS = 6;
+
+    private static final int CAR_INTS = 6;
+
+    private static final int LIGHT_INTS = 2;
+
+    private static final int CAPTURED_CAR_INTS = 5;
+
+    private static final int CHANGING_CAR_INTS = 4;
+
+    private static final int ROW_INTS = 7;
+
+    private static final int ROW_STREET = 3;
+
+    private static final Capture STOP = new Capture(0, 0);
+
+    private final FileChannel channel;
+
+    private final IntFileWriter output;
+
+    private final int maxBuffers;
+
+    private final BlockingQueue<Capture> free;
+
+    private final BlockingQueue<Capture> filled;
+
+    private int buffers;
+
+    private final Thread writer;
+
+    private final IntIndex<Integer> carIndices;
+
+    private final int[] lastLights;
+
+    private final int[] lastCars;
+
+    private final int[] changedLights;
+
+    private final int[] changedCars;
+
+    private volatile IOException failure;
+
+    private CheckpointLog(FileChannel channel, long tick, List<Crossing> crossings, List<Street> streets)
+        throws IOException {
+        this.channel = channel;
+        this.output = new IntFileWriter(channel);
+        output.putInt(RECORD_FULL);
+        output.putLong(tick);
+        SimulationSnapshot.writeState(output, crossings, streets);
+        output.flush();
+
+        final Capture first = new Capture(crossings.size(), countCars(streets));
+        first.fill(tick, crossings, streets);
+        this.carIndices = new IntIndex<>(first.numberOfCars);
+        this.lastLights = first.lights.clone();
+        this.lastCars = new int[CHANGING_CAR_INTS * first.numberOfCars];
+        for (int index = 0; index < first.numberOfCars; index++) {
+            carIndices.put(first.cars[index * CAPTURED_CAR_INTS], index); // the order of the full record
+            System.arraycopy(first.cars, index * CAPTURED_CAR_INTS + 1, lastCars, index * CHANGING_CAR_INTS,
+                CHANGING_CAR_INTS);
+        }
+        this.changedLights = new int[(LIGHT_INTS + 1) * crossings.size()];
+        this.changedCars = new int[CAPTURED_CAR_INTS * first.numberOfCars];
+        final int captureInts = first.lights.length + first.cars.length;
+        this.maxBuffers = Math.max(MIN_BUFFERS, Math.min(MAX_BUFFERS, BUFFERED_INTS / Math.max(1, captureInts)));
+        this.free = new ArrayBlockingQueue<>(maxBuffers);
+        this.filled = new ArrayBlockingQueue<>(maxBuffers + 1);
+        free.add(first);
+        this.buffers = 1;
+
+        this.writer = new Thread(this::write, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The method for starting a new log, replacing the file if it exists, with a full record of the given state
+     *
+     * @param file the path of the log
+     * @param tick the current tick of the simulation
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @return the log
+     * @throws IOException if the file cannot be written
+     */
+    public static CheckpointLog create(Path file, long tick, List<Crossing> crossings, List<Street> streets)
+        throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final IntFileWriter header = new IntFileWriter(channel);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.flush();
+            return new CheckpointLog(channel, tick, crossings, streets);
+        }   catch (IOException ioException) {
+            channel.close();
+            throw ioException;
+        }
+    }
+
+    /**
+     * The method for continuing an existing log with a full record of the given state
+     *
+     * @param file the path of the log
+     * @param tick the current tick of the simulation, which cannot be before the last record of the log
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @return the log
+     * @throws IOException if the file cannot be written
+     */
+    public static CheckpointLog append(Path file, long tick, List<Crossing> crossings, List<Street> streets)
+        throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            return new CheckpointLog(channel, tick, crossings, streets);
+        }   catch (IOException ioException) {
+            channel.close();
+            throw ioException;
+        }
+    }
+
+    /**
+     * The method for taking a checkpoint of the given state. Only the state is copied, the checkpoint is written
+     * by the writer thread
+     *
+     * @param tick the current tick of the simulation
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @return true, if the checkpoint is taken; false, if every buffer is still waiting to be written
+     */
+    public boolean capture(long tick, List<Crossing> crossings, List<Street> streets) {
+        Capture capture = free.poll();
+        if (capture == null) {
+            if (buffers == maxBuffers) return false;
+            capture = new Capture(lastLights.length / LIGHT_INTS, lastCars.length / CHANGING_CAR_INTS);
+            buffers++;
+        }
+        capture.fill(tick, crossings, streets);
+        filled.add(capture);
+        return true;
+    }
+
+    /**
+     * The method for waiting until every checkpoint is written and closing the log
+     *
+     * @throws IOException if a checkpoint could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        filled.add(STOP);
+        try {
+            writer.join();
+        }   catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure == null) output.flush();
+        }   finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * The method for rolling a log back to the given tick. The state at the tick is rebuilt from the last full
+     * record before it and the delta records up to it, and every record after the tick is removed from the log
+     *
+     * @param file the path of the log
+     * @param tick the tick of a checkpoint in the log
+     * @return the state at the tick; null, if there is no checkpoint for the tick
+     * @throws IOException if the file cannot be read or is not a checkpoint log
+     */
+    public static SimulationSnapshot rollback(Path file, long tick) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final IntFileReader input = new IntFileReader(channel);
+            if (input.getRemaining() < 2L * Integer.BYTES || input.readInt() != MAGIC) {
+                throw new IOException(String.format("file %s is not a checkpoint log.", file));
+            }
+            final int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("checkpoint log version %d is not supported.", version));
+            }
+            int[] crossingValues = null;
+            int[] streetValues = null;
+            int[] rows = null;
+            long lastTick = -1;
+            long end = input.getPosition();
+            try {
+                while (input.getRemaining() > 0) {
+                    final int type = input.readInt();
+                    final long recordTick = input.readLong();
+                    if (recordTick > tick) break;
+                    if (type == RECORD_FULL) {
+                        final int[][] state = SimulationSnapshot.readState(input);
+                        if (state == null) break;
+                        crossingValues = state[0];
+                        streetValues = state[1];
+                        rows = toRows(streetValues, state[2]);
+                    } else if (type != RECORD_DELTA || rows == null || !applyDelta(input, crossingValues, rows)) {
+                        throw new IOException(String.format("checkpoint log %s is corrupted.", file));
+                    }
+                    lastTick = recordTick;
+                    end = input.getPosition();
+                }
+            }   catch (EOFException eofException) {
+                // the last record was not written completely, the log ends with the record before
+            }
+            if (lastTick != tick) return null;
+            channel.truncate(end);
+            return SimulationSnapshot.build(crossingValues, streetValues, toColumns(streetValues, rows));
+        }
+    }
+
+    private void write() {
+        while (true) {
+            final Capture capture;
+            try {
+                capture = filled.take();
+            }   catch (InterruptedException interruptedException) {
+                return;
+            }
+            if (capture == STOP) return;
+            if (failure == null) {
+                try {
+                    writeDelta(capture);
+                }   catch (IOException ioException) {
+                    failure = ioException;
+                }
+            }
+            free.add(capture);
+        }
+    }
+
+    private void writeDelta(Capture capture) throws IOException {
+        int lights = 0;
+        for (int index = 0; index < lastLights.length / LIGHT_INTS; index++) {
+            final int offset = index * LIGHT_INTS;
+            if (capture.lights[offset] != lastLights[offset] || capture.lights[offset + 1] != lastLights[offset + 1]) {
+                changedLights[lights++] = index;
+                changedLights[lights++] = capture.lights[offset];
+                changedLights[lights++] = capture.lights[offset + 1];
+                lastLights[offset] = capture.lights[offset];
+                lastLights[offset + 1] = capture.lights[offset + 1];
+            }
+        }
+        int cars = 0;
+        for (int captured = 0; captured < capture.numberOfCars; captured++) {
+            final int offset = captured * CAPTURED_CAR_INTS;
+            final int index = carIndices.get(capture.cars[offset]);
+            if (!Arrays.equals(capture.cars, offset + 1, offset + CAPTURED_CAR_INTS,
+                    lastCars, index * CHANGING_CAR_INTS, (index + 1) * CHANGING_CAR_INTS)) {
+                changedCars[cars++] = index;
+                System.arraycopy(capture.cars, offset + 1, changedCars, cars, CHANGING_CAR_INTS);
+                System.arraycopy(capture.cars, offset + 1, lastCars, index * CHANGING_CAR_INTS, CHANGING_CAR_INTS);
+                cars += CHANGING_CAR_INTS;
+            }
+        }
+        output.putInt(RECORD_DELTA);
+        output.putLong(capture.tick);
+        output.putInt(lights / (LIGHT_INTS + 1));
+        output.putInts(changedLights, 0, lights);
+        output.putInt(cars / CAPTURED_CAR_INTS);
+        output.putInts(changedCars, 0, cars);
+        output.flush();
+    }
+
+    private static boolean applyDelta(IntFileReader input, int[] crossingValues, int[] rows) throws IOException {
+        final int lights = input.readInt();
+        for (int light = 0; light < lights; light++) {
+            final int index = input.readInt();
+            if (index < 0 || index >= crossingValues.length / CROSSING_INTS) return false;
+            crossingValues[index * CROSSING_INTS + 2] = input.readInt();
+            crossingValues[index * CROSSING_INTS + 3] = input.readInt();
+        }
+        final int cars = input.readInt();
+        for (int car = 0; car < cars; car++) {
+            final int index = input.readInt();
+            if (index < 0 || index >= rows.length / ROW_INTS) return false;
+            input.read(rows, index * ROW_INTS + ROW_STREET, CHANGING_CAR_INTS);
+        }
+        return true;
+    }
+
+    /**
+     * Converts the columns of a full record in to one row per car: id, maximum speed, acceleration, street,
+     * position, speed and desired direction
+     */
+    private static int[] toRows(int[] streetValues, int[] carValues) {
+        final int[] rows = new int[carValues.length / CAR_INTS * ROW_INTS];
+        int offset = 0;
+        int row = 0;
+        for (int street = 0; street < streetValues.length / STREET_INTS; street++) {
+            final int count = streetValues[street * STREET_INTS + STREET_INTS - 1];
+            for (int index = 0; index < count; index++, row++) {
+                rows[row * ROW_INTS] = carValues[offset + index];
+                rows[row * ROW_INTS + 1] = carValues[offset + count + index];
+                rows[row * ROW_INTS + 2] = carValues[offset + 2 * count + index];
+                rows[row * ROW_INTS + 3] = street;
+                rows[row * ROW_INTS + 4] = carValues[offset + 3 * count + index];
+                rows[row * ROW_INTS + 5] = carValues[offset + 4 * count + index];
+                rows[row * ROW_INTS + 6] = carValues[offset + 5 * count + index];
+            }
+            offset += CAR_INTS * count;
+        }
+        return rows;
+    }
+
+    /**
+     * Converts the rows of the cars back in to the columns of a full record. The cars of a street are ordered by
+     * their positions, which are distinct on a street, from the car ahead to the car behind. The numbers of cars
+     * of the streets are updated
+     */
+    private static int[] toColumns(int[] streetValues, int[] rows) {
+        final int numberOfStreets = streetValues.length / STREET_INTS;
+        final int numberOfCars = rows.length / ROW_INTS;
+        final int[] starts = new int[numberOfStreets + 1];
+        for (int row = 0; row < numberOfCars; row++) starts[rows[row * ROW_INTS + 3] + 1]++;
+        for (int street = 0; street < numberOfStreets; street++) {
+            streetValues[street * STREET_INTS + STREET_INTS - 1] = starts[street + 1];
+            starts[street + 1] += starts[street];
+        }
+        // sorts the cars by street, and on a street by descending position, keeping the row in the lower half
+        final long[] order = new long[numberOfCars];
+        final int[] next = Arrays.copyOf(starts, numberOfStreets);
+        for (int row = 0; row < numberOfCars; row++) {
+            final int street = rows[row * ROW_INTS + 3];
+            order[next[street]++] = (long) -rows[row * ROW_INTS + 4] << Integer.SIZE | row;
+        }
+        final int[] columns = new int[numberOfCars * CAR_INTS];
+        for (int street = 0; street < numberOfStreets; street++) {
+            Arrays.sort(order, starts[street], starts[street + 1]);
+            final int count = starts[street + 1] - starts[street];
+            final int offset = starts[street] * CAR_INTS;
+            for (int index = 0; index < count; index++) {
+                final int row = (int) order[starts[street] + index] * ROW_INTS;
+                columns[offset + index] = rows[row];
+                columns[offset + count + index] = rows[row + 1];
+                columns[offset + 2 * count + index] = rows[row + 2];
+                columns[offset + 3 * count + index] = rows[row + 4];
+                columns[offset + 4 * count + index] = rows[row + 5];
+                columns[offset + 5 * count + index] = rows[row + 6];
+            }
+        }
+        return columns;
+    }
+
+    private static int countCars(List<Street> streets) {
+        int numberOfCars = 0;
+        for (Street street : streets) numberOfCars += street.getNumberOfCars();
+        return numberOfCars;
+    }
+
+    /**
+     * A copy of the state of the crossings and cars at a checkpoint
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Capture {
+
+        private final int[] lights;
+
+        private final int[] cars;
+
+        private final int numberOfCars;
+
+        private long tick;
+
+        Capture(int numberOfCrossings, int numberOfCars) {
+            this.lights = new int[LIGHT_INTS * numberOfCrossings];
+            this.cars = new int[CAPTURED_CAR_INTS * numberOfCars];
+            this.numberOfCars = numberOfCars;
+        }
+
+        void fill(long tick, List<Crossing> crossings, List<Street> streets) {
+            this.tick = tick;
+            for (int index = 0; index < crossings.size(); index++) {
+                lights[index * LIGHT_INTS] = crossings.get(index).getGreenLightPhase();
+                lights[index * LIGHT_INTS + 1] = crossings.get(index).getRemainingDuration();
+            }
+            int offset = 0;
+            for (int id = 0; id < streets.size(); id++) {
+                final Street street = streets.get(id);
+                for (int index = 0; index < street.getNumberOfCars(); index++) {
+                    final Car car = street.getCar(index);
+                    cars[offset++] = car.getId();
+                    cars[offset++] = id;
+                    cars[offset++] = car.getPosition();
+                    cars[offset++] = car.getSpeed();
+                    cars[offset++] = car.getDesiredDirection();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the little endian integers of a file through memory mapped windows of at most {@value #WINDOW_INTS}
+ * integers. The integers are copied in bulk straight out of the mapped buffers
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class IntFileReader {
+
+    private static final int WINDOW_INTS = 1 << 24;
+
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private long windowEnd;
+
+    private IntBuffer window;
+
+    /**
+     * Instantiates a new reader at the start of the given file
+     * @param channel the channel of the file
+     * @throws IOException if the size of the file cannot be read
+     */
+    IntFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = IntBuffer.allocate(0);
+    }
+
+    /**
+     * The method for reading the given number of integers in to a new array
+     * @param length the number of integers
+     * @return the integers
+     * @throws IOException if the file ends before or cannot be read
+     */
+    int[] read(int length) throws IOException {
+        final int[] values = new int[length];
+        read(values, 0, length);
+        return values;
+    }
+
+    /**
+     * The method for reading the given number of integers in to the given array
+     * @param values the array the integers are written in to
+     * @param offset the index of the first integer in the array
+     * @param length the number of integers
+     * @throws IOException if the file ends before or cannot be read
+     */
+    void read(int[] values, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            if (!window.hasRemaining()) map();
+            final int count = Math.min(window.remaining(), length - done);
+            window.get(values, offset + done, count); // copies straight out of the mapped file
+            done += count;
+        }
+    }
+
+    /**
+     * The method for reading a single integer
+     * @return the integer
+     * @throws IOException if the file ends before or cannot be read
+     */
+    int readInt() throws IOException {
+        if (!window.hasRemaining()) map();
+        return window.get();
+    }
+
+    /**
+     * The method for reading a long that was written as two integers, the lower half first
+     * @return the long
+     * @throws IOException if the file ends before or cannot be read
+     */
+    long readLong() throws IOException {
+        final long low = readInt() & LOW_BITS;
+        return low | (long) readInt() << Integer.SIZE;
+    }
+
+    /**
+     * the getter method for the offset of the next integer in the file
+     * @return the offset in bytes
+     */
+    long getPosition() {
+        return windowEnd - (long) window.remaining() * Integer.BYTES;
+    }
+
+    /**
+     * the getter method for the bytes after the next integer
+     * @return the number of bytes that are left
+     */
+    long getRemaining() {
+        return size - getPosition();
+    }
+
+    private void map() throws IOException {
+        final long length = Math.min((long) WINDOW_INTS * Integer.BYTES, (size - windowEnd) & -Integer.BYTES);
+        if (length == 0) throw new EOFException("file ends unexpectedly.");
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, length).order(ByteOrder.LITTLE_ENDIAN)
+            .asIntBuffer();
+        windowEnd += length;
+    }
+}
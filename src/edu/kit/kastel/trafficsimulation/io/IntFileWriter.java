@@ -0,0 +1,78 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes little endian integers to a file through a direct buffer of {@value #BUFFER_SIZE} bytes
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class IntFileWriter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Instantiates a new writer at the current position of the given file
+     * @param channel the channel of the file
+     */
+    IntFileWriter(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The method for writing a single integer
+     * @param value the integer
+     * @throws IOException if the file cannot be written
+     */
+    void putInt(int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) flush();
+        buffer.putInt(value);
+    }
+
+    /**
+     * The method for writing a long as two integers, the lower half first
+     * @param value the long
+     * @throws IOException if the file cannot be written
+     */
+    void putLong(long value) throws IOException {
+        putInt((int) value);
+        putInt((int) (value >>> Integer.SIZE));
+    }
+
+    /**
+     * The method for writing the given integers of an array
+     * @param values the array of the integers
+     * @param offset the index of the first integer in the array
+     * @param length the number of integers
+     * @throws IOException if the file cannot be written
+     */
+    void putInts(int[] values, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            if (buffer.remaining() < Integer.BYTES) flush();
+            final int count = Math.min(buffer.remaining() / Integer.BYTES, length - done);
+            buffer.asIntBuffer().put(values, offset + done, count); // copies in bulk through a view on the buffer
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            done += count;
+        }
+    }
+
+    /**
+     * The method for writing everything that is buffered to the file
+     * @throws IOException if the file cannot be written
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.IOException;
+
+/**
+ * Splits one line of a simulation file in to its integer fields
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface LineTokenizer {
+
+    /**
+     * The method for splitting the current line of the reader in to its fields. The fields are read in order and
+     * the method stops at the first malformed field
+     *
+     * @param reader the reader at the line
+     * @param values the array the values of the fields are written in to
+     * @param starts the array the offsets of the fields are written in to; {@value SimulationFileReader#NOT_FOUND}
+     *               for a field whose separator is missing
+     * @return the index of the first malformed field; the number of fields, if the line is valid
+     * @throws IOException if the file cannot be read
+     */
+    int tokenize(SimulationFileReader reader, int[] values, long[] starts) throws IOException;
+}
@@ -0,0 +1,283 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generator for large synthetic simulation scenarios. Writes the files {@value SimulationFileLoader#FILENAME_CROSSINGS},
+ * {@value SimulationFileLoader#FILENAME_STREETS} and {@value SimulationFileLoader#FILENAME_CARS} for grid, ring,
+ * random planar and highway networks. Every line is written as soon as it is generated, so the size of the scenario
+ * is not limited by the memory. The generated scenarios respect every constraint the simulation checks on load.
+ * <p>
+ * Usage: {@code java edu.kit.kastel.trafficsimulation.io.ScenarioGenerator <grid|ring|random-planar|highway>
+ * <number of crossings> <car density between 0 and 1> <seed> <folder>}
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class ScenarioGenerator implements Closeable {
+
+    /**
+     * The minimum length of a generated street
+     */
+    public static final int MINIMUM_LENGTH = 10;
+
+    /**
+     * The maximum length of a generated street
+     */
+    public static final int MAXIMUM_LENGTH = 10000;
+
+    private static final int MINIMUM_SPEED_LIMIT = 5;
+
+    private static final int MAXIMUM_SPEED_LIMIT = 40;
+
+    private static final int MINIMUM_CAR_SPEED = 20;
+
+    private static final int MAXIMUM_ACCELERATION = 10;
+
+    private static final int MINIMUM_GREEN_LIGHT_DURATION = 3;
+
+    private static final int MAXIMUM_GREEN_LIGHT_DURATION = 10;
+
+    private static final int CAR_DISTANCE = 10;
+
+    private static final int SINGLE_LANE = 1;
+
+    private static final int OVERTAKING_LANE = 2;
+
+    private static final int CITY_MINIMUM_LENGTH = 50;
+
+    private static final int CITY_MAXIMUM_LENGTH = 500;
+
+    private static final int HIGHWAY_MINIMUM_LENGTH = 1000;
+
+    private static final int HIGHWAY_MAXIMUM_LENGTH = 5000;
+
+    private static final int HIGHWAY_MINIMUM_SPEED_LIMIT = 30;
+
+    private static final int RAMP_SPACING = 4;
+
+    private static final int RAMP_LENGTH = 200;
+
+    private static final int RAMP_SPEED_LIMIT = 15;
+
+    private static final double VERTICAL_STREET_PROBABILITY = 0.5;
+
+    private static final int ARGUMENT_COUNT = 5;
+
+    private final Random random;
+
+    private final double carDensity;
+
+    private final BufferedWriter crossings;
+
+    private final BufferedWriter streets;
+
+    private final BufferedWriter cars;
+
+    private int numberOfStreets;
+
+    private int numberOfCars;
+
+    /**
+     * Creates a new generator writing in to the given folder, which is created if it does not exist
+     *
+     * @param folder the folder the three simulation files are written to
+     * @param carDensity the share of the space on every street that is filled with cars, between 0 and 1
+     * @param seed the seed of the random numbers
+     * @throws IOException if the files cannot be created
+     */
+    public ScenarioGenerator(Path folder, double carDensity, long seed) throws IOException {
+        if (carDensity < 0 || carDensity > 1) throw new IllegalArgumentException("The density has to be in [0, 1]");
+        Files.createDirectories(folder);
+        this.random = new Random(seed);
+        this.carDensity = carDensity;
+        this.crossings = Files.newBufferedWriter(folder.resolve(SimulationFileLoader.FILENAME_CROSSINGS));
+        this.streets = Files.newBufferedWriter(folder.resolve(SimulationFileLoader.FILENAME_STREETS));
+        this.cars = Files.newBufferedWriter(folder.resolve(SimulationFileLoader.FILENAME_CARS));
+    }
+
+    /**
+     * Entry point of the generator
+     * @param args the topology, the number of crossings, the car density, the seed and the folder
+     * @throws IOException if the files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != ARGUMENT_COUNT) {
+            throw new IllegalArgumentException("Usage: ScenarioGenerator <grid|ring|random-planar|highway> "
+                + "<number of crossings> <car density> <seed> <folder>");
+        }
+        final int size = Integer.parseInt(args[1]);
+        try (ScenarioGenerator generator = new ScenarioGenerator(Path.of(args[4]), Double.parseDouble(args[2]),
+            Long.parseLong(args[3]))) {
+            switch (args[0].toLowerCase(Locale.ROOT)) {
+                case "grid" -> generator.writeGrid(size, false);
+                case "ring" -> generator.writeRing(size);
+                case "random-planar" -> generator.writeGrid(size, true);
+                case "highway" -> generator.writeHighway(size);
+                default -> throw new IllegalArgumentException("Unknown topology " + args[0]);
+            }
+            System.out.printf("%d streets and %d cars written%n", generator.getNumberOfStreets(),
+                generator.getNumberOfCars());
+        }
+    }
+
+    /**
+     * The method for writing a square grid with about the given number of crossings, in which neighbouring crossings
+     * are connected by a street in each direction. If random is set, the streets between the rows are only kept with
+     * a probability of one half, which gives a random planar network in which every crossing stays reachable
+     * along its row
+     * @param size the number of crossings, at least 2
+     * @param random true, if streets between the rows should be left out at random; false, otherwise
+     * @throws IOException if the files cannot be written
+     */
+    public void writeGrid(int size, boolean random) throws IOException {
+        final int columns = Math.max(2, (int) Math.ceil(Math.sqrt(size)));
+        final int rows = Math.max(1, (size + columns - 1) / columns);
+        for (int crossing = 0; crossing < rows * columns; crossing++) {
+            crossing(crossing, randomGreenLightDuration());
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int crossing = row * columns + column;
+                if (column + 1 < columns) {
+                    cityStreet(crossing, crossing + 1);
+                    cityStreet(crossing + 1, crossing);
+                }
+                if (row + 1 < rows) {
+                    if (!random || this.random.nextDouble() < VERTICAL_STREET_PROBABILITY) {
+                        cityStreet(crossing, crossing + columns);
+                    }
+                    if (!random || this.random.nextDouble() < VERTICAL_STREET_PROBABILITY) {
+                        cityStreet(crossing + columns, crossing);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The method for writing a ring of the given number of crossings, in which neighbouring crossings are connected
+     * by a street in each direction
+     * @param size the number of crossings, at least 2
+     * @throws IOException if the files cannot be written
+     */
+    public void writeRing(int size) throws IOException {
+        final int crossingCount = Math.max(2, size);
+        for (int crossing = 0; crossing < crossingCount; crossing++) {
+            crossing(crossing, randomGreenLightDuration());
+        }
+        for (int crossing = 0; crossing < crossingCount; crossing++) {
+            final int next = (crossing + 1) % crossingCount;
+            if (crossingCount == 2 && crossing == 1) break; // two crossings are only connected once
+            cityStreet(crossing, next);
+            cityStreet(next, crossing);
+        }
+    }
+
+    /**
+     * The method for writing a highway, a ring of long streets with overtaking lanes in both directions. Every few
+     * crossings of the highway have a traffic light and a ramp to a side crossing and back
+     * @param size the number of crossings, at least 2
+     * @throws IOException if the files cannot be written
+     */
+    public void writeHighway(int size) throws IOException {
+        final int junctions = Math.max(2, size * RAMP_SPACING / (RAMP_SPACING + 1));
+        for (int junction = 0; junction < junctions; junction++) {
+            crossing(junction, junction % RAMP_SPACING == 0 ? randomGreenLightDuration(true) : 0);
+        }
+        int sideCrossing = junctions;
+        for (int junction = 0; junction < junctions; junction++) {
+            final int next = (junction + 1) % junctions;
+            if (junctions == 2 && junction == 1) break;
+            final int length = between(HIGHWAY_MINIMUM_LENGTH, HIGHWAY_MAXIMUM_LENGTH);
+            final int speedLimit = between(HIGHWAY_MINIMUM_SPEED_LIMIT, MAXIMUM_SPEED_LIMIT);
+            street(junction, next, length, OVERTAKING_LANE, speedLimit);
+            street(next, junction, length, OVERTAKING_LANE, speedLimit);
+        }
+        for (int junction = 0; junction < junctions; junction += RAMP_SPACING) {
+            crossing(sideCrossing, 0);
+            street(junction, sideCrossing, RAMP_LENGTH, SINGLE_LANE, RAMP_SPEED_LIMIT);
+            street(sideCrossing, junction, RAMP_LENGTH, SINGLE_LANE, RAMP_SPEED_LIMIT);
+            sideCrossing++;
+        }
+    }
+
+    /**
+     * the getter method for the number of streets written so far
+     * @return the number of streets
+     */
+    public int getNumberOfStreets() {
+        return numberOfStreets;
+    }
+
+    /**
+     * the getter method for the number of cars written so far
+     * @return the number of cars
+     */
+    public int getNumberOfCars() {
+        return numberOfCars;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (crossings; streets; cars) {
+            crossings.flush();
+            streets.flush();
+            cars.flush();
+        }
+    }
+
+    private void crossing(int id, int greenLightDuration) throws IOException {
+        crossings.write(id + ":" + greenLightDuration + "t");
+        crossings.newLine();
+    }
+
+    private void cityStreet(int start, int end) throws IOException {
+        street(start, end, between(CITY_MINIMUM_LENGTH, CITY_MAXIMUM_LENGTH), between(SINGLE_LANE, OVERTAKING_LANE),
+            between(MINIMUM_SPEED_LIMIT, MAXIMUM_SPEED_LIMIT));
+    }
+
+    /**
+     * The method for writing a street and the cars that start on it. The cars are limited to the number that
+     * fit on the street with 10m between them
+     * @param start the id of the crossing the street starts at
+     * @param end the id of the crossing the street ends at
+     * @param length the length of the street
+     * @param type the type of the street, 2 if it has an overtaking lane
+     * @param speedLimit the speed limit of the street
+     * @throws IOException if the files cannot be written
+     */
+    private void street(int start, int end, int length, int type, int speedLimit) throws IOException {
+        final int streetLength = Math.max(MINIMUM_LENGTH, Math.min(MAXIMUM_LENGTH, length));
+        streets.write(start + "-->" + end + ":" + streetLength + "m," + type + "x," + speedLimit + "max");
+        streets.newLine();
+        final int capacity = streetLength / CAR_DISTANCE + 1;
+        final int carCount = (int) Math.round(capacity * carDensity);
+        for (int car = 0; car < carCount; car++) {
+            cars.write(numberOfCars + "," + numberOfStreets + "," + between(MINIMUM_CAR_SPEED, MAXIMUM_SPEED_LIMIT)
+                + "," + between(1, MAXIMUM_ACCELERATION));
+            cars.newLine();
+            numberOfCars++;
+        }
+        numberOfStreets++;
+    }
+
+    private int randomGreenLightDuration() {
+        return randomGreenLightDuration(random.nextBoolean());
+    }
+
+    private int randomGreenLightDuration(boolean trafficLight) {
+        if (!trafficLight) return 0;
+        return between(MINIMUM_GREEN_LIGHT_DURATION, MAXIMUM_GREEN_LIGHT_DURATION);
+    }
+
+    private int between(int minimum, int maximum) {
+        return minimum + random.nextInt(maximum - minimum + 1);
+    }
+}
@@ -0,0 +1,176 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The integer fields of the lines of one part of a simulation file, stored row by row in a single array. The lines
+ * are tokenised up to and including the first malformed line, which is the last row of the chunk
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationFileChunk {
+
+    /**
+     * The malformed field of a chunk without a malformed line
+     */
+    public static final int NO_FAILURE = -1;
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private static final String LOCATION_FORMAT = " (%s, line %d, column %d)";
+
+    private final SimulationFileReader file;
+
+    private final long from;
+
+    private final long to;
+
+    private final int columns;
+
+    private final LineTokenizer tokenizer;
+
+    private int[] values;
+
+    private int rows;
+
+    private int failedColumn;
+
+    private boolean separatorMissing;
+
+    private int failureLine;
+
+    private long failureColumn;
+
+    private int firstLine;
+
+    /**
+     * Instantiates a new chunk for the lines between the given offsets of the file
+     *
+     * @param file the reader of the whole file
+     * @param from the offset of the first line of the chunk
+     * @param to the offset after the last line of the chunk
+     * @param columns the number of fields of a line
+     * @param tokenizer the tokenizer for the lines of the file
+     */
+    SimulationFileChunk(SimulationFileReader file, long from, long to, int columns, LineTokenizer tokenizer) {
+        this.file = file;
+        this.from = from;
+        this.to = to;
+        this.columns = columns;
+        this.tokenizer = tokenizer;
+        this.values = new int[INITIAL_ROWS * columns];
+        this.failedColumn = NO_FAILURE;
+    }
+
+    /**
+     * The method for tokenising the lines of the chunk, stopping after the first malformed line
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void tokenize() throws IOException {
+        final int[] line = new int[columns];
+        final long[] starts = new long[columns];
+        try (SimulationFileReader reader = file.range(from, to)) {
+            while (reader.nextLine()) {
+                final int valid = tokenizer.tokenize(reader, line, starts);
+                if (values.length < (rows + 1) * columns) values = Arrays.copyOf(values, values.length * 2);
+                System.arraycopy(line, 0, values, rows * columns, valid);
+                rows++;
+                if (valid < columns) {
+                    failedColumn = valid;
+                    separatorMissing = starts[valid] == SimulationFileReader.NOT_FOUND;
+                    failureLine = reader.getLineNumber();
+                    failureColumn = separatorMissing ? 1 : starts[valid] - reader.getLineStart() + 1;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * the setter method for the number of lines in the file before this chunk
+     * @param linesBefore the number of lines before the chunk
+     */
+    void setLinesBefore(int linesBefore) {
+        this.firstLine = linesBefore + 1;
+    }
+
+    /**
+     * the getter method for the number of rows, including the malformed line if there is one
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * The method for getting the value of a field
+     *
+     * @param row the row of the line
+     * @param column the index of the field
+     * @return the value of the field
+     */
+    public int get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    /**
+     * the getter method for the malformed field of the last row
+     * @return the index of the malformed field; {@value #NO_FAILURE}, if every line of the chunk is valid
+     */
+    public int getFailedColumn() {
+        return failedColumn;
+    }
+
+    /**
+     * The method for checking if the given field is malformed or follows a malformed field in its line
+     *
+     * @param row the row of the line
+     * @param column the index of the field
+     * @return true, if the field could not be read; false, otherwise
+     */
+    public boolean isMalformed(int row, int column) {
+        return failedColumn != NO_FAILURE && row == rows - 1 && column >= failedColumn;
+    }
+
+    /**
+     * the getter method for the kind of failure of the malformed field
+     * @return true, if a separator of the malformed line is missing; false, if the field is not a number
+     */
+    public boolean isSeparatorMissing() {
+        return separatorMissing;
+    }
+
+    /**
+     * the getter method for the number of lines of the chunk without a malformed line
+     * @return the number of valid lines
+     */
+    int getValidRows() {
+        return failedColumn == NO_FAILURE ? rows : rows - 1;
+    }
+
+    /**
+     * The method for describing the location of a field for error messages. The line is read again to find the
+     * field, so this is only meant for the rare case of an error
+     *
+     * @param row the row of the line
+     * @param column the index of the field
+     * @return the file name, line and column of the field
+     * @throws IOException if the file cannot be read
+     */
+    public String describe(int row, int column) throws IOException {
+        if (isMalformed(row, column)) {
+            return String.format(LOCATION_FORMAT, file.getFileName(), firstLine + failureLine - 1, failureColumn);
+        }
+        final int[] line = new int[columns];
+        final long[] starts = new long[columns];
+        try (SimulationFileReader reader = file.range(from, to)) {
+            for (int skipped = 0; skipped <= row; skipped++) reader.nextLine();
+            tokenizer.tokenize(reader, line, starts);
+            return String.format(LOCATION_FORMAT, file.getFileName(), firstLine + row,
+                starts[column] - reader.getLineStart() + 1);
+        }
+    }
+}
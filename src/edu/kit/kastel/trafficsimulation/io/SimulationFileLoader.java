@@ -90,7 +90,48 @@ public final class SimulationFileLoader {
     }
 
 
+    /**
+     * Opens the simulation file {@value FILENAME_STREETS} for reading it line by line without loading it in to
+     * the memory.
+     *
+     * @return     a reader for the file, which has to be closed by the caller.
+     *
+     * @throws     IOException  if the file does not exist or points to a directory.
+     */
+    public SimulationFileReader openStreets() throws IOException {
+        return new SimulationFileReader(resolveSimulationFile(FILENAME_STREETS));
+    }
+
+    /**
+     * Opens the simulation file {@value FILENAME_CROSSINGS} for reading it line by line without loading it in to
+     * the memory.
+     *
+     * @return     a reader for the file, which has to be closed by the caller.
+     *
+     * @throws     IOException  if the file does not exist or points to a directory.
+     */
+    public SimulationFileReader openCrossings() throws IOException {
+        return new SimulationFileReader(resolveSimulationFile(FILENAME_CROSSINGS));
+    }
+
+    /**
+     * Opens the simulation file {@value FILENAME_CARS} for reading it line by line without loading it in to
+     * the memory.
+     *
+     * @return     a reader for the file, which has to be closed by the caller.
+     *
+     * @throws     IOException  if the file does not exist or points to a directory.
+     */
+    public SimulationFileReader openCars() throws IOException {
+        return new SimulationFileReader(resolveSimulationFile(FILENAME_CARS));
+    }
+
+
     private List<String> loadSimulationFile(String fileName) throws IOException {
+        return Files.readAllLines(resolveSimulationFile(fileName));
+    }
+
+    private Path resolveSimulationFile(String fileName) throws IOException {
         final Path filePath = this.folderPath.resolve(Path.of(fileName));
         final File file = filePath.toFile();
 
@@ -101,7 +142,7 @@ public final class SimulationFileLoader {
             throw new IOException(String.format("file %s is not a normal file.", filePath.toString()));
         }
 
-        return Files.readAllLines(filePath);
+        return filePath;
     }
 
 }
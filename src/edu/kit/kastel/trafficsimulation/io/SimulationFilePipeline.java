@@ -0,0 +1,144 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Tokenises a simulation file in chunks of about {@value #CHUNK_SIZE} bytes on the common fork join pool and hands
+ * the chunks out in the order of the file. Only a few chunks ahead of the consumer are tokenised at any time, so the
+ * consumer can validate one chunk while the next ones are read and the memory for the fields stays bounded.
+ * An error while opening or reading the file is only thrown when the consumer reaches it, so several files can be
+ * read at once and still report their errors in the order they are consumed.
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationFilePipeline implements Closeable {
+
+    private static final long CHUNK_SIZE = 1 << 23;
+
+    private static final int CHUNKS_AHEAD = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final int columns;
+
+    private final LineTokenizer tokenizer;
+
+    private final Queue<CompletableFuture<SimulationFileChunk>> pending = new ArrayDeque<>();
+
+    private SimulationFileReader file;
+
+    private IOException openException;
+
+    private long nextChunkStart;
+
+    private int linesBefore;
+
+    private boolean failed;
+
+    /**
+     * Opens the file and starts tokenising its first chunks
+     *
+     * @param opener the source of the file
+     * @param columns the number of fields of a line
+     * @param tokenizer the tokenizer for the lines of the file
+     */
+    public SimulationFilePipeline(FileOpener opener, int columns, LineTokenizer tokenizer) {
+        this.columns = columns;
+        this.tokenizer = tokenizer;
+        try {
+            this.file = opener.open();
+        }   catch (IOException ioException) {
+            this.openException = ioException;
+            return;
+        }
+        for (int chunk = 0; chunk < CHUNKS_AHEAD; chunk++) submit();
+    }
+
+    /**
+     * The method for checking if there is a next chunk
+     *
+     * @return true, if there is a next chunk; false, if the end of the file or a malformed line is reached
+     * @throws IOException if the file cannot be opened
+     */
+    public boolean hasNext() throws IOException {
+        if (openException != null) throw openException;
+        return !failed && !pending.isEmpty();
+    }
+
+    /**
+     * The method for getting the next chunk of the file, waiting for it to be tokenised if necessary
+     *
+     * @return the next chunk
+     * @throws IOException if the file cannot be read
+     */
+    public SimulationFileChunk next() throws IOException {
+        if (openException != null) throw openException;
+        final SimulationFileChunk chunk;
+        try {
+            chunk = pending.remove().join();
+        }   catch (CompletionException completionException) {
+            if (completionException.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw completionException;
+        }
+        chunk.setLinesBefore(linesBefore);
+        linesBefore += chunk.getValidRows();
+        failed = chunk.getFailedColumn() != SimulationFileChunk.NO_FAILURE;
+        if (!failed) submit();
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (CompletableFuture<SimulationFileChunk> chunk : pending) chunk.cancel(false);
+        pending.clear();
+        if (file != null) file.close();
+    }
+
+    private void submit() {
+        if (nextChunkStart >= file.getSize()) return;
+        final long from = nextChunkStart;
+        final long to;
+        try {
+            to = file.findLineStart(from + CHUNK_SIZE); // chunks are only split after a line feed
+        }   catch (IOException ioException) {
+            pending.add(CompletableFuture.failedFuture(new UncheckedIOException(ioException)));
+            nextChunkStart = file.getSize();
+            return;
+        }
+        nextChunkStart = to;
+        final SimulationFileChunk chunk = new SimulationFileChunk(file, from, to, columns, tokenizer);
+        pending.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                chunk.tokenize();
+            }   catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            return chunk;
+        }));
+    }
+
+    /**
+     * Opens a simulation file for reading
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    @FunctionalInterface
+    public interface FileOpener {
+
+        /**
+         * The method for opening the file
+         *
+         * @return the reader for the file
+         * @throws IOException if the file cannot be opened
+         */
+        SimulationFileReader open() throws IOException;
+    }
+}
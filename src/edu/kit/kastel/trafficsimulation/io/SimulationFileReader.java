@@ -0,0 +1,261 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for a simulation file that goes through the file line by line without creating a String for any line.
+ * The file is memory mapped in windows of at most {@value #WINDOW_SIZE} bytes, so files of any size can be read.
+ * Inside the current line, the reader offers the same operations as {@link String#indexOf(String, int)} and
+ * {@link Integer#parseInt(String)} on a substring, working directly on the bytes of the file. Positions are absolute
+ * offsets in the file. Lines are separated as in {@link java.nio.file.Files#readAllLines(Path)}. A reader can be
+ * restricted to a range of the file, so that several threads can read different parts of the same file at once.
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationFileReader implements Closeable {
+
+    /**
+     * The result of {@link #indexOf(byte, long)} and {@link #indexOf(String, long)} if nothing is found
+     */
+    public static final long NOT_FOUND = -1;
+
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private static final int RADIX = 10;
+
+    private final String fileName;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final long end;
+
+    private final boolean owner;
+
+    private MappedByteBuffer window;
+
+    private long windowStart;
+
+    private long lineStart;
+
+    private long lineEnd;
+
+    private long nextLineStart;
+
+    private int lineNumber;
+
+    private boolean numberValid;
+
+    /**
+     * Opens the given file for reading
+     *
+     * @param filePath the path to the file
+     * @throws IOException if the file cannot be opened
+     */
+    public SimulationFileReader(Path filePath) throws IOException {
+        this.fileName = filePath.getFileName().toString();
+        this.channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.end = size;
+        this.owner = true;
+        this.nextLineStart = 0;
+        this.lineNumber = 0;
+        map(0);
+    }
+
+    private SimulationFileReader(SimulationFileReader file, long from, long to) throws IOException {
+        this.fileName = file.fileName;
+        this.channel = file.channel;
+        this.size = file.size;
+        this.end = to;
+        this.owner = false;
+        this.nextLineStart = from;
+        this.lineNumber = 0;
+        map(from);
+    }
+
+    /**
+     * The method for creating a reader for the lines between the given offsets of the same file. The new reader
+     * counts its lines starting at the first line of the range and does not close the file when it is closed
+     *
+     * @param from the offset of the first byte of the range, which has to be the start of a line
+     * @param to the offset after the last byte of the range
+     * @return the reader for the range
+     * @throws IOException if the file cannot be read
+     */
+    public SimulationFileReader range(long from, long to) throws IOException {
+        return new SimulationFileReader(this, from, to);
+    }
+
+    /**
+     * The method for finding the first line start at or after the given offset, when the file is only split after
+     * line feeds. A line separated by a carriage return and a line feed is never split in to two this way
+     *
+     * @param from the offset to start at
+     * @return the offset of the line start; the size of the file, if there is none
+     * @throws IOException if the file cannot be read
+     */
+    public long findLineStart(long from) throws IOException {
+        if (from <= 0) return 0;
+        for (long position = from - 1; position < size; position++) {
+            if (byteAt(position) == '\n') return position + 1;
+        }
+        return size;
+    }
+
+    /**
+     * the getter method for the size of the file
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * the getter method for the name of the file
+     * @return the name of the file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * The method for going to the next line of the file
+     *
+     * @return true, if there is a next line; false, if the end of the file is reached
+     * @throws IOException if the file cannot be read
+     */
+    public boolean nextLine() throws IOException {
+        if (nextLineStart >= end) return false;
+        lineStart = nextLineStart;
+        long position = lineStart;
+        while (position < end) {
+            final byte current = byteAt(position);
+            if (current == '\n' || current == '\r') break;
+            position++;
+        }
+        lineEnd = position;
+        if (position < end && byteAt(position) == '\r' && position + 1 < end && byteAt(position + 1) == '\n') {
+            position++;
+        }
+        nextLineStart = position + 1;
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * the getter method for the number of the current line, counted from the start of the file or the range
+     * @return the number of the line, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * the getter method for the offset of the first byte of the current line
+     * @return the offset of the start of the line
+     */
+    public long getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * the getter method for the offset after the last byte of the current line
+     * @return the offset of the end of the line
+     */
+    public long getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * The method for finding the first occurrence of the given byte in the current line, starting at the given offset
+     *
+     * @param value the byte to find
+     * @param from the offset to start at
+     * @return the offset of the byte, if it is found; {@value #NOT_FOUND}, otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public long indexOf(byte value, long from) throws IOException {
+        for (long position = from; position < lineEnd; position++) {
+            if (byteAt(position) == value) return position;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * The method for finding the first occurrence of the given ASCII text in the current line, starting at the
+     * given offset
+     *
+     * @param text the text to find
+     * @param from the offset to start at
+     * @return the offset of the text, if it is found; {@value #NOT_FOUND}, otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public long indexOf(String text, long from) throws IOException {
+        for (long position = from; position + text.length() <= lineEnd; position++) {
+            int matched = 0;
+            while (matched < text.length() && byteAt(position + matched) == text.charAt(matched)) matched++;
+            if (matched == text.length()) return position;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * The method for parsing the bytes between the given offsets as a decimal integer with an optional sign,
+     * like {@link Integer#parseInt(String)} does. Whether it succeeded is given by {@link #isNumberValid()}
+     *
+     * @param from the offset of the first byte
+     * @param to the offset after the last byte
+     * @return the parsed number, 0 if the bytes are not a number
+     * @throws IOException if the file cannot be read
+     */
+    public int parseInt(long from, long to) throws IOException {
+        numberValid = false;
+        if (from < lineStart || to > lineEnd || from >= to) return 0;
+        long position = from;
+        final byte first = byteAt(position);
+        final boolean negative = first == '-';
+        if (negative || first == '+') position++;
+        if (position == to) return 0;
+        final long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; position < to; position++) {
+            final int digit = byteAt(position) - '0';
+            if (digit < 0 || digit >= RADIX) return 0;
+            value = value * RADIX + digit;
+            if (value > limit) return 0;
+        }
+        numberValid = true;
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * the getter method for the result of the last {@link #parseInt(long, long)}
+     * @return true, if the last parsed bytes were a number; false, otherwise
+     */
+    public boolean isNumberValid() {
+        return numberValid;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (owner) channel.close();
+    }
+
+    private byte byteAt(long position) throws IOException {
+        if (position < windowStart || position >= windowStart + window.limit()) map(position);
+        return window.get((int) (position - windowStart));
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+    }
+}
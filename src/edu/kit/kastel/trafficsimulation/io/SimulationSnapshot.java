@@ -0,0 +1,386 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import edu.kit.kastel.trafficsimulation.objects.Car;
+import edu.kit.kastel.trafficsimulation.objects.Crossing;
+import edu.kit.kastel.trafficsimulation.objects.Street;
+import edu.kit.kastel.trafficsimulation.util.IntIndex;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of the whole state of a simulation. A snapshot consists of little endian integers:
+ * <ul>
+ *     <li>the header with {@value #MAGIC} and the version {@value #VERSION}</li>
+ *     <li>the number of crossings, streets and cars</li>
+ *     <li>per crossing in the order they were loaded: id, green light duration, green light phase and remaining
+ *     duration</li>
+ *     <li>per street in the order of their ids: start crossing, end crossing, length, type, speed limit and the
+ *     number of cars on it</li>
+ *     <li>per street in the order of their ids, the columns of its cars: the ids, maximum speeds, accelerations,
+ *     positions, speeds and desired directions, each from the car ahead to the car behind</li>
+ * </ul>
+ * A snapshot is restored by mapping the file in to the memory and copying the integers in bulk out of the mapped
+ * buffers, the columns of the cars go in one piece in to the arrays the streets keep their cars in. The same state
+ * without the header is used by the full records of a {@link CheckpointLog}, and it can be captured in to the memory
+ * as well, from which any number of independent copies of the state can be built.
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class SimulationSnapshot {
+
+    /**
+     * The first integer of every snapshot
+     */
+    public static final int MAGIC = 0x5453494D;
+
+    /**
+     * The version of the format written by this class
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 2;
+
+    private static final int COUNT_INTS = 3;
+
+    private static final int CROSSING_INTS = 4;
+
+    private static final int STREET_INTS = 6;
+
+    private static final int STREET_CARS = 5;
+
+    private static final int CAR_INTS = 6;
+
+    private final List<Crossing> crossings;
+
+    private final IntIndex<Crossing> crossingIndex;
+
+    private final List<Street> streets;
+
+    private final IntIndex<Car> carIndex;
+
+    private SimulationSnapshot(List<Crossing> crossings, IntIndex<Crossing> crossingIndex, List<Street> streets,
+        IntIndex<Car> carIndex) {
+        this.crossings = crossings;
+        this.crossingIndex = crossingIndex;
+        this.streets = streets;
+        this.carIndex = carIndex;
+    }
+
+    /**
+     * The method for saving the given state of a simulation in to a snapshot file
+     *
+     * @param file the path of the snapshot file, which is replaced if it exists
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Path file, List<Crossing> crossings, List<Street> streets) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final IntFileWriter output = new IntFileWriter(channel);
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            writeState(output, crossings, streets);
+            output.flush();
+        }
+    }
+
+    /**
+     * The method for restoring the state of a simulation from a snapshot file
+     *
+     * @param file the path of the snapshot file
+     * @return the restored snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static SimulationSnapshot restore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final IntFileReader input = new IntFileReader(channel);
+            if (input.getRemaining() < (long) HEADER_INTS * Integer.BYTES || input.readInt() != MAGIC) {
+                throw new IOException(String.format("file %s is not a snapshot.", file));
+            }
+            final int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("snapshot version %d is not supported.", version));
+            }
+            final int[][] state = readState(input);
+            if (state == null || input.getRemaining() != 0) {
+                throw new IOException(String.format("snapshot %s is corrupted.", file));
+            }
+            final SimulationSnapshot snapshot = build(state[0], state[1], state[2]);
+            if (snapshot == null) throw new IOException(String.format("snapshot %s is corrupted.", file));
+            return snapshot;
+        }
+    }
+
+    /**
+     * The method for capturing the given state of a simulation in to the memory. The captured state is never
+     * changed, so it can be shared by every copy built from it
+     *
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @return the values of the crossings, of the streets and the columns of the cars
+     */
+    public static int[][] capture(List<Crossing> crossings, List<Street> streets) {
+        final int[] startNodes = new int[streets.size()];
+        int numberOfCars = 0;
+        for (Crossing crossing : crossings) {
+            for (int direction = 0; direction < crossing.getNumberOfExitStreets(); direction++) {
+                startNodes[crossing.getExitStreet(direction)] = crossing.getId();
+            }
+        }
+        for (Street street : streets) numberOfCars += street.getNumberOfCars();
+
+        final int[] crossingValues = new int[CROSSING_INTS * crossings.size()];
+        int offset = 0;
+        for (Crossing crossing : crossings) {
+            crossingValues[offset++] = crossing.getId();
+            crossingValues[offset++] = crossing.getGreenLightDuration();
+            crossingValues[offset++] = crossing.getGreenLightPhase();
+            crossingValues[offset++] = crossing.getRemainingDuration();
+        }
+        final int[] streetValues = new int[STREET_INTS * streets.size()];
+        offset = 0;
+        for (int id = 0; id < streets.size(); id++) {
+            final Street street = streets.get(id);
+            streetValues[offset++] = startNodes[id];
+            streetValues[offset++] = street.getEndNodeId();
+            streetValues[offset++] = street.getLength();
+            streetValues[offset++] = street.getType();
+            streetValues[offset++] = street.getSpeedLimit();
+            streetValues[offset++] = street.getNumberOfCars();
+        }
+        final int[] carValues = new int[CAR_INTS * numberOfCars];
+        offset = 0;
+        for (Street street : streets) {
+            final int count = street.getNumberOfCars();
+            for (int index = 0; index < count; index++) {
+                final Car car = street.getCar(index);
+                carValues[offset + index] = car.getId();
+                carValues[offset + count + index] = car.getMaxSpeed();
+                carValues[offset + 2 * count + index] = car.getAcceleration();
+                carValues[offset + 3 * count + index] = car.getPosition();
+                carValues[offset + 4 * count + index] = car.getSpeed();
+                carValues[offset + 5 * count + index] = car.getDesiredDirection();
+            }
+            offset += CAR_INTS * count;
+        }
+        return new int[][] {crossingValues, streetValues, carValues};
+    }
+
+    /**
+     * The method for building new objects from a state captured by {@link #capture(List, List)}
+     *
+     * @param state the captured state
+     * @return the snapshot with the objects of the state
+     */
+    public static SimulationSnapshot copy(int[][] state) {
+        return build(state[0], state[1], state[2]);
+    }
+
+    /**
+     * The method for changing the duration of the green light of a crossing in a state captured by
+     * {@link #capture(List, List)}, in the same way as {@link Crossing#setGreenLightDuration(int, long)}. Only the
+     * values of the crossings are copied, the streets and the cars stay shared with the given state
+     *
+     * @param state the captured state, which is not changed
+     * @param crossingId the id of the crossing
+     * @param duration the new duration of the green light, 0 means there is no light
+     * @return the changed state; null, if no crossing has the given id
+     */
+    public static int[][] withGreenLightDuration(int[][] state, int crossingId, int duration) {
+        final int[] crossingValues = state[0];
+        for (int offset = 0; offset < crossingValues.length; offset += CROSSING_INTS) {
+            if (crossingValues[offset] != crossingId) continue;
+            final int[] changed = crossingValues.clone();
+            changed[offset + 1] = duration;
+            if (duration == 0) changed[offset + 2] = 0;
+            changed[offset + 3] = duration;
+            return new int[][] {changed, state[1], state[2]};
+        }
+        return null;
+    }
+
+    /**
+     * The method for taking the cars of the streets of one part out of a state captured by
+     * {@link #capture(List, List)}. The crossings and the streets stay the same, the other streets are empty
+     *
+     * @param state the captured state, which is not changed
+     * @param streetParts the part of every street
+     * @param part the part whose cars are taken
+     * @return the state with the cars of the part
+     */
+    public static int[][] withCarsOf(int[][] state, int[] streetParts, int part) {
+        final int[] streetValues = state[1].clone();
+        int numberOfCars = 0;
+        for (int id = 0; id < streetParts.length; id++) {
+            if (streetParts[id] == part) numberOfCars += streetValues[STREET_INTS * id + STREET_CARS];
+        }
+        final int[] carValues = new int[CAR_INTS * numberOfCars];
+        int offset = 0;
+        int partOffset = 0;
+        for (int id = 0; id < streetParts.length; id++) {
+            final int count = CAR_INTS * streetValues[STREET_INTS * id + STREET_CARS];
+            if (streetParts[id] == part) {
+                System.arraycopy(state[2], offset, carValues, partOffset, count);
+                partOffset += count;
+            }
+            else streetValues[STREET_INTS * id + STREET_CARS] = 0;
+            offset += count;
+        }
+        return new int[][] {state[0], streetValues, carValues};
+    }
+
+    /**
+     * The method for joining the states of the parts taken by {@link #withCarsOf(int[][], int[], int)} in to one
+     * state with the cars of every part, whose crossings are the ones of the first part
+     *
+     * @param states the captured states of the parts, which are not changed
+     * @param streetParts the part of every street
+     * @return the joined state
+     */
+    public static int[][] join(int[][][] states, int[] streetParts) {
+        final int[] streetValues = states[0][1].clone();
+        int numberOfCars = 0;
+        for (int[][] state : states) numberOfCars += state[2].length;
+        final int[] carValues = new int[numberOfCars];
+        final int[] partOffsets = new int[states.length];
+        int offset = 0;
+        for (int id = 0; id < streetParts.length; id++) {
+            final int part = streetParts[id];
+            final int cars = states[part][1][STREET_INTS * id + STREET_CARS];
+            streetValues[STREET_INTS * id + STREET_CARS] = cars;
+            System.arraycopy(states[part][2], partOffsets[part], carValues, offset, CAR_INTS * cars);
+            partOffsets[part] += CAR_INTS * cars;
+            offset += CAR_INTS * cars;
+        }
+        return new int[][] {states[0][0], streetValues, carValues};
+    }
+
+    /**
+     * the getter method for the restored crossings
+     * @return the crossings in the order they were loaded
+     */
+    public List<Crossing> getCrossings() {
+        return crossings;
+    }
+
+    /**
+     * the getter method for the index of the restored crossings
+     * @return the crossings by their ids
+     */
+    public IntIndex<Crossing> getCrossingIndex() {
+        return crossingIndex;
+    }
+
+    /**
+     * the getter method for the restored streets
+     * @return the streets ordered by their ids
+     */
+    public List<Street> getStreets() {
+        return streets;
+    }
+
+    /**
+     * the getter method for the index of the restored cars
+     * @return the cars by their ids
+     */
+    public IntIndex<Car> getCarIndex() {
+        return carIndex;
+    }
+
+    /**
+     * The method for writing the numbers of crossings, streets and cars followed by their state in the format of
+     * a snapshot
+     *
+     * @param output the writer of the file
+     * @param crossings the crossings of the simulation in the order they were loaded
+     * @param streets the streets of the simulation ordered by their ids
+     * @throws IOException if the file cannot be written
+     */
+    static void writeState(IntFileWriter output, List<Crossing> crossings, List<Street> streets) throws IOException {
+        final int[][] state = capture(crossings, streets);
+        output.putInt(crossings.size());
+        output.putInt(streets.size());
+        output.putInt(state[2].length / CAR_INTS);
+        for (int[] values : state) output.putInts(values, 0, values.length);
+    }
+
+    /**
+     * The method for reading a state written by {@link #writeState(IntFileWriter, List, List)}
+     *
+     * @param input the reader of the file
+     * @return the values of the crossings, of the streets and the columns of the cars; null, if the numbers of
+     *         crossings, streets or cars are invalid
+     * @throws IOException if the file cannot be read
+     */
+    static int[][] readState(IntFileReader input) throws IOException {
+        if (input.getRemaining() < (long) COUNT_INTS * Integer.BYTES) return null;
+        final int numberOfCrossings = input.readInt();
+        final int numberOfStreets = input.readInt();
+        final int numberOfCars = input.readInt();
+        final long size = Integer.BYTES * ((long) CROSSING_INTS * numberOfCrossings
+            + (long) STREET_INTS * numberOfStreets + (long) CAR_INTS * numberOfCars);
+        if (numberOfCrossings < 0 || numberOfStreets < 0 || numberOfCars < 0 || input.getRemaining() < size) {
+            return null;
+        }
+        final int[] crossingValues = input.read(CROSSING_INTS * numberOfCrossings);
+        final int[] streetValues = input.read(STREET_INTS * numberOfStreets);
+        final int[] carValues = input.read(CAR_INTS * numberOfCars);
+        return new int[][] {crossingValues, streetValues, carValues};
+    }
+
+    /**
+     * The method for creating the objects of a state
+     *
+     * @param crossingValues id, green light duration, phase and remaining duration of every crossing
+     * @param streetValues start crossing, end crossing, length, type, speed limit and number of cars of every street
+     * @param carValues the columns of the cars, street by street
+     * @return the snapshot with the objects of the state; null, if the state is not consistent
+     */
+    static SimulationSnapshot build(int[] crossingValues, int[] streetValues, int[] carValues) {
+        final int numberOfCrossings = crossingValues.length / CROSSING_INTS;
+        final int numberOfStreets = streetValues.length / STREET_INTS;
+        final List<Crossing> crossings = new ArrayList<>(numberOfCrossings);
+        final IntIndex<Crossing> crossingIndex = new IntIndex<>(numberOfCrossings);
+        for (int i = 0; i < numberOfCrossings; i++) {
+            final int offset = i * CROSSING_INTS;
+            final Crossing crossing = new Crossing(crossingValues[offset], crossingValues[offset + 1]);
+            crossing.setLightState(crossingValues[offset + 2], crossingValues[offset + 3]);
+            crossings.add(crossing);
+            crossingIndex.put(crossing.getId(), crossing);
+        }
+
+        final List<Street> streets = new ArrayList<>(numberOfStreets);
+        for (int id = 0; id < numberOfStreets; id++) {
+            final int offset = id * STREET_INTS;
+            final Crossing startNode = crossingIndex.get(streetValues[offset]);
+            final Crossing endNode = crossingIndex.get(streetValues[offset + 1]);
+            if (startNode == null || endNode == null) return null;
+            startNode.addExitStreet(id); // the streets are added in the same order as on load
+            endNode.addEnterStreet(id);
+            streets.add(new Street(id, endNode.getId(), streetValues[offset + 2], streetValues[offset + 3],
+                streetValues[offset + 4]));
+        }
+
+        final IntIndex<Car> carIndex = new IntIndex<>(carValues.length / CAR_INTS);
+        int offset = 0;
+        for (int id = 0; id < numberOfStreets; id++) {
+            final Street street = streets.get(id);
+            final int count = streetValues[id * STREET_INTS + STREET_INTS - 1];
+            if (count < 0 || offset + CAR_INTS * count > carValues.length) return null;
+            street.restoreCars(carValues, offset, count);
+            offset += CAR_INTS * count;
+            for (int index = 0; index < count; index++) {
+                final Car car = street.getCar(index);
+                carIndex.put(car.getId(), car);
+            }
+        }
+        return new SimulationSnapshot(crossings, crossingIndex, streets, carIndex);
+    }
+}
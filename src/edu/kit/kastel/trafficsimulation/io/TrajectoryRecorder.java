@@ -0,0 +1,827 @@
+package edu.kit.kastel.trafficsimulation.io;
+
+import edu.kit.kastel.trafficsimulation.objects.Street;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records the trajectories of every car, tick by tick, in to a compressed columnar file. The file starts with the
+ * little endian integers {@value #MAGIC} and the version {@value #VERSION} and the little endian long of the tick the
+ * recording started at, followed by one frame per recorded tick. A frame holds the ticks since the previous frame,
+ * the number of streets updated in the tick and, for each of these streets, its id, the number of its cars and the
+ * columns of the ids, speeds and positions of its cars. Every value is stored as the difference to a prediction:
+ * <ul>
+ *     <li>a frame is predicted to follow the previous one after one tick, with as many streets as it</li>
+ *     <li>the id of a street is predicted to be the next one of the previous frame, and the number of its cars the
+ *     number it had in its previous record</li>
+ *     <li>the id of a car is predicted to be the id of the car in the same row of the previous record, shifted by
+ *     the cars that left or overtook ahead of it</li>
+ *     <li>the speed of a car is predicted to be the one it had in the previous record</li>
+ *     <li>the position of a car is predicted to be its previous position advanced by its speed for every tick since
+ *     the previous record</li>
+ * </ul>
+ * A car that is not in the previous record is predicted to have the id after the one before it and 0 for its speed
+ * and position. A street that is not in a frame slept in its tick or its cars only drove on at their speeds, which is
+ * how the reader gives the positions of every car in every tick. Every difference is a variable length integer of 7 bits
+ * per byte, zigzag encoded and shifted by one bit, and a run of differences of 0 is stored as one integer with the
+ * lowest bit cleared, across the streets and frames. So a car driving on at a constant speed takes no space at all,
+ * and neither does a tick in which the same streets are updated and every car does what it was predicted to do.
+ * <p>
+ * The simulation only copies the cars of the streets it updated and whose cars did something else than driving on at
+ * their speeds, as {@link Street#hasUnrecordedChanges()} tells, column by column in bulk, in to an array that is
+ * copied at once in to one of a few small direct buffers when it is full, which stay in the cache. The filled buffers
+ * are encoded by a writer thread meanwhile in to a direct buffer that is written to the file channel, so the
+ * simulation does the same work per tick as it does for the updates of the streets, only less of it. If the writer
+ * falls behind, the simulation waits for it, so no tick is lost
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class TrajectoryRecorder implements Closeable {
+
+    /**
+     * The first integer of every trajectory file
+     */
+    public static final int MAGIC = 0x54524A43;
+
+    /**
+     * The version of the format written by this class
+     */
+    public static final int VERSION = 2;
+
+    private static final int BUFFERS = 4;
+
+    private static final int BUFFER_VALUES = 1 << 14;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final int FRAME = -1;
+
+    private static final int FRAME_VALUES = 3;
+
+    private static final long NO_FRAME = Long.MIN_VALUE;
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private static final int VARINT_BITS = 7;
+
+    private static final int VARINT_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUE = 0x80;
+
+    private static final IntBuffer STOP = IntBuffer.allocate(0);
+
+    private final FileChannel channel;
+
+    private final ByteBuffer output;
+
+    private final byte[] encoded = new byte[BUFFER_SIZE];
+
+    private int encodedBytes;
+
+    private int[] raw = new int[0];
+
+    private int read;
+
+    private final BlockingQueue<IntBuffer> free;
+
+    private final BlockingQueue<IntBuffer> filled;
+
+    private final Thread writer;
+
+    private final Records records = new Records();
+
+    private final FrameStreets frameStreets = new FrameStreets();
+
+    private int[] staged = new int[BUFFER_VALUES];
+
+    private int stagedValues;
+
+    private long frameTick;
+
+    private long writtenTick;
+
+    private boolean writingFrame;
+
+    private int lastStreetId;
+
+    private long zeros;
+
+    private volatile IOException failure;
+
+    private TrajectoryRecorder(FileChannel channel, long tick) {
+        this.channel = channel;
+        this.output = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.free = new ArrayBlockingQueue<>(BUFFERS);
+        this.filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+        for (int buffer = 0; buffer < BUFFERS; buffer++) free.add(allocate(BUFFER_VALUES));
+        this.frameTick = NO_FRAME;
+        this.encodedBytes = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(MAGIC).putInt(VERSION).putLong(tick).position();
+
+        this.writer = new Thread(this::write, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The method for starting a new recording, replacing the file if it exists
+     *
+     * @param file the path of the file
+     * @param tick the current tick of the simulation, which the first frame is at
+     * @return the recorder
+     * @throws IOException if the file cannot be opened
+     */
+    public static TrajectoryRecorder create(Path file, long tick) throws IOException {
+        return new TrajectoryRecorder(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING), tick);
+    }
+
+    /**
+     * The method for recording the cars of a street that changed in the given tick. The streets of a tick are
+     * recorded in the order of their ids, once the tick is finished, and the first tick of a recording records every
+     * street. The ticks given to a recording only have to be counted from the same tick as each other, the first one
+     * is the tick given to {@link #create(Path, long)}. The cars are copied in to an array first, since most streets
+     * only hold a few cars, and once it is full it is copied at once in to a free buffer, which is handed to the
+     * writer. If every buffer is taken, this waits for the writer
+     *
+     * @param tick the tick that is finished
+     * @param street the street
+     */
+    public void record(long tick, Street street) {
+        final int needed = street.getRecordedValues() + (tick != frameTick ? FRAME_VALUES : 0);
+        if (stagedValues + needed > staged.length && !unstage(needed)) return;
+        if (tick != frameTick) startFrame(tick);
+        stagedValues = street.recordCars(staged, stagedValues);
+    }
+
+    /**
+     * The method for recording that the simulation reached the given tick, in which every car drove on since the
+     * last recorded tick. An empty frame is recorded if the tick is later than the last recorded one
+     *
+     * @param tick the current tick, counted like the ones given to {@link #record(long, Street)}
+     * @throws IOException if an earlier frame could not be written
+     */
+    public void reach(long tick) throws IOException {
+        if (failure != null) throw failure;
+        if (tick == frameTick) return;
+        if (stagedValues + FRAME_VALUES > staged.length && !unstage(FRAME_VALUES)) throw failure;
+        startFrame(tick);
+    }
+
+    /**
+     * The method for waiting until every frame is written and closing the file
+     *
+     * @throws IOException if a frame could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (stagedValues > 0) unstage(0);
+        filled.add(STOP);
+        try {
+            writer.join();
+        }   catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure == null) flush();
+        }   catch (IOException ioException) {
+            failure = ioException;
+        }   finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * The method for reading a recorded file frame by frame. Every tick since the start of the recording is given to
+     * the visitor, the ticks between two frames as well
+     *
+     * @param file the path of the file
+     * @param visitor the visitor every frame is given to, the arrays of a frame are reused for the next one
+     * @throws IOException if the file cannot be read or is not a trajectory file
+     */
+    public static void read(Path file, FrameVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream input = new DataInputStream(
+                 new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            if (Integer.reverseBytes(input.readInt()) != MAGIC) {
+                throw new IOException(String.format("file %s is not a trajectory file.", file));
+            }
+            final int version = Integer.reverseBytes(input.readInt());
+            if (version != VERSION) {
+                throw new IOException(String.format("trajectory file version %d is not supported.", version));
+            }
+            final Records records = new Records();
+            final FrameStreets frameStreets = new FrameStreets();
+            final Residuals residuals = new Residuals(input);
+            final Frame frame = new Frame();
+            long tick = Long.reverseBytes(input.readLong());
+            while (true) {
+                final long ticks;
+                try {
+                    ticks = 1 + residuals.next();
+                }   catch (EOFException eofException) {
+                    return; // every frame is read
+                }
+                // the ticks in between are the ones in which every street slept
+                for (long skipped = 1; skipped < ticks; skipped++) {
+                    frame.visit(records, tick + skipped, visitor);
+                }
+                tick += ticks;
+                frameStreets.start();
+                int streetId = -1;
+                while (true) {
+                    final int more = frameStreets.predictMore() + residuals.next();
+                    if (more == 0) break;
+                    if (more != 1) throw new IOException("trajectory file is corrupted.");
+                    streetId = frameStreets.predict(streetId) + residuals.next();
+                    frameStreets.add(streetId);
+                    final Record record = records.get(streetId);
+                    final int count = record.previousCount + residuals.next();
+                    if (count < 0) throw new IOException("trajectory file is corrupted.");
+                    record.start(count, tick);
+                    for (int row = 0; row < count; row++) record.addId(row, record.predictId(row) + residuals.next());
+                    for (int row = 0; row < count; row++) {
+                        record.addSpeed(row, record.predictSpeed(row) + residuals.next());
+                    }
+                    for (int row = 0; row < count; row++) {
+                        record.addPosition(row, record.predictPosition(row) + residuals.next());
+                    }
+                    record.end(!record.isPredicted());
+                }
+                frame.visit(records, tick, visitor);
+            }
+        }
+    }
+
+    private static IntBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private void startFrame(long tick) {
+        staged[stagedValues++] = FRAME;
+        staged[stagedValues++] = (int) (tick >>> Integer.SIZE);
+        staged[stagedValues++] = (int) tick;
+        frameTick = tick;
+    }
+
+    /**
+     * The method for copying the staged values in to a free buffer at once and handing it to the writer
+     *
+     * @param needed the number of values the array needs room for afterwards
+     * @return true, if the values are handed to the writer; false, if the recording failed
+     */
+    private boolean unstage(int needed) {
+        final IntBuffer next;
+        try {
+            next = free.take();
+        }   catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("recording was interrupted.");
+            return false;
+        }
+        // a street with more cars than fit in to a buffer gets a larger one
+        final IntBuffer buffer = next.capacity() < stagedValues ? allocate(stagedValues) : next.clear();
+        filled.add(buffer.put(staged, 0, stagedValues).flip());
+        stagedValues = 0;
+        if (staged.length < needed) staged = new int[needed];
+        return failure == null;
+    }
+
+    private void write() {
+        while (true) {
+            final IntBuffer written;
+            try {
+                written = filled.take();
+            }   catch (InterruptedException interruptedException) {
+                return;
+            }
+            try {
+                if (written == STOP) {
+                    if (writingFrame) putResidual(-frameStreets.predictMore());
+                    endRun();
+                    return;
+                }
+                // the buffer is copied at once and handed back, a value read from it one by one costs several times
+                // as much as one read from an array
+                final int length = written.remaining();
+                if (raw.length < length) raw = new int[length];
+                written.get(raw, 0, length);
+                free.add(written);
+                read = 0;
+                while (read < length && failure == null) writeRecord();
+            }   catch (IOException ioException) {
+                failure = ioException; // the buffer is already handed back
+            }
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        final int streetId = raw[read++];
+        if (streetId == FRAME) {
+            final long tick = (long) raw[read++] << Integer.SIZE | raw[read++] & 0xFFFFFFFFL;
+            if (writingFrame) putResidual(-frameStreets.predictMore()); // no street follows
+            putResidual(writingFrame ? (int) (tick - writtenTick - 1) : -1); // the first frame is at the start
+            writtenTick = tick;
+            writingFrame = true;
+            frameStreets.start();
+            lastStreetId = -1;
+            return;
+        }
+        final int count = raw[read++];
+        putResidual(1 - frameStreets.predictMore());
+        putResidual(streetId - frameStreets.predict(lastStreetId));
+        frameStreets.add(streetId);
+        lastStreetId = streetId;
+        final Record record = records.get(streetId);
+        putResidual(count - record.previousCount);
+        record.start(count, writtenTick);
+        final int length = Street.COPIED_CAR_VALUES * count;
+        System.arraycopy(raw, read, record.values, 0, length);
+        read += length;
+        if (record.isPredicted()) {
+            zeros += length; // most cars of a jam or a free street do what they did
+            record.end(false);
+            return;
+        }
+        for (int row = 0; row < count; row++) {
+            final int id = record.getId(row);
+            putResidual(id - record.predictId(row));
+            record.addId(row, id);
+        }
+        for (int row = 0; row < count; row++) putResidual(record.getSpeed(row) - record.predictSpeed(row));
+        for (int row = 0; row < count; row++) {
+            final int position = record.getPosition(row);
+            putResidual(position - record.predictPosition(row));
+            record.addPosition(row, position);
+        }
+        record.end(true);
+    }
+
+    private void putResidual(int residual) throws IOException {
+        if (residual == 0) {
+            zeros++;
+            return;
+        }
+        endRun();
+        putVarLong(encode(residual) << 1 | 1);
+    }
+
+    private void endRun() throws IOException {
+        if (zeros == 0) return;
+        putVarLong(zeros << 1);
+        zeros = 0;
+    }
+
+    private void putVarLong(long value) throws IOException {
+        if (encodedBytes > encoded.length - MAX_VARINT_BYTES) flush();
+        long rest = value;
+        while ((rest & ~VARINT_MASK) != 0) {
+            encoded[encodedBytes++] = (byte) (rest & VARINT_MASK | VARINT_CONTINUE);
+            rest >>>= VARINT_BITS;
+        }
+        encoded[encodedBytes++] = (byte) rest;
+    }
+
+    /**
+     * The method for writing the encoded bytes to the file, through the direct buffer at once
+     */
+    private void flush() throws IOException {
+        output.clear();
+        output.put(encoded, 0, encodedBytes).flip();
+        while (output.hasRemaining()) channel.write(output);
+        encodedBytes = 0;
+    }
+
+    private static long readVarLong(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += VARINT_BITS) {
+            final int next = input.read();
+            if (next < 0) throw new EOFException();
+            value |= (long) (next & VARINT_MASK) << shift;
+            if ((next & VARINT_CONTINUE) == 0) return value;
+        }
+        throw new IOException("variable length integer is too long.");
+    }
+
+    private static long encode(int difference) {
+        return (difference << 1 ^ difference >> (Integer.SIZE - 1)) & 0xFFFFFFFFL; // zigzag, small magnitudes first
+    }
+
+    private static int decode(long value) {
+        final int zigzag = (int) value;
+        return zigzag >>> 1 ^ -(zigzag & 1);
+    }
+
+    /**
+     * Receives the frames of a recorded file
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    @FunctionalInterface
+    public interface FrameVisitor {
+
+        /**
+         * The method for receiving the cars of one frame, in the order of their streets
+         *
+         * @param tick the tick of the frame
+         * @param count the number of cars
+         * @param ids the ids of the cars, only the first count entries of every array belong to the frame
+         * @param streetIds the ids of the streets the cars are on
+         * @param positions the positions of the cars
+         * @param speeds the speeds of the cars
+         */
+        void visit(long tick, int count, int[] ids, int[] streetIds, int[] positions, int[] speeds);
+    }
+
+    /**
+     * The last record of every street and the last known state of every car, from which the writer and the reader
+     * predict the next record of a street in the same way. A car that enters a street is predicted to keep the speed
+     * it had on the street it left, and to be as far ahead on the new street as it was ahead of the end of the street
+     * it left, whose length is learned from the car that left it before
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Records {
+
+        // the state of the cars with higher ids is not kept, these cars enter a street at speed and position 0
+        private static final int MAX_KNOWN_CAR_ID = 1 << 22;
+
+        private static final int UNKNOWN = -1;
+
+        private static final int CAR_VALUES = 4;
+
+        private Record[] streets = new Record[0];
+
+        private int[] exitOffsets = new int[0];
+
+        private int numberOfStreets;
+
+        // the street plus 1, 0 for an unknown car, the speed, the position and the lower half of the tick of every car
+        private int[] cars = new int[0];
+
+        Record get(int streetId) throws IOException {
+            if (streetId < 0) throw new IOException("trajectory file is corrupted.");
+            if (streetId >= streets.length) {
+                streets = Arrays.copyOf(streets, Math.max(streetId + 1, 2 * streets.length));
+                exitOffsets = Arrays.copyOf(exitOffsets, streets.length);
+            }
+            if (streets[streetId] == null) streets[streetId] = new Record(this, streetId);
+            numberOfStreets = Math.max(numberOfStreets, streetId + 1);
+            return streets[streetId];
+        }
+
+        /**
+         * the getter method for the street a car was on when its state was kept last
+         * @return the id of the street, if the car came from another street; {@value #UNKNOWN}, otherwise
+         */
+        int getPreviousStreet(int carId, int streetId) {
+            if (carId < 0 || carId >= cars.length / CAR_VALUES) return UNKNOWN;
+            final int previousStreet = cars[carId * CAR_VALUES] - 1;
+            return previousStreet != streetId ? previousStreet : UNKNOWN;
+        }
+
+        int getSpeed(int carId) {
+            return cars[carId * CAR_VALUES + 1];
+        }
+
+        int predictEnteringPosition(int carId, int previousStreet, int speed, long tick) {
+            return driven(carId, speed, tick) - exitOffsets[previousStreet];
+        }
+
+        void learnExitOffset(int carId, int previousStreet, int speed, int position, long tick) {
+            exitOffsets[previousStreet] = driven(carId, speed, tick) - position;
+        }
+
+        void keep(int carId, int streetId, int speed, int position, long tick) {
+            if (carId < 0 || carId >= MAX_KNOWN_CAR_ID) return;
+            final int car = carId * CAR_VALUES;
+            if (car >= cars.length) {
+                final int capacity = Math.min(MAX_KNOWN_CAR_ID, Math.max(carId + 1, 2 * cars.length / CAR_VALUES));
+                cars = Arrays.copyOf(cars, CAR_VALUES * capacity);
+            }
+            cars[car] = streetId + 1;
+            cars[car + 1] = speed;
+            cars[car + 2] = position;
+            cars[car + 3] = (int) tick;
+        }
+
+        /**
+         * the getter method for the position of a car at the given speed since its state was kept, the lower halves
+         * of the ticks are enough for their difference
+         */
+        private int driven(int carId, int speed, long tick) {
+            final int car = carId * CAR_VALUES;
+            return cars[car + 2] + ((int) tick - cars[car + 3]) * speed;
+        }
+    }
+
+    /**
+     * The ids of the streets in the current frame and in the previous one, from which the writer and the reader
+     * predict the ids of the streets in the same way
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class FrameStreets {
+
+        private int[] streetIds = new int[0];
+
+        private int[] previousStreetIds = new int[0];
+
+        private int count;
+
+        private int previousCount;
+
+        private int next;
+
+        void start() {
+            final int[] swapped = previousStreetIds;
+            previousStreetIds = streetIds;
+            streetIds = swapped;
+            previousCount = count;
+            count = 0;
+            next = 0;
+        }
+
+        /**
+         * The method for predicting if another street follows in the frame, which it does if the previous frame has
+         * more streets
+         * @return 1, if another street is predicted; 0, otherwise
+         */
+        int predictMore() {
+            return count < previousCount ? 1 : 0;
+        }
+
+        void add(int streetId) {
+            if (count == streetIds.length) streetIds = Arrays.copyOf(streetIds, Math.max(1, 2 * count));
+            streetIds[count++] = streetId;
+        }
+
+        /**
+         * The method for predicting the id of the street after the given one in the frame: the next street of the
+         * previous frame, or the street with the next id if there is none
+         */
+        int predict(int lastStreetId) {
+            while (next < previousCount && previousStreetIds[next] <= lastStreetId) next++;
+            return next < previousCount ? previousStreetIds[next] : lastStreetId + 1;
+        }
+    }
+
+    /**
+     * The cars of one street as they were recorded last, and the ones recorded right now
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Record {
+
+        private static final int NOT_FOUND = -1;
+
+        // a car that is not in its row is looked for this many rows ahead of and behind it
+        private static final int SEARCHED_ROWS = 8;
+
+        private final Records records;
+
+        private final int streetId;
+
+        // the columns of the ids, speeds and positions one after the other, as the street recorded them
+        private int[] values = new int[0];
+
+        private int[] previousValues = new int[0];
+
+        private int[] previousRows = new int[0];
+
+        private int count;
+
+        private int previousCount;
+
+        private long previousTick;
+
+        private long ticks;
+
+        private int shift;
+
+        private int lastId;
+
+        Record(Records records, int streetId) {
+            this.records = records;
+            this.streetId = streetId;
+        }
+
+        void start(int count, long tick) {
+            final int length = Street.COPIED_CAR_VALUES * count;
+            if (values.length < length) values = new int[Math.max(length, 2 * values.length)];
+            if (previousRows.length < count) previousRows = new int[Math.max(count, 2 * previousRows.length)];
+            this.count = count;
+            ticks = tick - previousTick;
+            previousTick = tick;
+            shift = 0;
+            lastId = -1;
+        }
+
+        int getId(int row) {
+            return values[row];
+        }
+
+        int getSpeed(int row) {
+            return values[count + row];
+        }
+
+        int getPosition(int row) {
+            return values[2 * count + row];
+        }
+
+        int getPreviousId(int previousRow) {
+            return previousValues[previousRow];
+        }
+
+        int getPreviousSpeed(int previousRow) {
+            return previousValues[previousCount + previousRow];
+        }
+
+        int getPreviousPosition(int previousRow) {
+            return previousValues[2 * previousCount + previousRow];
+        }
+
+        /**
+         * The method for checking if the cars are the ones in the previous record in the same rows, at the same speeds
+         * and at the predicted positions, which is the case for most records. The ids and speeds are compared at once,
+         * since they are stored one after the other
+         * @return true, if every value is predicted; false, otherwise
+         */
+        boolean isPredicted() {
+            if (count != previousCount || !Arrays.equals(values, 0, 2 * count, previousValues, 0, 2 * count)) {
+                return false;
+            }
+            for (int row = 0; row < count; row++) {
+                if (getPosition(row) != (int) (getPreviousPosition(row) + ticks * getSpeed(row))) return false;
+            }
+            return true;
+        }
+
+        int predictId(int row) {
+            final int previousRow = row + shift;
+            if (previousRow >= 0 && previousRow < previousCount) return getPreviousId(previousRow);
+            return lastId + 1;
+        }
+
+        void addId(int row, int id) {
+            int previousRow = row + shift;
+            if (previousRow < 0 || previousRow >= previousCount || getPreviousId(previousRow) != id) {
+                previousRow = find(id, previousRow);
+                if (previousRow != NOT_FOUND) shift = previousRow - row; // the cars behind it most likely follow it
+            }
+            previousRows[row] = previousRow;
+            values[row] = id;
+            lastId = id;
+        }
+
+        int predictSpeed(int row) {
+            if (previousRows[row] != NOT_FOUND) return getPreviousSpeed(previousRows[row]);
+            final int previousStreet = records.getPreviousStreet(getId(row), streetId);
+            return previousStreet == Records.UNKNOWN ? 0 : records.getSpeed(getId(row));
+        }
+
+        void addSpeed(int row, int speed) {
+            values[count + row] = speed;
+        }
+
+        int predictPosition(int row) {
+            final int previousRow = previousRows[row];
+            if (previousRow != NOT_FOUND) return (int) (getPreviousPosition(previousRow) + ticks * getSpeed(row));
+            final int previousStreet = records.getPreviousStreet(getId(row), streetId);
+            if (previousStreet == Records.UNKNOWN) return 0;
+            return records.predictEnteringPosition(getId(row), previousStreet, getSpeed(row), previousTick);
+        }
+
+        /**
+         * The method for learning from the position of a car, once it is known, how far ahead the cars that enter
+         * the street from the same street are
+         */
+        void addPosition(int row, int position) {
+            values[2 * count + row] = position;
+            if (previousRows[row] != NOT_FOUND) return;
+            final int previousStreet = records.getPreviousStreet(getId(row), streetId);
+            if (previousStreet == Records.UNKNOWN) return;
+            records.learnExitOffset(getId(row), previousStreet, getSpeed(row), position, previousTick);
+        }
+
+        /**
+         * The method for ending the record, the state of the cars is kept unless every car did what it was predicted
+         * to do, from which the kept state is predicted just as well
+         * @param keep true, if the state of the cars is kept; false, otherwise
+         */
+        void end(boolean keep) {
+            if (keep) {
+                for (int row = 0; row < count; row++) {
+                    records.keep(getId(row), streetId, getSpeed(row), getPosition(row), previousTick);
+                }
+            }
+            final int[] swapped = previousValues;
+            previousValues = values;
+            values = swapped;
+            previousCount = count;
+        }
+
+        private int find(int id, int previousRow) {
+            final int from = Math.max(0, previousRow - SEARCHED_ROWS);
+            final int to = Math.min(previousCount, previousRow + SEARCHED_ROWS + 1);
+            for (int candidate = from; candidate < to; candidate++) {
+                if (getPreviousId(candidate) == id) return candidate;
+            }
+            return NOT_FOUND;
+        }
+    }
+
+    /**
+     * The cars of every street in one tick, the ones of a street that was not recorded in the tick advanced by their
+     * speeds since its last record
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Frame {
+
+        private int[] ids = new int[0];
+
+        private int[] streetIds = new int[0];
+
+        private int[] positions = new int[0];
+
+        private int[] speeds = new int[0];
+
+        void visit(Records records, long tick, FrameVisitor visitor) {
+            int count = 0;
+            for (int streetId = 0; streetId < records.numberOfStreets; streetId++) {
+                if (records.streets[streetId] != null) count += records.streets[streetId].previousCount;
+            }
+            if (ids.length < count) {
+                ids = new int[count];
+                streetIds = new int[count];
+                positions = new int[count];
+                speeds = new int[count];
+            }
+            int row = 0;
+            for (int streetId = 0; streetId < records.numberOfStreets; streetId++) {
+                final Record record = records.streets[streetId];
+                if (record == null) continue;
+                final long ticks = tick - record.previousTick;
+                for (int car = 0; car < record.previousCount; car++) {
+                    ids[row] = record.getPreviousId(car);
+                    streetIds[row] = streetId;
+                    speeds[row] = record.getPreviousSpeed(car);
+                    positions[row] = (int) (record.getPreviousPosition(car) + ticks * speeds[row]);
+                    row++;
+                }
+            }
+            visitor.visit(tick, count, ids, streetIds, positions, speeds);
+        }
+    }
+
+    /**
+     * Reads the differences of a file, in which a run of differences of 0 is a single integer
+     *
+     * @author ufmkk
+     * @version 1.0
+     */
+    private static final class Residuals {
+
+        private final InputStream input;
+
+        private long zeros;
+
+        Residuals(InputStream input) {
+            this.input = input;
+        }
+
+        int next() throws IOException {
+            if (zeros > 0) {
+                zeros--;
+                return 0;
+            }
+            final long value = readVarLong(input);
+            if ((value & 1) != 0) return decode(value >>> 1);
+            zeros = (value >>> 1) - 1;
+            return 0;
+        }
+    }
+}
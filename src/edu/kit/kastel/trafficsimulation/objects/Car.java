@@ -3,7 +3,8 @@ package edu.kit.kastel.trafficsimulation.objects;
 import edu.kit.kastel.trafficsimulation.Main;
 
 /**
- * The class for modeling the cars in the simulation
+ * The class for modeling the cars in the simulation. Once a car is on a street, its state is stored in the
+ * {@link Lane} of the street and the car is only a view on it
  * 
  * @author ufmkk
  * @version 1.0
@@ -22,7 +23,11 @@ public class Car implements ICar {
     
     private int speed;
     
-    private boolean simulated;
+    private long simulatedTick;
+    
+    private Lane lane;
+    
+    private int slot;
 
     /**
      * Instantiates a new car with the give parameters
@@ -37,7 +42,25 @@ public class Car implements ICar {
         this.acceleration = acceleration;
         this.desiredDirection = 0;
         this.speed = 0;
-        this.simulated = false;
+        this.simulatedTick = 0;
+    }
+
+    /**
+     * Instantiates a car that is not on a street with the given state, like a car that comes from a street of
+     * another process of the distributed mode
+     * 
+     * @param id the id of the car
+     * @param maxSpeed the maximum speed the car can have
+     * @param acceleration the acceleration the car has
+     * @param desiredDirection the desired direction of the car
+     * @param speed the speed of the car
+     * @param positionOnStreet the position of the car
+     */
+    public Car(int id, int maxSpeed, int acceleration, int desiredDirection, int speed, int positionOnStreet) {
+        this(id, maxSpeed, acceleration);
+        this.desiredDirection = desiredDirection;
+        this.speed = speed;
+        this.positionOnStreet = positionOnStreet;
     }
 
     /**
@@ -48,12 +71,22 @@ public class Car implements ICar {
         return id;
     }
 
+    /**
+     * the getter method for the id of the street the car is on
+     * @return the id of the street the car is on, -1 if the car is not on a street
+     */
+    public int getStreetId() {
+        if (lane == null) return -1;
+        return lane.getStreetId();
+    }
+
     /**
      * the getter method for the position of the car on the street
      * @return the position of the car
      */
     public int getPosition() {
-        return positionOnStreet;
+        if (lane == null) return positionOnStreet;
+        return lane.getPosition(slot);
     }
 
     /**
@@ -61,18 +94,16 @@ public class Car implements ICar {
      * @param speedLimit the speed limit of the street the car is on
      */
     public void updateSpeed(int speedLimit) {
-        speed = Math.min(speed + acceleration, maxSpeed);
-        speed = Math.min(speed, speedLimit);
+        if (lane == null) speed = nextSpeed(speed, acceleration, maxSpeed, speedLimit);
+        else lane.updateSpeed(slot, speedLimit);
     }
 
     /**
      * the method for updating the desired direction of the car
      */
     public void updateDirection() {
-        desiredDirection++;
-        if (desiredDirection >= Main.MAX_EXIT_STREETS) {
-            desiredDirection = 0;
-        }
+        if (lane == null) desiredDirection = nextDirection(desiredDirection);
+        else lane.updateDirection(slot);
     }
 
     /**
@@ -80,7 +111,8 @@ public class Car implements ICar {
      * @param speed the value the speed is set to
      */
     public void setSpeed(int speed) {
-        this.speed = speed;
+        if (lane == null) this.speed = speed;
+        else lane.setSpeed(slot, speed);
     }
 
     /**
@@ -88,7 +120,24 @@ public class Car implements ICar {
      * @return the speed of the car
      */
     public int getSpeed() {
-        return speed;
+        if (lane == null) return speed;
+        return lane.getSpeed(slot);
+    }
+
+    /**
+     * the getter method for the maximum speed of the car
+     * @return the maximum speed of the car
+     */
+    public int getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * the getter method for the acceleration of the car
+     * @return the acceleration of the car
+     */
+    public int getAcceleration() {
+        return acceleration;
     }
 
     /**
@@ -96,7 +145,8 @@ public class Car implements ICar {
      * @return the desired direction of the car
      */
     public int getDesiredDirection() {
-        return desiredDirection;
+        if (lane == null) return desiredDirection;
+        return lane.getDesiredDirection(slot);
     }
 
     /**
@@ -104,22 +154,70 @@ public class Car implements ICar {
      * @param positionOnStreet the value the position is set to
      */
     public void setPositionOnStreet(int positionOnStreet) {
-        this.positionOnStreet = positionOnStreet;
+        if (lane == null) this.positionOnStreet = positionOnStreet;
+        else lane.setPosition(slot, positionOnStreet);
+    }
+
+    /**
+     * the setter method for the tick the car was last simulated in
+     * @param tick the tick the car is simulated in
+     */
+    public void setSimulatedTick(long tick) {
+        if (lane == null) this.simulatedTick = tick;
+        else lane.setSimulatedTick(slot, tick);
+    }
+
+    /**
+     * the getter method for the tick the car was last simulated in. A car is simulated in the current tick if the
+     * stamp equals the current tick, so the stamps never need to be reset
+     * @return the tick the car was simulated in, 0 if it never was
+     */
+    public long getSimulatedTick() {
+        if (lane == null) return simulatedTick;
+        return lane.getSimulatedTick(slot);
+    }
+
+    /**
+     * the method for adding the position of the car to the given collection
+     * @param positions the collection the position is added to
+     */
+    public void collectPosition(CarPositions positions) {
+        positions.reserve(1);
+        positions.add(id, getStreetId(), getSpeed(), getPosition());
     }
 
     /**
-     * the setter method for the simulated status of the car
-     * @param simulated the value the status is set to
+     * the method for making the car a view on the given slot of the given lane
+     * @param lane the lane the car is on
+     * @param slot the slot of the car in the lane
      */
-    public void setSimulated(boolean simulated) {
-        this.simulated = simulated;
+    void bind(Lane lane, int slot) {
+        this.lane = lane;
+        this.slot = slot;
     }
 
     /**
-     * the getter method for the variable simulated
-     * @return if the car is simulated for this tick or not
+     * the method for calculating the speed of a car after it accelerated
+     * @param speed the current speed of the car
+     * @param acceleration the acceleration of the car
+     * @param maxSpeed the maximum speed of the car
+     * @param speedLimit the speed limit of the street the car is on
+     * @return the new speed of the car
      */
-    public boolean isSimulated() {
-        return simulated;
+    static int nextSpeed(int speed, int acceleration, int maxSpeed, int speedLimit) {
+        return Math.min(Math.min(speed + acceleration, maxSpeed), speedLimit);
+    }
+
+    /**
+     * the method for calculating the desired direction of a car after it crossed
+     * @param desiredDirection the current desired direction of the car
+     * @return the new desired direction of the car
+     */
+    static int nextDirection(int desiredDirection) {
+        int direction = desiredDirection + 1;
+        if (direction >= Main.MAX_EXIT_STREETS) {
+            direction = 0;
+        }
+        return direction;
     }
 }
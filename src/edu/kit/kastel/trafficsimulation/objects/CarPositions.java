@@ -0,0 +1,131 @@
+package edu.kit.kastel.trafficsimulation.objects;
+
+import java.util.Arrays;
+
+/**
+ * The class for collecting the positions of many cars at once. The ids, streets, speeds and positions of the cars
+ * are kept in parallel primitive arrays, which grow when needed and are reused when the collection is cleared, so a
+ * caller polling the positions after every step does not allocate once the arrays are large enough
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class CarPositions {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ids;
+
+    private int[] streetIds;
+
+    private int[] speeds;
+
+    private int[] positions;
+
+    private int size;
+
+    /**
+     * Instantiates a new empty collection of positions
+     */
+    public CarPositions() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new empty collection of positions with room for the given number of cars
+     * @param capacity the number of cars that fit without growing
+     */
+    public CarPositions(int capacity) {
+        this.ids = new int[capacity];
+        this.streetIds = new int[capacity];
+        this.speeds = new int[capacity];
+        this.positions = new int[capacity];
+    }
+
+    /**
+     * The method for removing every collected position while keeping the arrays
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * the getter method for the number of collected cars
+     * @return the number of collected cars
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * the getter method for the id of the car at the given index
+     * @param index the index of the car in the collection
+     * @return the id of the car
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * the getter method for the id of the street the car at the given index is on
+     * @param index the index of the car in the collection
+     * @return the id of the street
+     */
+    public int getStreetId(int index) {
+        return streetIds[index];
+    }
+
+    /**
+     * the getter method for the speed of the car at the given index
+     * @param index the index of the car in the collection
+     * @return the speed of the car
+     */
+    public int getSpeed(int index) {
+        return speeds[index];
+    }
+
+    /**
+     * the getter method for the position of the car at the given index
+     * @param index the index of the car in the collection
+     * @return the position of the car
+     */
+    public int getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * The method for removing every position collected after the given number of cars while keeping the arrays
+     * @param size the number of cars that are kept
+     */
+    public void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * The method for making room for the given number of additional cars
+     * @param count the number of cars that are going to be added
+     */
+    public void reserve(int count) {
+        if (size + count <= ids.length) return;
+        final int capacity = Math.max(size + count, 2 * ids.length);
+        ids = Arrays.copyOf(ids, capacity);
+        streetIds = Arrays.copyOf(streetIds, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+    }
+
+    /**
+     * The method for adding a car, for which room was reserved before
+     * @param id the id of the car
+     * @param streetId the id of the street the car is on
+     * @param speed the speed of the car
+     * @param position the position of the car
+     */
+    public void add(int id, int streetId, int speed, int position) {
+        ids[size] = id;
+        streetIds[size] = streetId;
+        speeds[size] = speed;
+        positions[size] = position;
+        size++;
+    }
+}
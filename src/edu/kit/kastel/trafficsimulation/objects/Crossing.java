@@ -14,13 +14,15 @@ public class Crossing implements ICrossing {
     
     private final int id;
     
-    private final boolean trafficLight;
+    private boolean trafficLight;
 
-    private final int greenLightDuration;
+    private int greenLightDuration;
     
     private int greenLightPhase;
     
     private int remainingDuration;
+
+    private long stateTick;
     
     private int numberOfIncomingStreets;
     
@@ -96,15 +98,51 @@ public class Crossing implements ICrossing {
     }
 
     /**
-     * the method for determining if the cars on the street with the given id can cross or not
+     * the method for giving the ids of the exit streets for every desired direction, in which the missing exit
+     * streets are replaced in the same way as in {@link #getExitStreet(int)}
+     * @return the ids of the streets the cars exit on, indexed by their desired direction
+     */
+    public int[] giveExitStreets() {
+        final int[] exitStreetIds = new int[outgoingStreetIds.length];
+        for (int direction = 0; direction < exitStreetIds.length; direction++) {
+            exitStreetIds[direction] = getExitStreet(direction);
+        }
+        return exitStreetIds;
+    }
+
+    /**
+     * the method for determining if the cars on the street with the given id can cross or not. The phase of the
+     * green light is calculated for the given tick, so no update is needed in between
      * @param incomingStreetId the id of the street that is checked for
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
      * @return true, if the cars can cross; false, otherwise
      */
-    public boolean getLight(int incomingStreetId) {
+    public boolean getLight(int incomingStreetId, long tick) {
         if (!trafficLight) return true;
         else {
-            return incomingStreetIds[greenLightPhase] == incomingStreetId;
+            return incomingStreetIds[getPhase(tick)] == incomingStreetId;
+        }
+    }
+
+    /**
+     * the method for finding the first tick from the given one on in which the cars on the street with the given id
+     * can cross
+     * @param incomingStreetId the id of the street that is checked for
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
+     * @return the tick the green light shines for the street, {@value Long#MAX_VALUE} if it never does
+     */
+    public long getNextGreenTick(int incomingStreetId, long tick) {
+        if (!trafficLight) return tick;
+        int incomingPhase = 0;
+        while (incomingPhase < numberOfIncomingStreets && incomingStreetIds[incomingPhase] != incomingStreetId) {
+            incomingPhase++;
         }
+        if (incomingPhase == numberOfIncomingStreets) return Long.MAX_VALUE;
+        final int phase = getPhase(tick);
+        if (phase == incomingPhase) return tick;
+        // the current phase ends after its remaining duration, then every phase in between lasts a full duration
+        final int phasesBetween = Math.floorMod(incomingPhase - phase - 1, numberOfIncomingStreets);
+        return tick + getRemainingDuration(tick) + (long) phasesBetween * greenLightDuration;
     }
 
     /**
@@ -132,17 +170,88 @@ public class Crossing implements ICrossing {
     }
 
     /**
-     * the method for updating the crossing
+     * the getter method for the duration of the green light of the crossing
+     * @return the duration of the green light, 0 if there is no light
      */
-    public void update() {
-        if (greenLightDuration == 0) return; // if there is no light, also no need to update
-        remainingDuration--;
-        if (remainingDuration <= 0) { // if duration is 0 then change the street the green light is shining for
-            remainingDuration = greenLightDuration;
-            greenLightPhase++;
-            if (greenLightPhase >= numberOfIncomingStreets) { // if it was on the fourth go back to first
-                greenLightPhase = 0;
-            }
-        }
+    public int getGreenLightDuration() {
+        return greenLightDuration;
+    }
+
+    /**
+     * the getter method for the index of the entering street the green light is shining for
+     * @return the phase of the green light
+     */
+    public int getGreenLightPhase() {
+        return greenLightPhase;
+    }
+
+    /**
+     * the getter method for the ticks left until the green light switches to the next street
+     * @return the remaining duration of the green light
+     */
+    public int getRemainingDuration() {
+        return remainingDuration;
+    }
+
+    /**
+     * the method for bringing the state of the green light up to the given tick. The phase and remaining duration
+     * are calculated in one step, however many ticks passed since they were last brought up to date
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
+     */
+    public void advanceTo(long tick) {
+        if (!trafficLight) return; // if there is no light, also no need to update
+        final int phase = getPhase(tick);
+        remainingDuration = getRemainingDuration(tick);
+        greenLightPhase = phase;
+        stateTick = tick;
+    }
+
+    /**
+     * the method for setting the state of the green light, used only when a saved state is restored
+     * @param greenLightPhase the index of the entering street the green light is shining for
+     * @param remainingDuration the ticks left until the green light switches
+     */
+    public void setLightState(int greenLightPhase, int remainingDuration) {
+        this.greenLightPhase = greenLightPhase;
+        this.remainingDuration = remainingDuration;
+    }
+
+    /**
+     * the method for changing the duration of the green light from the given tick on. The green light keeps shining
+     * for the same street and starts a full phase of the new duration, a crossing without a light gets one that
+     * starts with its first entering street
+     * @param greenLightDuration the new duration of the green light, 0 means there is no light
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
+     */
+    public void setGreenLightDuration(int greenLightDuration, long tick) {
+        advanceTo(tick);
+        this.greenLightDuration = greenLightDuration;
+        this.trafficLight = greenLightDuration > 0;
+        if (!trafficLight) greenLightPhase = 0;
+        remainingDuration = greenLightDuration;
+        stateTick = tick;
+    }
+
+    /**
+     * The method for calculating the phase of the green light at the given tick. The remaining duration counts down
+     * by one every tick and the phase moves on to the next entering street whenever it reaches 0
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
+     * @return the index of the entering street the green light shines for
+     */
+    private int getPhase(long tick) {
+        if (tick == stateTick) return greenLightPhase;
+        final long elapsed = greenLightDuration - remainingDuration + tick - stateTick; // ticks since the phase began
+        final long phase = greenLightPhase + elapsed / greenLightDuration;
+        return (int) (phase % Math.max(1, numberOfIncomingStreets));
+    }
+
+    /**
+     * The method for calculating the remaining duration of the green light at the given tick
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
+     * @return the ticks left until the green light switches
+     */
+    private int getRemainingDuration(long tick) {
+        final long elapsed = greenLightDuration - remainingDuration + tick - stateTick;
+        return greenLightDuration - (int) (elapsed % greenLightDuration);
     }
 }
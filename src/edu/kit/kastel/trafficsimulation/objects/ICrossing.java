@@ -21,8 +21,9 @@ public interface ICrossing {
     void addExitStreet(int id);
 
     /**
-     * the method for updating the crossing
+     * the method for bringing the state of the green light up to the given tick
+     * @param tick the number of ticks simulated since the state of the simulation was loaded
      */
-    void update();
+    void advanceTo(long tick);
     
 }
@@ -0,0 +1,389 @@
+package edu.kit.kastel.trafficsimulation.objects;
+
+/**
+ * The class for modeling the cars on a street as a ring buffer that is ordered from the car ahead to the car behind.
+ * The order is kept across ticks, so the cars ahead of a car are its predecessors in the buffer.
+ * The state of the cars is stored in parallel primitive arrays, the {@link Car} objects are only views on a slot
+ * of these arrays
+ * 
+ * @author ufmkk
+ * @version 1.0
+ */
+final class Lane {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int streetId;
+
+    private Car[] cars;
+
+    private int[] ids;
+
+    private int[] positions;
+
+    private int[] speeds;
+
+    private int[] maxSpeeds;
+
+    private int[] accelerations;
+
+    private int[] desiredDirections;
+
+    private long[] simulatedTicks;
+
+    private int head;
+
+    private int size;
+
+    /**
+     * Instantiates a new empty lane
+     * @param streetId the id of the street the lane belongs to
+     */
+    Lane(int streetId) {
+        this.streetId = streetId;
+        allocate(INITIAL_CAPACITY);
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * the getter method for the id of the street the lane belongs to
+     * @return the id of the street
+     */
+    int getStreetId() {
+        return streetId;
+    }
+
+    /**
+     * the getter method for the number of cars on the lane
+     * @return the number of cars on the lane
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The method for getting the slot of the car at the given index, counted from the car ahead.
+     * The slot of a car only changes if it overtakes, is overtaken or the lane grows
+     * @param index the index of the car
+     * @return the slot of the car in the arrays
+     */
+    int slot(int index) {
+        return (head + index) & (ids.length - 1);
+    }
+
+    /**
+     * the getter method for the view of the car in the given slot
+     * @param slot the slot of the car
+     * @return the car in the given slot
+     */
+    Car getCar(int slot) {
+        return cars[slot];
+    }
+
+    /**
+     * the getter method for the id of the car in the given slot
+     * @param slot the slot of the car
+     * @return the id of the car
+     */
+    int getId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * the getter method for the position of the car in the given slot
+     * @param slot the slot of the car
+     * @return the position of the car
+     */
+    int getPosition(int slot) {
+        return positions[slot];
+    }
+
+    /**
+     * the setter method for the position of the car in the given slot
+     * @param slot the slot of the car
+     * @param position the value the position is set to
+     */
+    void setPosition(int slot, int position) {
+        positions[slot] = position;
+    }
+
+    /**
+     * the getter method for the speed of the car in the given slot
+     * @param slot the slot of the car
+     * @return the speed of the car
+     */
+    int getSpeed(int slot) {
+        return speeds[slot];
+    }
+
+    /**
+     * the setter method for the speed of the car in the given slot
+     * @param slot the slot of the car
+     * @param speed the value the speed is set to
+     */
+    void setSpeed(int slot, int speed) {
+        speeds[slot] = speed;
+    }
+
+    /**
+     * the getter method for the maximum speed of the car in the given slot
+     * @param slot the slot of the car
+     * @return the maximum speed of the car
+     */
+    int getMaxSpeed(int slot) {
+        return maxSpeeds[slot];
+    }
+
+    /**
+     * the getter method for the acceleration of the car in the given slot
+     * @param slot the slot of the car
+     * @return the acceleration of the car
+     */
+    int getAcceleration(int slot) {
+        return accelerations[slot];
+    }
+
+    /**
+     * the getter method for the desired direction of the car in the given slot
+     * @param slot the slot of the car
+     * @return the desired direction of the car
+     */
+    int getDesiredDirection(int slot) {
+        return desiredDirections[slot];
+    }
+
+    /**
+     * the getter method for the tick the car in the given slot was last simulated in
+     * @param slot the slot of the car
+     * @return the tick the car was simulated in, 0 if it never was
+     */
+    long getSimulatedTick(int slot) {
+        return simulatedTicks[slot];
+    }
+
+    /**
+     * the setter method for the tick the car in the given slot was last simulated in
+     * @param slot the slot of the car
+     * @param tick the tick the car is simulated in
+     */
+    void setSimulatedTick(int slot, long tick) {
+        simulatedTicks[slot] = tick;
+    }
+
+    /**
+     * the method for updating the speed of the car in the given slot
+     * @param slot the slot of the car
+     * @param speedLimit the speed limit of the street the car is on
+     */
+    void updateSpeed(int slot, int speedLimit) {
+        speeds[slot] = Car.nextSpeed(speeds[slot], accelerations[slot], maxSpeeds[slot], speedLimit);
+    }
+
+    /**
+     * the method for updating the desired direction of the car in the given slot
+     * @param slot the slot of the car
+     */
+    void updateDirection(int slot) {
+        desiredDirections[slot] = Car.nextDirection(desiredDirections[slot]);
+    }
+
+    /**
+     * The method for advancing every car of the lane by its speed for the given number of ticks
+     * @param ticks the number of ticks
+     * @return the number of cars that moved
+     */
+    int advance(int ticks) {
+        int moving = 0;
+        for (int index = 0; index < size; index++) {
+            final int slot = slot(index);
+            positions[slot] += speeds[slot] * ticks;
+            if (speeds[slot] != 0) moving++;
+        }
+        return moving;
+    }
+
+    /**
+     * The method for adding a car behind the last car of the lane. The state of the car is copied in to the lane
+     * and the car becomes a view on its new slot
+     * @param car the car that is added
+     */
+    void addLast(Car car) {
+        if (size == ids.length) grow();
+        final int slot = slot(size);
+        cars[slot] = car;
+        ids[slot] = car.getId();
+        positions[slot] = car.getPosition();
+        speeds[slot] = car.getSpeed();
+        maxSpeeds[slot] = car.getMaxSpeed();
+        accelerations[slot] = car.getAcceleration();
+        desiredDirections[slot] = car.getDesiredDirection();
+        simulatedTicks[slot] = car.getSimulatedTick();
+        size++;
+        car.bind(this, slot);
+    }
+
+    /**
+     * The method for removing the given number of cars from the front of the lane
+     * @param count the number of removed cars
+     */
+    void removeFirst(int count) {
+        for (int i = 0; i < count; i++) {
+            cars[slot(i)] = null;
+        }
+        head = slot(count);
+        size -= count;
+    }
+
+    /**
+     * The method for filling the empty lane with restored cars. The state of the cars is copied in bulk, column by
+     * column, and a new car is created as the view of every slot
+     * @param columns the ids, maximum speeds, accelerations, positions, speeds and desired directions of the cars,
+     *                each column holding one value per car from the car ahead to the car behind
+     * @param offset the index of the first id in the array
+     * @param count the number of cars
+     */
+    void restore(int[] columns, int offset, int count) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < count) capacity *= 2;
+        allocate(capacity);
+        System.arraycopy(columns, offset, ids, 0, count);
+        System.arraycopy(columns, offset + count, maxSpeeds, 0, count);
+        System.arraycopy(columns, offset + 2 * count, accelerations, 0, count);
+        System.arraycopy(columns, offset + 3 * count, positions, 0, count);
+        System.arraycopy(columns, offset + 4 * count, speeds, 0, count);
+        System.arraycopy(columns, offset + 5 * count, desiredDirections, 0, count);
+        for (int slot = 0; slot < count; slot++) {
+            cars[slot] = new Car(ids[slot], maxSpeeds[slot], accelerations[slot]);
+            cars[slot].bind(this, slot);
+        }
+        head = 0;
+        size = count;
+    }
+
+    /**
+     * The method for copying the cars and their state in to the given lane, which is only used as a copy
+     * @param copy the lane the cars are copied in to
+     */
+    void copyTo(Lane copy) {
+        copy.copyFrom(this);
+    }
+
+    /**
+     * The method for restoring the lane from the given copy, the cars of the copy become views on their slots again
+     * and every car added since is dropped
+     * @param copy the lane the cars were copied in to
+     */
+    void restoreFrom(Lane copy) {
+        copyFrom(copy);
+        for (int index = 0; index < size; index++) {
+            final int slot = slot(index);
+            cars[slot].bind(this, slot);
+        }
+    }
+
+    /**
+     * The method for swapping the car at the given index with the car ahead of it, used when a car overtakes
+     * @param index the index of the overtaking car
+     */
+    void swapWithPrevious(int index) {
+        final int slot = slot(index);
+        final int previousSlot = slot(index - 1);
+        swap(cars, slot, previousSlot);
+        swap(ids, slot, previousSlot);
+        swap(positions, slot, previousSlot);
+        swap(speeds, slot, previousSlot);
+        swap(maxSpeeds, slot, previousSlot);
+        swap(accelerations, slot, previousSlot);
+        swap(desiredDirections, slot, previousSlot);
+        final long tempSimulatedTick = simulatedTicks[slot];
+        simulatedTicks[slot] = simulatedTicks[previousSlot];
+        simulatedTicks[previousSlot] = tempSimulatedTick;
+        cars[slot].bind(this, slot);
+        cars[previousSlot].bind(this, previousSlot);
+    }
+
+    /**
+     * The method for copying the ids, speeds and positions of the cars in to the given array, one column after the
+     * other and each from the car ahead to the car behind. Every column is copied in bulk, in two parts if the cars
+     * wrap around the end of the arrays
+     * @param target the array, which has to have room for three values per car
+     * @param offset the index of the first copied value
+     * @return the index after the last copied value
+     */
+    int copyColumns(int[] target, int offset) {
+        copyColumn(ids, target, offset);
+        copyColumn(speeds, target, offset + size);
+        copyColumn(positions, target, offset + 2 * size);
+        return offset + 3 * size;
+    }
+
+    private void copyColumn(int[] column, int[] target, int offset) {
+        final int first = Math.min(size, column.length - head);
+        System.arraycopy(column, head, target, offset, first);
+        System.arraycopy(column, 0, target, offset + first, size - first);
+    }
+
+    private void copyFrom(Lane lane) {
+        if (ids.length != lane.ids.length) allocate(lane.ids.length);
+        System.arraycopy(lane.cars, 0, cars, 0, cars.length);
+        System.arraycopy(lane.ids, 0, ids, 0, ids.length);
+        System.arraycopy(lane.positions, 0, positions, 0, positions.length);
+        System.arraycopy(lane.speeds, 0, speeds, 0, speeds.length);
+        System.arraycopy(lane.maxSpeeds, 0, maxSpeeds, 0, maxSpeeds.length);
+        System.arraycopy(lane.accelerations, 0, accelerations, 0, accelerations.length);
+        System.arraycopy(lane.desiredDirections, 0, desiredDirections, 0, desiredDirections.length);
+        System.arraycopy(lane.simulatedTicks, 0, simulatedTicks, 0, simulatedTicks.length);
+        head = lane.head;
+        size = lane.size;
+    }
+
+    private void allocate(int capacity) {
+        cars = new Car[capacity];
+        ids = new int[capacity];
+        positions = new int[capacity];
+        speeds = new int[capacity];
+        maxSpeeds = new int[capacity];
+        accelerations = new int[capacity];
+        desiredDirections = new int[capacity];
+        simulatedTicks = new long[capacity];
+    }
+
+    private void grow() {
+        final Car[] oldCars = cars;
+        final int[] oldIds = ids;
+        final int[] oldPositions = positions;
+        final int[] oldSpeeds = speeds;
+        final int[] oldMaxSpeeds = maxSpeeds;
+        final int[] oldAccelerations = accelerations;
+        final int[] oldDesiredDirections = desiredDirections;
+        final long[] oldSimulatedTicks = simulatedTicks;
+        final int mask = oldIds.length - 1;
+        allocate(oldIds.length * 2);
+        for (int i = 0; i < size; i++) {
+            final int oldSlot = (head + i) & mask;
+            cars[i] = oldCars[oldSlot];
+            ids[i] = oldIds[oldSlot];
+            positions[i] = oldPositions[oldSlot];
+            speeds[i] = oldSpeeds[oldSlot];
+            maxSpeeds[i] = oldMaxSpeeds[oldSlot];
+            accelerations[i] = oldAccelerations[oldSlot];
+            desiredDirections[i] = oldDesiredDirections[oldSlot];
+            simulatedTicks[i] = oldSimulatedTicks[oldSlot];
+            cars[i].bind(this, i);
+        }
+        head = 0;
+    }
+
+    private static void swap(int[] array, int first, int second) {
+        final int temp = array[first];
+        array[first] = array[second];
+        array[second] = temp;
+    }
+
+    private static void swap(Car[] array, int first, int second) {
+        final Car temp = array[first];
+        array[first] = array[second];
+        array[second] = temp;
+    }
+}
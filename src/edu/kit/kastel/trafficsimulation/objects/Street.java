@@ -2,11 +2,9 @@ package edu.kit.kastel.trafficsimulation.objects;
 
 import edu.kit.kastel.trafficsimulation.Main;
 import edu.kit.kastel.trafficsimulation.Simulation;
+import edu.kit.kastel.trafficsimulation.SimulationMetrics;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.function.IntFunction;
 
 /**
  * The class for modeling the streets in the simulation
@@ -15,6 +13,22 @@ import java.util.ArrayList;
  * @version 1.0
  */
 public class Street implements IStreet {
+
+    /**
+     * The value returned by {@link #getFreeTicks(Simulation)} if the street never needs an update until a car enters it
+     */
+    public static final int ALWAYS_FREE = Integer.MAX_VALUE;
+
+    /**
+     * The number of values {@link #copyCars(int[])} copies per car, which are its id, speed and position
+     */
+    public static final int COPIED_CAR_VALUES = 3;
+    
+    private static final int NO_CAR = -1;
+    
+    private static final int NO_POSITION = -1;
+    
+    private static final int NO_STREET = -1;
     
     private boolean outsideLane;
     
@@ -26,9 +40,31 @@ public class Street implements IStreet {
     
     private final int endNodeId;
     
-    private final List<Car> cars = new ArrayList<>();
+    private final Lane cars;
+
+    private Crossing endCrossing;
+
+    private Street[] exitStreets;
+    
+    private int goneCars;
+    
+    private long updatedAheadTick;
     
-    private final List<Car> goneCars = new ArrayList<>();
+    private long enteredTick;
+    
+    private int lastPositionBeforeUpdate;
+
+    private int movedCars;
+
+    private int blockedCars;
+
+    private int failedCrossings;
+
+    private int overtakes;
+
+    private long crossedCars;
+
+    private boolean unrecordedChanges = true;
 
     /**
      * Instantiates a new street with the given parameters
@@ -46,6 +82,22 @@ public class Street implements IStreet {
         if (type == 1) this.outsideLane = false;
         else if (type == 2) this.outsideLane = true;
         this.speedLimit = speedLimit;
+        this.cars = new Lane(id);
+    }
+
+    /**
+     * The method for connecting the street to the crossing it ends at. The street keeps the crossing for its light
+     * and the streets its cars exit on for every desired direction, so a crossing car does not look either of them up
+     * @param crossing the crossing with the end node id of the street
+     * @param streets the function giving the street a car enters for the id of its exit street
+     */
+    public void connect(Crossing crossing, IntFunction<Street> streets) {
+        this.endCrossing = crossing;
+        final int[] exitStreetIds = crossing.giveExitStreets();
+        this.exitStreets = new Street[exitStreetIds.length];
+        for (int direction = 0; direction < exitStreetIds.length; direction++) {
+            exitStreets[direction] = streets.apply(exitStreetIds[direction]);
+        }
     }
 
     /**
@@ -53,7 +105,9 @@ public class Street implements IStreet {
      * @param car the car that is added
      */
     public void addCar(Car car) {
-        cars.add(car);
+        cars.addLast(car); // entering cars are always behind the last car of the street
+        enteredTick = car.getSimulatedTick(); // an entering car is simulated in the current tick
+        unrecordedChanges = true;
     }
 
     /**
@@ -65,7 +119,7 @@ public class Street implements IStreet {
         final int carPosition = length - Main.MINIMUM_DISTANCE * cars.size();
         if (carPosition < 0) return Main.ERROR + String.format("Only %d cars can fit in to street %d", cars.size(), id);
         car.setPositionOnStreet(carPosition);
-        cars.add(car);
+        cars.addLast(car);
         return null;
     }
 
@@ -75,10 +129,11 @@ public class Street implements IStreet {
      * @return the car, if it exists; null, otherwise
      */
     public Car findCar(int id) {
-        return cars.stream()
-            .filter(car -> car.getId() == id)
-            .findAny()
-            .orElse(null);
+        for (int index = 0; index < cars.size(); index++) {
+            final int slot = cars.slot(index);
+            if (cars.getId(slot) == id) return cars.getCar(slot);
+        }
+        return null;
     }
 
     /**
@@ -94,29 +149,137 @@ public class Street implements IStreet {
      *
      * @param simulation the {@link Simulation} the street is a part of
      */
-    public void update(final Simulation simulation) {                     
-        cars.sort(Collections.reverseOrder(Comparator.comparing(Car::getPosition))); 
-        // sorts the cars from ahead to behind as wanted in the assignment
-        for (Car car : cars) {
-            if (car.isSimulated()) continue;
-            car.updateSpeed(speedLimit);
-            int maxPos = car.getPosition() + car.getSpeed(); // maximum distance the car can go this tick
-            Car carAhead = getFirstCarAhead(car.getPosition());
-            if (maxPos > length && carAhead == null) changeStreet(car, maxPos - length, simulation);
+    public void update(final Simulation simulation) {
+        final long tick = currentTick(simulation);
+        // the lane keeps the cars ordered from ahead to behind as wanted in the assignment
+        for (int index = 0; index < cars.size(); index++) {
+            final int slot = cars.slot(index);
+            if (cars.getSimulatedTick(slot) == tick) continue; // the car entered from a street updated before
+            final int speed = cars.getSpeed(slot);
+            final int position = cars.getPosition(slot);
+            cars.updateSpeed(slot, speedLimit);
+            int maxPos = cars.getPosition(slot) + cars.getSpeed(slot); // maximum distance the car can go this tick
+            if (maxPos > length && getSlotAhead(index, 1) == NO_CAR) {
+                changeStreet(index, maxPos - length, simulation);
+            }
             // if the car does not reach the end of the street or has a car in front of it, then it cannot cross
-            else advanceCar(car, maxPos);
+            else advanceCar(index, maxPos);
+            // a car that kept its speed and drove on at it does what a recording predicts
+            if (cars.getSpeed(slot) != speed || cars.getPosition(slot) != position + speed) unrecordedChanges = true;
+        }
+        cars.removeFirst(goneCars); // only the cars at the front can leave the street
+        goneCars = 0;
+        final SimulationMetrics metrics = simulation.getMetrics();
+        if (metrics != null) metrics.addStreetEvents(movedCars, blockedCars, failedCrossings, overtakes);
+        movedCars = 0;
+        blockedCars = 0;
+        failedCrossings = 0;
+        overtakes = 0;
+    }
+
+    /**
+     * The method for updating the street ahead of its turn in the first phase of a parallel tick. This is only done
+     * if no car can reach the end of the street this tick, because then the update does not depend on other streets
+     *
+     * @param simulation the {@link Simulation} the street is a part of
+     * @return true, if the street was updated; false, if it has to be updated in its turn
+     */
+    public boolean updateAhead(final Simulation simulation) {
+        if (cars.size() > 0) {
+            final int slot = cars.slot(0);
+            final int speed = Car.nextSpeed(cars.getSpeed(slot), cars.getAcceleration(slot), cars.getMaxSpeed(slot),
+                speedLimit);
+            if (cars.getPosition(slot) + speed > length) return false; // the first car may leave the street
+        }
+        final int lastSlot = getLastSlot();
+        // streets with a lower id have to see the last car where it was before the update, as if this street
+        // was updated in its turn
+        lastPositionBeforeUpdate = lastSlot == NO_CAR ? NO_POSITION : cars.getPosition(lastSlot);
+        updatedAheadTick = currentTick(simulation);
+        update(simulation);
+        return true;
+    }
+
+    /**
+     * The method for checking if the street was updated in the first phase of the current tick
+     * @param simulation the {@link Simulation} the street is a part of
+     * @return true, if the street was updated ahead of its turn; false, otherwise
+     */
+    public boolean isUpdatedAhead(final Simulation simulation) {
+        return updatedAheadTick == currentTick(simulation);
+    }
+
+    /**
+     * The method for counting the next ticks in which every car on the street only drives on at its speed. That is
+     * the case while no car changes its speed, the first car does not reach the end of the street and no car gets
+     * closer than {@value Main#MINIMUM_DISTANCE}m to the car ahead, as long as no car enters the street. It is also
+     * the case while every car waits in the queue in front of the red light at the end of the street
+     * @param simulation the simulation the street is a part of
+     * @return the number of ticks, or {@value #ALWAYS_FREE} if there is no limit
+     */
+    public int getFreeTicks(final Simulation simulation) {
+        int freeTicks = ALWAYS_FREE;
+        int positionAhead = 0;
+        int speedAhead = 0;
+        for (int index = 0; index < cars.size(); index++) {
+            final int slot = cars.slot(index);
+            final int position = cars.getPosition(slot);
+            final int speed = cars.getSpeed(slot);
+            if (Car.nextSpeed(speed, cars.getAcceleration(slot), cars.getMaxSpeed(slot), speedLimit) != speed) {
+                // the first car waiting at the end of the street only speeds up once it can cross
+                return index == 0 && position == length ? getQueuedTicks(simulation) : 0;
+            }
+            if (index == 0) {
+                if (speed > 0) freeTicks = (length - position) / speed;
+            } else if (speed > speedAhead) {
+                // the gap shrinks by the difference of the speeds every tick
+                freeTicks = Math.min(freeTicks,
+                    (positionAhead - position - Main.MINIMUM_DISTANCE) / (speed - speedAhead));
+            }
+            if (freeTicks == 0) return 0;
+            positionAhead = position;
+            speedAhead = speed;
         }
-        cars.removeAll(goneCars);
-        goneCars.clear();
+        return freeTicks;
     }
 
     /**
-     * The method for resetting the simulated status of the cars
+     * The method for counting the next ticks in which the cars on the street stand still in a queue in front of the
+     * red light at its end, each {@value Main#MINIMUM_DISTANCE}m behind the car ahead. None of them can move until
+     * the light turns green for the street
+     * @param simulation the simulation the street is a part of
+     * @return the number of ticks, or 0 if the cars are not queued or the light is green
      */
-    public void resetSimulated() {
-        for (Car car : cars) {
-            car.setSimulated(false);
+    private int getQueuedTicks(final Simulation simulation) {
+        if (cars.size() == 0) return 0;
+        int positionAhead = length + Main.MINIMUM_DISTANCE; // the first car waits at the end of the street
+        for (int index = 0; index < cars.size(); index++) {
+            final int slot = cars.slot(index);
+            final int position = cars.getPosition(slot);
+            if (cars.getSpeed(slot) != 0 || position != positionAhead - Main.MINIMUM_DISTANCE) return 0;
+            positionAhead = position;
         }
+        final long tick = simulation.getTick();
+        final long greenTick = endCrossing.getNextGreenTick(id, tick);
+        return (int) Math.min(greenTick - tick, ALWAYS_FREE - 1);
+    }
+
+    /**
+     * The method for advancing every car on the street by its speed for the given number of ticks, which cannot be
+     * more than {@link #getFreeTicks(Simulation)} returned before
+     * @param ticks the number of ticks
+     * @return the number of times a car moved
+     */
+    public long advanceFreely(int ticks) {
+        return (long) cars.advance(ticks) * ticks;
+    }
+
+    /**
+     * the getter method for the id of the crossing the street ends at
+     * @return the id of the end crossing
+     */
+    public int getEndNodeId() {
+        return endNodeId;
     }
 
     /**
@@ -128,77 +291,306 @@ public class Street implements IStreet {
     }
 
     /**
-     * The method for getting the first car ahead of the given position
-     * @param position the start position
-     * @return the first car ahead
+     * the getter method for the type of the street
+     * @return 2, if the street has an outside lane for overtaking; 1, otherwise
+     */
+    public int getType() {
+        return outsideLane ? 2 : 1;
+    }
+
+    /**
+     * the getter method for the speed limit of the street
+     * @return the speed limit of the street
      */
-    private Car getFirstCarAhead(int position) {
-        return cars.stream()
-            .filter(tempCar -> tempCar.getPosition() > position && !goneCars.contains(tempCar))
-            .min(Comparator.comparing(Car::getPosition))
-            .orElse(null);
+    public int getSpeedLimit() {
+        return speedLimit;
+    }
+
+    /**
+     * the getter method for the number of cars on the street
+     * @return the number of cars on the street
+     */
+    public int getNumberOfCars() {
+        return cars.size();
+    }
+
+    /**
+     * The method for getting the car at the given index, counted from the car ahead
+     * @param index the index of the car
+     * @return the car at the given index
+     */
+    public Car getCar(int index) {
+        return cars.getCar(cars.slot(index));
+    }
+
+    /**
+     * The method for summing up the speeds of the cars on the street
+     * @return the sum of the speeds
+     */
+    public int getSpeedSum() {
+        int speedSum = 0;
+        for (int index = 0; index < cars.size(); index++) {
+            speedSum += cars.getSpeed(cars.slot(index));
+        }
+        return speedSum;
+    }
+
+    /**
+     * The method for counting the cars that wait in the queue in front of the red light at the end of the street.
+     * Only standing cars are counted, so the positions of a sleeping street are up to date for them
+     * @param simulation the simulation the street is a part of
+     * @return the number of cars in the queue, 0 if the light is green
+     */
+    public int getQueueLength(final Simulation simulation) {
+        if (endCrossing.getLight(id, simulation.getTick())) return 0;
+        int positionAhead = length + Main.MINIMUM_DISTANCE;
+        int queued = 0;
+        while (queued < cars.size()) {
+            final int slot = cars.slot(queued);
+            if (cars.getSpeed(slot) != 0 || cars.getPosition(slot) != positionAhead - Main.MINIMUM_DISTANCE) break;
+            positionAhead = cars.getPosition(slot);
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * the getter method for the number of cars that crossed to another street
+     * @return the number of cars that left the street since it was created
+     */
+    public long getCrossedCars() {
+        return crossedCars;
+    }
+
+    /**
+     * The method for adding the positions of the cars on the street whose ids are in the given range, from the car
+     * ahead to the car behind
+     * @param positions the collection the positions are added to
+     * @param minCarId the lowest id of a car that is added
+     * @param maxCarId the highest id of a car that is added
+     */
+    public void collectPositions(CarPositions positions, int minCarId, int maxCarId) {
+        final int count = cars.size();
+        positions.reserve(count);
+        for (int index = 0; index < count; index++) {
+            final int slot = cars.slot(index);
+            final int carId = cars.getId(slot);
+            if (carId >= minCarId && carId <= maxCarId) {
+                positions.add(carId, id, cars.getSpeed(slot), cars.getPosition(slot));
+            }
+        }
+    }
+
+    /**
+     * The method for recording the cars on the street in to the given array: the id of the street and the number of
+     * cars, followed by the columns of the ids, speeds and positions of the cars from the car ahead to the car behind
+     * @param target the array, which has to have room for {@link #getRecordedValues()} values
+     * @param offset the index of the first recorded value
+     * @return the index after the last recorded value
+     */
+    public int recordCars(int[] target, int offset) {
+        target[offset] = id;
+        target[offset + 1] = cars.size();
+        unrecordedChanges = false;
+        return cars.copyColumns(target, offset + 2);
+    }
+
+    /**
+     * The method for checking if the cars on the street changed since they were recorded last in a way a recording
+     * cannot predict: a car changed its speed, did not drive on at its speed, overtook, left or entered the street.
+     * The update, the advance and the crossing of a car check this, so a street whose cars only drove on at their
+     * speeds does not have to be recorded, just like a sleeping one
+     * @return true, if the street changed or was never recorded; false, otherwise
+     */
+    public boolean hasUnrecordedChanges() {
+        return unrecordedChanges;
+    }
+
+    /**
+     * the getter method for the number of values {@link #recordCars(int[], int)} copies in to the array
+     * @return the number of recorded values
+     */
+    public int getRecordedValues() {
+        return 2 + COPIED_CAR_VALUES * cars.size();
+    }
+
+    /**
+     * The method for copying the cars on the street in to the given array. The first value is the number of cars,
+     * followed by {@value #COPIED_CAR_VALUES} values per car from the car ahead to the car behind: its id, speed and
+     * position
+     * @param values the array the values are copied in to
+     * @return the given array, or a larger one if the values do not fit in to it
+     */
+    public int[] copyCars(int[] values) {
+        final int count = cars.size();
+        final int capacity = (values.length - 1) / COPIED_CAR_VALUES;
+        final int[] copy = capacity >= count ? values : new int[1 + Math.max(count, 2 * capacity) * COPIED_CAR_VALUES];
+        copy[0] = count;
+        for (int index = 0; index < count; index++) {
+            final int slot = cars.slot(index);
+            final int value = 1 + index * COPIED_CAR_VALUES;
+            copy[value] = cars.getId(slot);
+            copy[value + 1] = cars.getSpeed(slot);
+            copy[value + 2] = cars.getPosition(slot);
+        }
+        return copy;
+    }
+
+    /**
+     * The method for putting the cars of a saved state on the empty street
+     * @param columns the ids, maximum speeds, accelerations, positions, speeds and desired directions of the cars,
+     *                each column holding one value per car from the car ahead to the car behind
+     * @param offset the index of the first id in the array
+     * @param count the number of cars
+     */
+    public void restoreCars(int[] columns, int offset, int count) {
+        cars.restore(columns, offset, count);
+        unrecordedChanges = true;
+    }
+
+    /**
+     * The method for keeping a copy of the street between two updates in the given copy
+     * @param kept the copy, which can be reused for any street
+     */
+    public void keep(Kept kept) {
+        cars.copyTo(kept.cars);
+        kept.enteredTick = enteredTick;
+        kept.crossedCars = crossedCars;
+    }
+
+    /**
+     * The method for restoring the street from the given copy, dropping every update and entered car since it was
+     * kept
+     * @param kept the copy of the street
+     */
+    public void restore(Kept kept) {
+        cars.restoreFrom(kept.cars);
+        enteredTick = kept.enteredTick;
+        crossedCars = kept.crossedCars;
+        unrecordedChanges = true;
+    }
+
+    /**
+     * The method for getting the slot of a car ahead of the car at the given index, ignoring the cars that left
+     * the street
+     * @param index the index of the car
+     * @param distance 1 for the first car ahead, 2 for the second car ahead
+     * @return the slot of the car ahead, if there is one; -1, otherwise
+     */
+    private int getSlotAhead(int index, int distance) {
+        if (index - distance < goneCars) return NO_CAR;
+        return cars.slot(index - distance);
+    }
+
+    /**
+     * The method for getting the slot of the last car on the street, which is the first car ahead of an entering car
+     * @return the slot of the last car, if there is one; -1, otherwise
+     */
+    private int getLastSlot() {
+        if (cars.size() <= goneCars) return NO_CAR;
+        return cars.slot(cars.size() - 1);
+    }
+
+    /**
+     * The method for getting the position of the first car ahead of a car entering from the given street
+     * @param sourceStreetId the id of the street the car comes from
+     * @param simulation the simulation the street is a part of
+     * @return the position of the first car ahead, if there is one; -1, otherwise
+     */
+    private int getEntryPosition(int sourceStreetId, final Simulation simulation) {
+        final long tick = currentTick(simulation);
+        if (updatedAheadTick == tick && enteredTick != tick && sourceStreetId < id) return lastPositionBeforeUpdate;
+        // after the first entering car, it is the last car in every case
+        final int lastSlot = getLastSlot();
+        if (lastSlot == NO_CAR) return NO_POSITION;
+        return cars.getPosition(lastSlot);
     }
 
     /**
      * The method for checking if a car can cross streets and will be at which position after it crosses streets
-     * @param car the car the method is checking for
+     * @param index the index of the car the method is checking for
      * @param maxPos the maximum position the car can go this tick
      * @param simulation the simulation the car is a part of
      */
-    private void changeStreet(Car car, int maxPos, final Simulation simulation) {
-        int tempPos = maxPos;
-        Crossing endCrossing = simulation.findCrossing(endNodeId);
-        if (!endCrossing.getLight(id)) { // if red light car cannot cross
-            advanceCar(car, length);
+    private void changeStreet(int index, int maxPos, final Simulation simulation) {
+        final int slot = cars.slot(index);
+        if (!endCrossing.getLight(id, simulation.getTick())) { // if red light car cannot cross
+            blockedCars++;
+            advanceCar(index, length);
             return;
         }
-        Street targetStreet = simulation.findStreet(endCrossing.getExitStreet(car.getDesiredDirection()));
-        Car firstCar = targetStreet.getFirstCarAhead(Main.STREET_START_POS - 1);
-        if (firstCar == null) tempPos = Math.min(tempPos, targetStreet.getLength());
-        // if there are no cars in the target street then the car can cross and can go until the end of the street
-        // or until it reaches it's maximum position this tick
-        else tempPos = Math.min(tempPos, firstCar.getPosition() - Main.MINIMUM_DISTANCE);
-        // if there is a car the crossing car can go until it reaches 10 meters behind it or until it's maximum position
-        if (tempPos < 0) { 
+        final boolean waiting = cars.getPosition(slot) == length;
+        final Street target = exitStreets[cars.getDesiredDirection(slot)];
+        simulation.wakeUp(target.id, id);
+        if (!target.enter(cars.getCar(slot), id, maxPos, waiting, simulation)) {
             // if there is not enough room in the target street behind the first car then the car cannot cross
-            advanceCar(car, length);
+            failedCrossings++;
+            advanceCar(index, length);
             return;
         }
+        goneCars++;
+        movedCars++;
+        crossedCars++;
+        unrecordedChanges = true;
+    }
+
+    /**
+     * The method for letting a crossing car enter the street behind its last car, if there is room for it
+     * @param car the car, which is brought in to the state it enters the street with
+     * @param sourceStreetId the id of the street the car leaves
+     * @param maxPos the maximum position the car can go on the street this tick
+     * @param waiting true, if the car waits at the end of the street it leaves
+     * @param simulation the simulation the street is a part of
+     * @return true, if the car entered the street; false, if there is no room for it
+     */
+    public boolean enter(Car car, int sourceStreetId, int maxPos, boolean waiting, final Simulation simulation) {
+        int tempPos = maxPos;
+        int firstCarPos = getEntryPosition(sourceStreetId, simulation);
+        if (firstCarPos == NO_POSITION) tempPos = Math.min(tempPos, length);
+        // if there are no cars in the street then the car can cross and can go until the end of the street
+        // or until it reaches it's maximum position this tick
+        else tempPos = Math.min(tempPos, firstCarPos - Main.MINIMUM_DISTANCE);
+        // if there is a car the crossing car can go until it reaches 10 meters behind it or until it's maximum position
+        if (tempPos < 0) return false;
         // the car can cross
-        if (car.getPosition() == length && tempPos == 0) car.setSpeed(Main.STOP_SPEED);
+        if (waiting && tempPos == 0) car.setSpeed(Main.STOP_SPEED);
         // if the car only crossed and has not moved in either streets, that means it is idling and should have 0 speed
         car.updateDirection();
-        car.setSimulated(true); // set the simulates status to true so that the car is nt advanced again this tick
+        // stamp the car with the current tick so that it is not advanced again this tick
+        car.setSimulatedTick(currentTick(simulation));
         car.setPositionOnStreet(tempPos);
-        targetStreet.addCar(car);
-        goneCars.add(car);
+        addCar(car); // copies the state of the car in to the lane of the street
+        return true;
     }
 
     /**
      * The method for advancing the car on the street if it cannot cross to the other street
-     * @param car the car the method is checking for
+     * @param index the index of the car the method is checking for
      * @param maxPos the maximum position the car can go this tick
      */
-    private void advanceCar(Car car, int maxPos) {
+    private void advanceCar(int index, int maxPos) {
+        final int slot = cars.slot(index);
+        final int position = cars.getPosition(slot);
         int tempPos = Math.min(length, maxPos);
         boolean overtake = true;
-        Car carAhead = getFirstCarAhead(car.getPosition());
-        if (carAhead == null) { 
+        int carAheadSlot = getSlotAhead(index, 1);
+        if (carAheadSlot == NO_CAR) { 
             // if there are no cars ahead, the car can go until the end of the street or until it's maximum position
-            if (tempPos == car.getPosition()) car.setSpeed(Main.STOP_SPEED);
-            car.setPositionOnStreet(tempPos);
+            if (tempPos == position) cars.setSpeed(slot, Main.STOP_SPEED);
+            else movedCars++;
+            cars.setPosition(slot, tempPos);
             return;
         }
         if (!outsideLane) overtake = false; // if there are no outside lanes, the car cannot overtake
-        int firstCarAheadPos = carAhead.getPosition();
+        int firstCarAheadPos = cars.getPosition(carAheadSlot);
         if (tempPos - firstCarAheadPos < Main.MINIMUM_DISTANCE) overtake = false;
         // if the car cannot go far enough the first car ahead, then it cannot overtake
-        Car secondCarAhead = getFirstCarAhead(firstCarAheadPos);
+        int secondCarAheadSlot = getSlotAhead(index, 2);
         int secondCarAheadPos;
-        if (secondCarAhead == null) secondCarAheadPos = length + Main.MINIMUM_DISTANCE;
+        if (secondCarAheadSlot == NO_CAR) secondCarAheadPos = length + Main.MINIMUM_DISTANCE;
         // if there are only one car ahead the second car is basically length + 10m so that the end of the street
         // is the last valid place for the car being advanced
-        else secondCarAheadPos = secondCarAhead.getPosition();
+        else secondCarAheadPos = cars.getPosition(secondCarAheadSlot);
         if (secondCarAheadPos - firstCarAheadPos < Main.MINIMUM_DISTANCE * 2) overtake = false;
         // if there are not enough distance between the cars ahead or 
         // after the first car until the end of the street the car being advanced cannot overtake
@@ -210,7 +602,35 @@ public class Street implements IStreet {
             tempPos = Math.min(maxPos, secondCarAheadPos - Main.MINIMUM_DISTANCE);
             // if the car can overtake it can go until it's maximum position or 10m behind the second car ahead
         }
-        if (tempPos == car.getPosition()) car.setSpeed(Main.STOP_SPEED);
-        car.setPositionOnStreet(tempPos);
+        if (tempPos == position) cars.setSpeed(slot, Main.STOP_SPEED);
+        else movedCars++;
+        cars.setPosition(slot, tempPos);
+        if (overtake) {
+            cars.swapWithPrevious(index); // the overtaken car is now the first car behind the advanced car
+            overtakes++;
+            unrecordedChanges = true;
+        }
+    }
+
+    /**
+     * The method for getting the number of the current tick, which the cars and the street are stamped with. The
+     * ticks are counted from 1, so the stamp 0 of a new car never matches
+     * @param simulation the simulation the street is a part of
+     * @return the number of the current tick
+     */
+    private static long currentTick(final Simulation simulation) {
+        return simulation.getTick() + 1;
+    }
+
+    /**
+     * A copy of the cars of a street and of the counters that change when its cars are updated or a car enters it
+     */
+    public static final class Kept {
+
+        private final Lane cars = new Lane(NO_STREET);
+
+        private long enteredTick;
+
+        private long crossedCars;
     }
 }
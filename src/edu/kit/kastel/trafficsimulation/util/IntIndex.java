@@ -0,0 +1,125 @@
+package edu.kit.kastel.trafficsimulation.util;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash index from primitive int ids to objects. Lookups neither box the id nor allocate,
+ * which makes it usable on the hot paths of the simulation
+ *
+ * @param <T> the type of the indexed objects
+ * @author ufmkk
+ * @version 1.0
+ */
+public final class IntIndex<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private int[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    /**
+     * Instantiates a new empty index
+     */
+    public IntIndex() {
+        this(0);
+    }
+
+    /**
+     * Instantiates a new empty index that can hold the given number of objects without growing
+     * @param expectedSize the expected number of objects
+     */
+    public IntIndex(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2L) capacity *= 2;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * The method for finding the object with the given id
+     *
+     * @param id the given id
+     * @return the object with the given id, if it does exist; null, if it does not
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        final int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == id) return (T) values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * The method for adding the object with the given id, replacing the previous one if there was any
+     *
+     * @param id the id of the object
+     * @param value the object, cannot be null
+     */
+    public void put(int id, T value) {
+        if ((size + 1) * 2 > keys.length) grow();
+        final int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == id) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * the getter method for the number of objects in the index
+     * @return the number of objects in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The method for removing every object from the index
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void grow() {
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                insertNew(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void insertNew(int id, Object value) {
+        final int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (values[slot] != null) slot = (slot + 1) & mask;
+        keys[slot] = id;
+        values[slot] = value;
+        size++;
+    }
+
+    private static int hash(int id) {
+        final int mixed = id * HASH_MULTIPLIER;
+        return mixed ^ (mixed >>> 16);
+    }
+}
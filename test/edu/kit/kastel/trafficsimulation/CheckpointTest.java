@@ -0,0 +1,87 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests rolling the simulation back to its checkpoints against a simulation that simply ran up to the tick of the
+ * checkpoint
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class CheckpointTest {
+
+    private static final String FOLDER = "files/trafficjam";
+
+    private static final int INTERVAL = 10;
+
+    @TempDir
+    Path folder;
+
+    private Simulation simulation;
+
+    private Path log;
+
+    @BeforeEach
+    void runWithCheckpoints() throws IOException {
+        simulation = new Simulation();
+        assertEquals(Main.READY, simulation.load(FOLDER));
+        log = folder.resolve("checkpoints.log");
+        assertEquals(Main.READY, simulation.startCheckpoints(log.toString(), INTERVAL));
+        assertEquals(Main.READY, simulation.update(95));
+    }
+
+    @Test
+    void rollbackRestoresTheCheckpointedState() throws IOException {
+        for (long tick : new long[] {90, 40, 0}) {
+            assertEquals(Main.READY, simulation.rollback(tick));
+            assertEquals(PositionsOf.every(runTo(tick)), PositionsOf.every(simulation), "rollback to " + tick);
+            // the checkpoint of the tick itself is kept
+            assertEquals(Main.READY, simulation.rollback(tick));
+            assertEquals(PositionsOf.every(runTo(tick)), PositionsOf.every(simulation), "rollback to " + tick);
+        }
+    }
+
+    @Test
+    void rolledBackSimulationContinuesLikeTheOriginal() throws IOException {
+        assertEquals(Main.READY, simulation.rollback(50));
+        assertEquals(Main.READY, simulation.update(45));
+        assertEquals(PositionsOf.every(runTo(95)), PositionsOf.every(simulation));
+        // the checkpoints are written again from the tick rolled back to
+        assertEquals(Main.READY, simulation.rollback(80));
+        assertEquals(PositionsOf.every(runTo(80)), PositionsOf.every(simulation));
+    }
+
+    @Test
+    void laterCheckpointsAreRemoved() {
+        assertEquals(Main.READY, simulation.rollback(30));
+        assertEquals(Main.ERROR + "No checkpoint exists for the given tick", simulation.rollback(40));
+    }
+
+    @Test
+    void rejectsTicksWithoutCheckpoint() {
+        assertEquals(Main.ERROR + "No checkpoint exists for the given tick", simulation.rollback(35));
+        assertEquals(Main.ERROR + "No checkpoint exists for the given tick", simulation.rollback(100));
+    }
+
+    @Test
+    void rejectsRollbackWithoutLog() throws IOException {
+        final Simulation withoutLog = new Simulation();
+        assertEquals(Main.READY, withoutLog.load(FOLDER));
+        assertEquals(Main.ERROR + "No checkpoint log exists", withoutLog.rollback(0));
+    }
+
+    private static Simulation runTo(long tick) throws IOException {
+        final Simulation reference = new Simulation();
+        assertEquals(Main.READY, reference.load(FOLDER));
+        assertEquals(Main.READY, reference.update((int) tick));
+        return reference;
+    }
+}
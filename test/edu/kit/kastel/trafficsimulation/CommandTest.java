@@ -0,0 +1,49 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the output of the position commands
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class CommandTest {
+
+    private static final String NOTHING_LOADED = Main.ERROR + "Nothing is loaded right now";
+
+    @Test
+    void positionsOfAStreet() throws IOException {
+        final Simulation simulation = new Simulation();
+        assertEquals(Main.READY, Command.executeCommand("load files/basic", simulation));
+        assertEquals("Car 0 on street 0 with speed 0 and position 40",
+            Command.executeCommand("positions street 0", simulation));
+        assertEquals(Main.ERROR + "No such street exists", Command.executeCommand("positions street 2", simulation));
+    }
+
+    @Test
+    void emptyResultsAreExplicit(@TempDir Path folder) throws IOException {
+        Files.writeString(folder.resolve("crossings.sim"), "0:0t\n1:0t\n");
+        Files.writeString(folder.resolve("streets.sim"), "0-->1:40m,1x,15max\n1-->0:60m,1x,35max\n");
+        Files.writeString(folder.resolve("cars.sim"), "0,0,40,5\n");
+        final Simulation simulation = new Simulation();
+        assertEquals(Main.READY, Command.executeCommand("load " + folder, simulation));
+        assertEquals(Command.NO_CARS, Command.executeCommand("positions street 1", simulation));
+        assertEquals(Command.NO_CARS, Command.executeCommand("positions 5-9", simulation));
+    }
+
+    @Test
+    void positionsBeforeLoading() throws IOException {
+        final Simulation simulation = new Simulation();
+        assertEquals(NOTHING_LOADED, Command.executeCommand("positions street 0", simulation));
+        assertEquals(NOTHING_LOADED, Command.executeCommand("positions all", simulation));
+        assertEquals(NOTHING_LOADED, Command.executeCommand("positions 0-3", simulation));
+    }
+}
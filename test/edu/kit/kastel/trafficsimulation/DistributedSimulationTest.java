@@ -0,0 +1,117 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.ScenarioGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the distributed mode only spreads the work: a simulation advanced in several worker processes has to
+ * reach the same state as one advanced in a single process
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class DistributedSimulationTest {
+
+    private static final int[] STEPS = {1, 7, 50, 300};
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files/advanced2", "files/dense", "files/trafficjam"})
+    void workersMatchASingleProcess(String folder) throws IOException {
+        assertSameSteps(folder, 2);
+        assertSameSteps(folder, 3);
+    }
+
+    @Test
+    void aWorkerPerStreetMatchesASingleProcess() throws IOException {
+        assertSameSteps("files/basic", 2);
+    }
+
+    @Test
+    void workersMatchASingleProcessOnAGrid(@TempDir Path folder) throws IOException {
+        // the cars crossing between the parts wake up sleeping streets ahead of the turn of the worker they leave
+        try (ScenarioGenerator generator = new ScenarioGenerator(folder, 0.08, 1)) {
+            generator.writeGrid(80, true);
+        }
+        assertSameSteps(folder.toString(), 3);
+    }
+
+    @Test
+    void changedLightsReachTheWorkers() throws IOException {
+        final Simulation single = load("files/advanced");
+        final Simulation distributed = load("files/advanced");
+        assertTrue(distributed.distribute(2).startsWith("Distributed to 2 processes"));
+        try {
+            for (int step = 0; step < 10; step++) {
+                for (Simulation simulation : new Simulation[] {single, distributed}) {
+                    assertEquals(Main.READY, simulation.update(37));
+                    assertEquals(Main.READY, simulation.setGreenLightDuration(step % 5, 3 + step % 8));
+                }
+                assertEquals(PositionsOf.every(single), PositionsOf.every(distributed), "after step " + step);
+            }
+        }   finally {
+            distributed.quit();
+        }
+    }
+
+    @Test
+    void onlyAPlainSimulationIsDistributed(@TempDir Path folder) throws IOException {
+        final Simulation simulation = load("files/basic");
+        assertTrue(simulation.distribute(2).startsWith("Distributed to 2 processes"));
+        try {
+            assertEquals(Main.READY, simulation.startRecording(folder.resolve("trajectories").toString()));
+            assertTrue(simulation.update(5).startsWith(Main.ERROR));
+            assertEquals(Main.READY, simulation.stopRecording());
+            assertEquals(Main.READY, simulation.update(5));
+            assertEquals(Main.READY, simulation.stopDistribution());
+            assertTrue(simulation.stopDistribution().startsWith(Main.ERROR));
+        }   finally {
+            simulation.quit();
+        }
+    }
+
+    @Test
+    void noMorePartsOrProcessesThanStreets() throws IOException {
+        final Simulation simulation = load("files/basic"); // 2 streets
+        assertTrue(simulation.partition(3).startsWith(Main.ERROR));
+        assertTrue(simulation.partition(2_000_000_000).startsWith(Main.ERROR));
+        assertTrue(simulation.partition(2).startsWith("Partitioned in to 2 parts"));
+        assertTrue(simulation.distribute(3).startsWith(Main.ERROR));
+        assertTrue(simulation.distribute(Main.MAXIMUM_PROCESSES + 1).startsWith(Main.ERROR));
+        assertTrue(simulation.distribute(100_000).startsWith(Main.ERROR));
+        assertTrue(simulation.stopDistribution().startsWith(Main.ERROR)); // no worker was started
+    }
+
+    private static void assertSameSteps(String folder, int processes) throws IOException {
+        final Simulation single = load(folder);
+        final Simulation distributed = load(folder);
+        assertTrue(distributed.distribute(processes).startsWith("Distributed to " + processes + " processes"));
+        try {
+            long tick = 0;
+            for (int ticks : STEPS) {
+                assertEquals(Main.READY, single.update(ticks));
+                assertEquals(Main.READY, distributed.update(ticks));
+                tick += ticks;
+                assertEquals(PositionsOf.every(single), PositionsOf.every(distributed), "after tick " + tick);
+                assertArrayEquals(single.captureState(), distributed.captureState(), "after tick " + tick);
+            }
+        }   finally {
+            distributed.quit();
+        }
+    }
+
+    private static Simulation load(String folder) throws IOException {
+        final Simulation simulation = new Simulation();
+        assertEquals(Main.READY, simulation.load(folder));
+        return simulation;
+    }
+}
@@ -0,0 +1,100 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.ScenarioGenerator;
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link PositionSnapshot} while a simulation runs in the background: every read has to see one tick, so
+ * every car is found exactly once and no car of a sleeping street is advanced past the end of its street
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class PositionSnapshotTest {
+
+    private static final int READERS = 3;
+
+    private static final long RUN_SECONDS = 2;
+
+    @Test
+    void readsWhileSimulatingSeeOneTick(@TempDir Path folder) throws IOException, InterruptedException {
+        // long streets with few cars, so most streets sleep and their cars are advanced by the readers
+        try (ScenarioGenerator generator = new ScenarioGenerator(folder, 0.05, 3)) {
+            generator.writeHighway(200);
+        }
+        final Simulation simulation = new Simulation();
+        assertEquals(Main.READY, simulation.load(folder.toString()));
+        final int numberOfCars = countCars(simulation);
+        final int[] streetLengths = readLengths(simulation);
+
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicLong reads = new AtomicLong();
+        assertEquals(Main.READY, simulation.start(new SimulationRun(Integer.MAX_VALUE,
+            TimeUnit.SECONDS.toNanos(RUN_SECONDS))));
+        final Thread[] readers = new Thread[READERS];
+        for (int reader = 0; reader < READERS; reader++) {
+            final int carId = reader;
+            readers[reader] = new Thread(() -> {
+                final CarPositions positions = new CarPositions();
+                while (simulation.isSimulating() && failure.get() == null) {
+                    positions.clear();
+                    simulation.givePositions(Integer.MIN_VALUE, Integer.MAX_VALUE, positions);
+                    if (positions.size() != numberOfCars) {
+                        failure.compareAndSet(null, positions.size() + " of " + numberOfCars + " cars were read");
+                    }
+                    check(positions, streetLengths, failure);
+                    positions.clear();
+                    simulation.giveCarPosition(carId, positions);
+                    check(positions, streetLengths, failure);
+                    final String position = simulation.giveCarPosition(carId);
+                    if (!position.startsWith("Car " + carId + " on street ")) failure.compareAndSet(null, position);
+                    reads.incrementAndGet();
+                }
+            });
+            readers[reader].start();
+        }
+        for (Thread reader : readers) reader.join();
+        simulation.await();
+        assertNull(failure.get());
+        assertTrue(reads.get() > 0);
+    }
+
+    private static int countCars(Simulation simulation) {
+        final CarPositions positions = new CarPositions();
+        assertNull(simulation.givePositions(Integer.MIN_VALUE, Integer.MAX_VALUE, positions));
+        return positions.size();
+    }
+
+    private static int[] readLengths(Simulation simulation) {
+        int numberOfStreets = 0;
+        while (simulation.findStreet(numberOfStreets) != null) numberOfStreets++;
+        final int[] lengths = new int[numberOfStreets];
+        for (int id = 0; id < numberOfStreets; id++) lengths[id] = simulation.findStreet(id).getLength();
+        return lengths;
+    }
+
+    /**
+     * Records the first position that lies outside of its street
+     */
+    private static void check(CarPositions positions, int[] streetLengths, AtomicReference<String> failure) {
+        for (int i = 0; i < positions.size(); i++) {
+            final int position = positions.getPosition(i);
+            if (position < 0 || position > streetLengths[positions.getStreetId(i)]) {
+                failure.compareAndSet(null, String.format("car %d at position %d of street %d, which is %d long",
+                    positions.getId(i), position, positions.getStreetId(i), streetLengths[positions.getStreetId(i)]));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.objects.CarPositions;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Reads the positions of every car of a simulation for the tests that compare two simulations
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+final class PositionsOf {
+
+    /**
+     * Private constructor to avoid object generation
+     */
+    private PositionsOf() {
+        throw new IllegalStateException(Main.UTILITY_CLASS_INSTANTIATION);
+    }
+
+    /**
+     * The method for reading the positions of every car of the given simulation
+     * @param simulation the simulation
+     * @return one line per car with its id, street, speed and position, in the order of the streets
+     */
+    static String every(Simulation simulation) {
+        final CarPositions positions = new CarPositions();
+        assertNull(simulation.givePositions(Integer.MIN_VALUE, Integer.MAX_VALUE, positions));
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < positions.size(); i++) {
+            lines.append(positions.getId(i)).append(' ').append(positions.getStreetId(i)).append(' ')
+                .append(positions.getSpeed(i)).append(' ').append(positions.getPosition(i)).append('\n');
+        }
+        return lines.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.SimulationSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests saving and restoring the state of the simulation: a restored simulation has to continue exactly like the
+ * saved one, and a file that is not a complete snapshot of the supported version has to be rejected without
+ * changing the state
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class SimulationSnapshotTest {
+
+    @TempDir
+    Path folder;
+
+    private Simulation simulation;
+
+    private Path saved;
+
+    @BeforeEach
+    void saveAfterSomeTicks() throws IOException {
+        simulation = new Simulation();
+        assertEquals(Main.READY, simulation.load("files/dense"));
+        assertEquals(Main.READY, simulation.update(123));
+        saved = folder.resolve("saved.snap");
+        assertEquals(Main.READY, simulation.save(saved.toString()));
+    }
+
+    @Test
+    void restoredSimulationContinuesLikeTheSavedOne() {
+        final String atSave = PositionsOf.every(simulation);
+        assertEquals(Main.READY, simulation.update(500));
+        final String afterSave = PositionsOf.every(simulation);
+
+        final Simulation restored = new Simulation();
+        assertEquals(Main.READY, restored.restore(saved.toString()));
+        assertEquals(atSave, PositionsOf.every(restored));
+        assertEquals(Main.READY, restored.update(500));
+        assertEquals(afterSave, PositionsOf.every(restored));
+    }
+
+    @Test
+    void restoringReplacesTheState() {
+        final String atSave = PositionsOf.every(simulation);
+        assertEquals(Main.READY, simulation.update(77));
+        assertEquals(Main.READY, simulation.restore(saved.toString()));
+        assertEquals(atSave, PositionsOf.every(simulation));
+    }
+
+    @Test
+    void rejectsBadMagic() throws IOException {
+        final byte[] bytes = Files.readAllBytes(saved);
+        bytes[0] ^= 1;
+        assertRejected(bytes, "is not a snapshot");
+    }
+
+    @Test
+    void rejectsOtherVersions() throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(saved)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(SimulationSnapshot.MAGIC, bytes.getInt(0));
+        bytes.putInt(Integer.BYTES, SimulationSnapshot.VERSION + 1);
+        assertRejected(bytes.array(), "version " + (SimulationSnapshot.VERSION + 1) + " is not supported");
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        final byte[] bytes = Files.readAllBytes(saved);
+        for (int length : new int[] {0, 3, 2 * Integer.BYTES, bytes.length / 2, bytes.length - 1}) {
+            assertRejected(Arrays.copyOf(bytes, length), "");
+        }
+    }
+
+    @Test
+    void rejectsMissingFiles() {
+        final String before = PositionsOf.every(simulation);
+        assertTrue(simulation.restore(folder.resolve("missing.snap").toString()).startsWith(Main.ERROR));
+        assertEquals(before, PositionsOf.every(simulation));
+    }
+
+    /**
+     * Checks that the given bytes are rejected with a message containing the given text and leave the state alone
+     */
+    private void assertRejected(byte[] bytes, String message) throws IOException {
+        final Path broken = folder.resolve("broken.snap");
+        Files.write(broken, bytes);
+        final String before = PositionsOf.every(simulation);
+        final String output = simulation.restore(broken.toString());
+        assertTrue(output.startsWith(Main.ERROR) && output.contains(message), output);
+        assertEquals(before, PositionsOf.every(simulation));
+    }
+}
@@ -0,0 +1,81 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.ScenarioGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the {@link StreetScheduler} only saves work: a simulation whose idle streets sleep and whose idle ticks
+ * are skipped has to reach the same positions as one that updates every street in every tick
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class StreetSchedulerTest {
+
+    private static final int[] STEPS = {1, 7, 50, 300, 2000};
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files/basic", "files/advanced", "files/advanced2", "files/dense", "files/trafficjam"})
+    void sleepingMatchesTickByTick(String folder) throws IOException {
+        assertSameSteps(folder);
+    }
+
+    @Test
+    void skippingIdleTicksMatchesTickByTick(@TempDir Path folder) throws IOException {
+        // few cars on long streets, so most ticks no street is awake and they are skipped
+        try (ScenarioGenerator generator = new ScenarioGenerator(folder, 0.002, 1)) {
+            generator.writeHighway(20);
+        }
+        assertSameSteps(folder.toString());
+    }
+
+    @Test
+    void sleepingMatchesTickByTickOnAGrid(@TempDir Path folder) throws IOException {
+        try (ScenarioGenerator generator = new ScenarioGenerator(folder, 0.05, 2)) {
+            generator.writeGrid(100, true);
+        }
+        assertSameSteps(folder.toString());
+    }
+
+    @Test
+    void changedLightsWakeTheWaitingStreets() throws IOException {
+        final Simulation sleeping = load("files/advanced", true);
+        final Simulation awake = load("files/advanced", false);
+        for (int step = 0; step < 20; step++) {
+            for (Simulation simulation : new Simulation[] {sleeping, awake}) {
+                assertEquals(Main.READY, simulation.update(37));
+                assertEquals(Main.READY, simulation.setGreenLightDuration(step % 5,
+                    step % 3 == 0 ? 0 : 3 + step % 8));
+            }
+            assertEquals(PositionsOf.every(awake), PositionsOf.every(sleeping), "after step " + step);
+        }
+    }
+
+    private static void assertSameSteps(String folder) throws IOException {
+        final Simulation sleeping = load(folder, true);
+        final Simulation awake = load(folder, false);
+        long tick = 0;
+        for (int ticks : STEPS) {
+            assertEquals(Main.READY, sleeping.update(ticks));
+            assertEquals(Main.READY, awake.update(ticks));
+            tick += ticks;
+            assertEquals(tick, sleeping.getTick());
+            assertEquals(PositionsOf.every(awake), PositionsOf.every(sleeping), "after tick " + tick);
+        }
+    }
+
+    private static Simulation load(String folder, boolean sleeping) throws IOException {
+        final Simulation simulation = new Simulation();
+        simulation.setSleeping(sleeping);
+        assertEquals(Main.READY, simulation.load(folder));
+        return simulation;
+    }
+}
@@ -0,0 +1,56 @@
+package edu.kit.kastel.trafficsimulation;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guards the allocation free tick loop: once the simulation is warmed up, {@link Simulation#update(int)} must not
+ * allocate. The bytes allocated by the test thread are read from the {@link com.sun.management.ThreadMXBean}
+ * before and after the measured ticks
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class TickAllocationTest {
+
+    // the warm-up has to be long enough for every compilation to finish, deoptimizations allocate as well
+    private static final int WARMUP_TICKS = 50000;
+
+    private static final int MEASURED_TICKS = 20000;
+
+    private static final int MEASUREMENTS = 3;
+
+    // a few bytes for a late deoptimization, far less than a single object per tick
+    private static final long ALLOWED_BYTES = 1024;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files/basic", "files/dense", "files/trafficjam"})
+    void steadyStateTicksDoNotAllocate(String folder) throws IOException {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+        final Simulation simulation = new Simulation();
+        assertEquals(Main.READY, simulation.load(folder));
+        assertEquals(Main.READY, simulation.update(WARMUP_TICKS));
+        final long threadId = Thread.currentThread().getId();
+        final long first = bean.getThreadAllocatedBytes(threadId);
+        final long overhead = bean.getThreadAllocatedBytes(threadId) - first; // the query itself allocates
+        long allocated = Long.MAX_VALUE;
+        // the least of a few measurements, so one late compilation does not fail the test
+        for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+            final long before = bean.getThreadAllocatedBytes(threadId);
+            assertEquals(Main.READY, simulation.update(MEASURED_TICKS));
+            allocated = Math.min(allocated, bean.getThreadAllocatedBytes(threadId) - before - overhead);
+        }
+        assertTrue(allocated <= ALLOWED_BYTES,
+            String.format("%d ticks allocated %d bytes after the warm-up", MEASURED_TICKS, allocated));
+    }
+}
@@ -0,0 +1,91 @@
+package edu.kit.kastel.trafficsimulation;
+
+import edu.kit.kastel.trafficsimulation.io.ScenarioGenerator;
+import edu.kit.kastel.trafficsimulation.io.TrajectoryRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that a recorded file gives the positions of every car in every tick, against a simulation that is read after
+ * every single tick
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class TrajectoryRecorderTest {
+
+    private static final int[] STEPS = {1, 5, 40, 300, 1000};
+
+    @TempDir
+    Path folder;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files/basic", "files/advanced2", "files/dense", "files/trafficjam"})
+    void recordingGivesEveryTick(String scenario) throws IOException {
+        assertRecordedTicks(scenario, true);
+    }
+
+    @Test
+    void recordingGivesTheSkippedTicks() throws IOException {
+        final Path scenario = folder.resolve("highway");
+        Files.createDirectory(scenario);
+        try (ScenarioGenerator generator = new ScenarioGenerator(scenario, 0.002, 4)) {
+            generator.writeHighway(30);
+        }
+        assertRecordedTicks(scenario.toString(), true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files/advanced2", "files/trafficjam"})
+    void recordingLeavesOutTheStreetsWhoseCarsOnlyDroveOn(String scenario) throws IOException {
+        // without sleeping streets, every street is updated and only the check of the street leaves it out
+        assertRecordedTicks(scenario, false);
+    }
+
+    private void assertRecordedTicks(String scenario, boolean sleeping) throws IOException {
+        final Simulation recorded = new Simulation();
+        recorded.setSleeping(sleeping);
+        assertEquals(Main.READY, recorded.load(scenario));
+        assertEquals(Main.READY, recorded.update(17)); // the recording starts at a later tick
+        final Path file = folder.resolve("trajectories.trj");
+        assertEquals(Main.READY, recorded.startRecording(file.toString()));
+        int ticks = 0;
+        for (int step : STEPS) {
+            assertEquals(Main.READY, recorded.update(step));
+            ticks += step;
+        }
+        assertEquals(Main.READY, recorded.stopRecording());
+
+        final Simulation reference = new Simulation();
+        assertEquals(Main.READY, reference.load(scenario));
+        assertEquals(Main.READY, reference.update(17));
+        final List<String> expected = new ArrayList<>();
+        expected.add(17 + "\n" + PositionsOf.every(reference));
+        for (int tick = 1; tick <= ticks; tick++) {
+            assertEquals(Main.READY, reference.update(1));
+            expected.add((17 + tick) + "\n" + PositionsOf.every(reference));
+        }
+
+        final List<String> read = new ArrayList<>();
+        TrajectoryRecorder.read(file, (tick, count, ids, streetIds, positions, speeds) -> {
+            final StringBuilder lines = new StringBuilder().append(tick).append('\n');
+            for (int i = 0; i < count; i++) {
+                lines.append(ids[i]).append(' ').append(streetIds[i]).append(' ').append(speeds[i]).append(' ')
+                    .append(positions[i]).append('\n');
+            }
+            read.add(lines.toString());
+        });
+        assertEquals(expected.size(), read.size());
+        for (int tick = 0; tick < expected.size(); tick++) assertEquals(expected.get(tick), read.get(tick));
+    }
+}
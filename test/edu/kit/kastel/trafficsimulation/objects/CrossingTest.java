@@ -0,0 +1,152 @@
+package edu.kit.kastel.trafficsimulation.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests the green light of the {@link Crossing}, which is calculated for any tick in one step, against a light that
+ * is stepped tick by tick the way the crossings were updated before
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class CrossingTest {
+
+    private static final int[] INCOMING = {10, 11, 12, 13};
+
+    private static final int NOT_INCOMING = 99;
+
+    @Test
+    void closedFormMatchesSteppingTickByTick() {
+        for (int incoming = 1; incoming <= INCOMING.length; incoming++) {
+            for (int duration = 1; duration <= 5; duration++) {
+                final Crossing crossing = crossing(duration, incoming);
+                final SteppedLight light = new SteppedLight(duration, incoming);
+                for (long tick = 0; tick < 200; tick++) {
+                    assertSameLight(crossing, light, tick);
+                    light.step();
+                }
+            }
+        }
+    }
+
+    @Test
+    void advancingDoesNotChangeTheLight() {
+        final Crossing crossing = crossing(3, 3);
+        final SteppedLight light = new SteppedLight(3, 3);
+        for (long tick = 0; tick < 100; tick++) {
+            if (tick % 7 == 0) {
+                crossing.advanceTo(tick);
+                assertEquals(light.phase, crossing.getGreenLightPhase());
+                assertEquals(light.remaining, crossing.getRemainingDuration());
+            }
+            assertSameLight(crossing, light, tick);
+            light.step();
+        }
+    }
+
+    @Test
+    void changingTheDurationMidPhase() {
+        final Random random = new Random(0);
+        for (int run = 0; run < 50; run++) {
+            final int incoming = 1 + random.nextInt(INCOMING.length);
+            final int duration = random.nextInt(4);
+            final Crossing crossing = crossing(duration, incoming);
+            final SteppedLight light = new SteppedLight(duration, incoming);
+            for (long tick = 0; tick < 300; tick++) {
+                if (random.nextInt(20) == 0) {
+                    // 0 switches the light off, a positive duration switches it on or changes it
+                    final int newDuration = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(6);
+                    crossing.setGreenLightDuration(newDuration, tick);
+                    light.setDuration(newDuration);
+                }
+                assertSameLight(crossing, light, tick);
+                light.step();
+            }
+        }
+    }
+
+    @Test
+    void streetsThatDoNotEnterNeverGetGreen() {
+        final Crossing crossing = crossing(2, 3);
+        assertEquals(Long.MAX_VALUE, crossing.getNextGreenTick(NOT_INCOMING, 5));
+        assertFalse(crossing.getLight(NOT_INCOMING, 5));
+    }
+
+    private static Crossing crossing(int duration, int incoming) {
+        final Crossing crossing = new Crossing(0, duration);
+        for (int street = 0; street < incoming; street++) crossing.addEnterStreet(INCOMING[street]);
+        return crossing;
+    }
+
+    /**
+     * Checks the light and the next green tick of every entering street, the next green tick against stepping a
+     * copy of the light forward until it shines for the street
+     */
+    private static void assertSameLight(Crossing crossing, SteppedLight light, long tick) {
+        for (int street = 0; street < light.incoming; street++) {
+            final int streetId = INCOMING[street];
+            assertEquals(light.isGreen(street), crossing.getLight(streetId, tick),
+                "light of street " + streetId + " in tick " + tick);
+            assertEquals(tick + light.ticksUntilGreen(street), crossing.getNextGreenTick(streetId, tick),
+                "next green tick of street " + streetId + " in tick " + tick);
+        }
+    }
+
+    /**
+     * A green light that is updated once per tick: the remaining duration counts down and the light moves on to the
+     * next entering street when it reaches 0
+     */
+    private static final class SteppedLight {
+
+        private final int incoming;
+
+        private int duration;
+
+        private int phase;
+
+        private int remaining;
+
+        SteppedLight(int duration, int incoming) {
+            this.incoming = incoming;
+            this.duration = duration;
+            this.remaining = duration;
+        }
+
+        void step() {
+            if (duration == 0) return;
+            remaining--;
+            if (remaining <= 0) {
+                remaining = duration;
+                phase++;
+                if (phase >= incoming) phase = 0;
+            }
+        }
+
+        void setDuration(int duration) {
+            this.duration = duration;
+            if (duration == 0) phase = 0;
+            remaining = duration;
+        }
+
+        boolean isGreen(int street) {
+            return duration == 0 || phase == street;
+        }
+
+        long ticksUntilGreen(int street) {
+            final SteppedLight copy = new SteppedLight(duration, incoming);
+            copy.phase = phase;
+            copy.remaining = remaining;
+            long ticks = 0;
+            while (!copy.isGreen(street)) {
+                copy.step();
+                ticks++;
+            }
+            return ticks;
+        }
+    }
+}
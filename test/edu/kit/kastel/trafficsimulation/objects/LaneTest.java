@@ -0,0 +1,109 @@
+package edu.kit.kastel.trafficsimulation.objects;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the ring buffer of the {@link Lane}: the order of the cars has to survive the buffer wrapping around, growing
+ * and cars overtaking, and every {@link Car} has to stay a view on its own slot
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class LaneTest {
+
+    private static final int STREET_ID = 7;
+
+    @Test
+    void addedCarsBecomeViewsOnTheirSlot() {
+        final Lane lane = new Lane(STREET_ID);
+        final Car car = car(3);
+        lane.addLast(car);
+        assertEquals(1, lane.size());
+        assertEquals(STREET_ID, car.getStreetId());
+        assertEquals(car.getPosition(), lane.getPosition(lane.slot(0)));
+        lane.setPosition(lane.slot(0), 42);
+        lane.setSpeed(lane.slot(0), 5);
+        assertEquals(42, car.getPosition());
+        assertEquals(5, car.getSpeed());
+    }
+
+    @Test
+    void orderSurvivesWrappingAround() {
+        final Lane lane = new Lane(STREET_ID);
+        for (int id = 0; id < 6; id++) lane.addLast(car(id));
+        lane.removeFirst(5);
+        // the buffer of 8 slots starts at slot 5, so the cars added now wrap around to slot 0
+        for (int id = 6; id < 12; id++) lane.addLast(car(id));
+        assertEquals(7, lane.size());
+        assertOrder(lane, 5, 6, 7, 8, 9, 10, 11);
+        assertEquals(0, lane.slot(3));
+    }
+
+    @Test
+    void orderSurvivesGrowingWhileWrapped() {
+        final Lane lane = new Lane(STREET_ID);
+        for (int id = 0; id < 8; id++) lane.addLast(car(id));
+        lane.removeFirst(3);
+        for (int id = 8; id < 20; id++) lane.addLast(car(id));
+        assertEquals(17, lane.size());
+        assertOrder(lane, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        lane.removeFirst(17);
+        assertEquals(0, lane.size());
+    }
+
+    @Test
+    void overtakingSwapsTheCarsAndTheirViews() {
+        final Lane lane = new Lane(STREET_ID);
+        for (int id = 0; id < 4; id++) lane.addLast(car(id));
+        lane.swapWithPrevious(2);
+        assertOrder(lane, 0, 2, 1, 3);
+        // the swap across the end of the buffer, slot 7 and slot 0
+        lane.removeFirst(4);
+        for (int id = 4; id < 10; id++) lane.addLast(car(id));
+        lane.removeFirst(3);
+        assertEquals(7, lane.slot(0));
+        assertEquals(0, lane.slot(1));
+        lane.swapWithPrevious(1);
+        assertOrder(lane, 8, 7, 9);
+    }
+
+    @Test
+    void advanceMovesEveryCarBySpeed() {
+        final Lane lane = new Lane(STREET_ID);
+        for (int id = 0; id < 3; id++) lane.addLast(car(id));
+        lane.setSpeed(lane.slot(0), 4);
+        lane.setSpeed(lane.slot(2), 1);
+        assertEquals(2, lane.advance(3));
+        assertEquals(100 + 12, lane.getPosition(lane.slot(0)));
+        assertEquals(99, lane.getPosition(lane.slot(1)));
+        assertEquals(98 + 3, lane.getPosition(lane.slot(2)));
+    }
+
+    /**
+     * Creates a car whose position falls with its id, so the cars of a test are ordered from the car ahead
+     */
+    private static Car car(int id) {
+        final Car car = new Car(id, 10 + id, 1 + id % 3);
+        car.setPositionOnStreet(100 - id);
+        return car;
+    }
+
+    /**
+     * Checks the ids in the lane from the car ahead to the car behind, and that every car is the view on its slot
+     */
+    private static void assertOrder(Lane lane, int... expectedIds) {
+        assertEquals(expectedIds.length, lane.size());
+        for (int index = 0; index < expectedIds.length; index++) {
+            final int slot = lane.slot(index);
+            final Car car = lane.getCar(slot);
+            assertEquals(expectedIds[index], lane.getId(slot));
+            assertEquals(expectedIds[index], car.getId());
+            assertEquals(100 - expectedIds[index], car.getPosition());
+            assertEquals(10 + expectedIds[index], lane.getMaxSpeed(slot));
+            assertEquals(1 + expectedIds[index] % 3, lane.getAcceleration(slot));
+            assertEquals(STREET_ID, car.getStreetId());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.kit.kastel.trafficsimulation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the open addressing of the {@link IntIndex} against a {@link HashMap}, with ids that collide in the table
+ * and with enough ids to make the table grow several times
+ *
+ * @author ufmkk
+ * @version 1.0
+ */
+class IntIndexTest {
+
+    @Test
+    void findsWhatWasPut() {
+        final IntIndex<String> index = new IntIndex<>();
+        index.put(3, "three");
+        index.put(-5, "minus five");
+        index.put(0, "zero");
+        assertEquals("three", index.get(3));
+        assertEquals("minus five", index.get(-5));
+        assertEquals("zero", index.get(0));
+        assertNull(index.get(4));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void putReplacesTheObjectOfAnId() {
+        final IntIndex<String> index = new IntIndex<>();
+        index.put(1, "first");
+        index.put(1, "second");
+        assertEquals("second", index.get(1));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void collidingIdsAreProbed() {
+        // ids whose hashes share the lowest bits land in the same slot of the initial table of 16 slots
+        final IntIndex<Integer> index = new IntIndex<>();
+        final int[] colliding = new int[7];
+        int found = 0;
+        for (int id = 0; found < colliding.length; id++) {
+            if (slotOf(id, 16) == slotOf(0, 16)) colliding[found++] = id;
+        }
+        for (int id : colliding) index.put(id, id);
+        for (int id : colliding) assertEquals(id, index.get(id));
+        assertNull(index.get(colliding[colliding.length - 1] + 1));
+        index.put(colliding[3], -1);
+        assertEquals(-1, index.get(colliding[3]));
+        assertEquals(colliding.length, index.size());
+    }
+
+    @Test
+    void growingKeepsEveryObject() {
+        final IntIndex<Integer> index = new IntIndex<>();
+        final Map<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            final int id = random.nextInt(50000) - 10000;
+            index.put(id, i);
+            expected.put(id, i);
+            assertEquals(expected.size(), index.size());
+        }
+        for (int id = -10000; id < 40000; id++) assertEquals(expected.get(id), index.get(id));
+    }
+
+    @Test
+    void clearEmptiesTheIndex() {
+        final IntIndex<Integer> index = new IntIndex<>(100);
+        for (int id = 0; id < 100; id++) index.put(id, id);
+        index.clear();
+        assertEquals(0, index.size());
+        for (int id = 0; id < 100; id++) assertNull(index.get(id));
+        index.put(5, 5);
+        assertEquals(5, index.get(5));
+    }
+
+    /**
+     * The slot an id is hashed to in a table of the given capacity, the same mixing as the index uses
+     */
+    private static int slotOf(int id, int capacity) {
+        final int mixed = id * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 16)) & (capacity - 1);
+    }
+}